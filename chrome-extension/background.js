@@ -1,11 +1,16 @@
-// Ad blocking rules - common ad domains
+const API_URL = 'http://localhost:8080';
+
+// Category bits used by the compiled blocklist snapshot
+const ADS = 1;
+const TRACKERS = 2;
+
+// Built-in fallback until the first snapshot has been downloaded from the server
 const AD_DOMAINS = [
     'doubleclick.net',
     'googlesyndication.com',
     'googleadservices.com',
     'adservice.google.com',
     'ads.google.com',
-    'facebook.com/plugins',
     'connect.facebook.net',
     'taboola.com',
     'outbrain.com',
@@ -24,11 +29,9 @@ const AD_DOMAINS = [
     'crazyegg.com'
 ];
 
-// Tracker domains
 const TRACKER_DOMAINS = [
     'google-analytics.com',
     'googletagmanager.com',
-    'facebook.com/tr',
     'connect.facebook.net',
     'hotjar.com',
     'mouseflow.com',
@@ -38,22 +41,156 @@ const TRACKER_DOMAINS = [
     'heap.io'
 ];
 
+// Returns the category bits of every rule covering the host (0 = not blocked)
+let matchHost = compileFallback();
+let blocklistVersion = null;
+
+function compileFallback() {
+    const rules = new Map();
+    AD_DOMAINS.forEach((domain) => rules.set(domain, (rules.get(domain) || 0) | ADS));
+    TRACKER_DOMAINS.forEach((domain) => rules.set(domain, (rules.get(domain) || 0) | TRACKERS));
+
+    return (host) => {
+        let categories = 0;
+        for (let start = 0; start >= 0; start = host.indexOf('.', start) + 1 || -1) {
+            categories |= rules.get(host.substring(start)) || 0;
+        }
+        return categories;
+    };
+}
+
+// Walks the server's reversed-label trie: one Map lookup and one binary search per label
+function compileSnapshot(snapshot) {
+    const labelIds = new Map(snapshot.labels.map((label, id) => [label, id]));
+    const { childStart, nodeLabel, flags } = snapshot;
+
+    return (host) => {
+        let node = 0;
+        let categories = 0;
+        let end = host.length;
+        while (end > 0) {
+            const start = host.lastIndexOf('.', end - 1) + 1;
+            const labelId = labelIds.get(host.substring(start, end));
+            if (labelId === undefined) {
+                break;
+            }
+
+            let low = childStart[node];
+            let high = childStart[node + 1] - 1;
+            node = -1;
+            while (low <= high) {
+                const mid = (low + high) >>> 1;
+                if (nodeLabel[mid] < labelId) {
+                    low = mid + 1;
+                } else if (nodeLabel[mid] > labelId) {
+                    high = mid - 1;
+                } else {
+                    node = mid;
+                    break;
+                }
+            }
+            if (node < 0) {
+                break;
+            }
+
+            categories |= flags[node];
+            end = start - 1;
+        }
+        return categories;
+    };
+}
+
+function useSnapshot(snapshot) {
+    matchHost = compileSnapshot(snapshot);
+    blocklistVersion = snapshot.version;
+    console.log('Blocklist version', snapshot.version, 'with', snapshot.rules, 'rules');
+}
+
+async function refreshBlocklist() {
+    try {
+        const response = await fetch(`${API_URL}/api/blocklist/snapshot`);
+        if (!response.ok) {
+            return;
+        }
+        const snapshot = await response.json();
+        if (snapshot.version !== blocklistVersion) {
+            useSnapshot(snapshot);
+            await chrome.storage.local.set({ blocklist: snapshot });
+        }
+    } catch (e) {
+        // Server unreachable, keep the current list
+    }
+}
+
+// Keeps the dynamic declarativeNetRequest rules in line with the server, downloading only
+// the rules added and removed since the version applied last
+async function refreshRules() {
+    try {
+        const { rulesVersion } = await chrome.storage.local.get(['rulesVersion']);
+        const query = rulesVersion ? `?since=${encodeURIComponent(rulesVersion)}` : '';
+        const response = await fetch(`${API_URL}/api/blocklist${query}`);
+        if (response.status === 304 || !response.ok) {
+            return;
+        }
+
+        const update = await response.json();
+        if (update.type === 'delta') {
+            await chrome.declarativeNetRequest.updateDynamicRules({
+                removeRuleIds: update.removeRuleIds,
+                addRules: update.addRules
+            });
+        } else {
+            const existing = await chrome.declarativeNetRequest.getDynamicRules();
+            await chrome.declarativeNetRequest.updateDynamicRules({
+                removeRuleIds: existing.map((rule) => rule.id),
+                addRules: update.rules
+            });
+        }
+        await chrome.storage.local.set({ rulesVersion: update.version });
+    } catch (e) {
+        // Server unreachable, keep the current rules
+    }
+}
+
+// Start with the last downloaded snapshot, then check for a newer one
+chrome.storage.local.get(['blocklist']).then((result) => {
+    if (result.blocklist) {
+        useSnapshot(result.blocklist);
+    }
+    refreshBlocklist();
+    refreshRules();
+});
+
+chrome.alarms.create('refreshBlocklist', { periodInMinutes: 360 });
+
 let stats = {
     adsBlocked: 0,
     trackersBlocked: 0
 };
 
+// Blocked requests not uploaded yet, one entry per category and domain
+let pendingEvents = {};
+
 // Load stats on startup
-chrome.storage.local.get(['adsBlocked', 'trackersBlocked']).then((result) => {
+chrome.storage.local.get(['adsBlocked', 'trackersBlocked', 'pendingEvents']).then((result) => {
     stats.adsBlocked = result.adsBlocked || 0;
     stats.trackersBlocked = result.trackersBlocked || 0;
+    pendingEvents = result.pendingEvents || {};
 });
 
-// Reset stats daily
+// Upload blocked-request counts once a minute, however much gets blocked
+chrome.alarms.create('uploadEvents', { periodInMinutes: 1 });
+
+// Reset the local daily counters, server-side totals are built from uploaded events
 chrome.alarms.create('resetStats', { periodInMinutes: 1440 }); // 24 hours
 
 chrome.alarms.onAlarm.addListener((alarm) => {
-    if (alarm.name === 'resetStats') {
+    if (alarm.name === 'refreshBlocklist') {
+        refreshBlocklist();
+        refreshRules();
+    } else if (alarm.name === 'uploadEvents') {
+        uploadEvents();
+    } else if (alarm.name === 'resetStats') {
         stats.adsBlocked = 0;
         stats.trackersBlocked = 0;
         chrome.storage.local.set({ adsBlocked: 0, trackersBlocked: 0 });
@@ -79,28 +216,24 @@ chrome.webRequest.onBeforeRequest.addListener(
             }
         }
 
+        const categories = matchHost(domain);
+
         // Check if it's an ad domain
-        if (settings.blockAds !== false) {
-            for (const adDomain of AD_DOMAINS) {
-                if (domain.includes(adDomain)) {
-                    stats.adsBlocked++;
-                    await updateStats();
-                    console.log('Blocked ad:', details.url);
-                    return { cancel: true };
-                }
-            }
+        if (settings.blockAds !== false && (categories & ADS)) {
+            stats.adsBlocked++;
+            recordEvent(domain, 'ads');
+            await updateStats();
+            console.log('Blocked ad:', details.url);
+            return { cancel: true };
         }
 
         // Check if it's a tracker
-        if (settings.blockTrackers !== false) {
-            for (const trackerDomain of TRACKER_DOMAINS) {
-                if (domain.includes(trackerDomain)) {
-                    stats.trackersBlocked++;
-                    await updateStats();
-                    console.log('Blocked tracker:', details.url);
-                    return { cancel: true };
-                }
-            }
+        if (settings.blockTrackers !== false && (categories & TRACKERS)) {
+            stats.trackersBlocked++;
+            recordEvent(domain, 'trackers');
+            await updateStats();
+            console.log('Blocked tracker:', details.url);
+            return { cancel: true };
         }
 
         return { cancel: false };
@@ -109,10 +242,62 @@ chrome.webRequest.onBeforeRequest.addListener(
     ['blocking']
 );
 
+function recordEvent(domain, category) {
+    const key = `${category}|${domain}`;
+    if (pendingEvents[key]) {
+        pendingEvents[key].count++;
+    } else {
+        pendingEvents[key] = { domain, category, timestamp: Date.now(), count: 1 };
+    }
+}
+
+// Sends pending events as one batch. The batch is kept in the outbox until the server has
+// accepted it and retried with the same batchId, so a lost response never counts it twice.
+async function uploadEvents() {
+    const { authToken, outbox } = await chrome.storage.local.get(['authToken', 'outbox']);
+    if (!authToken) {
+        return false;
+    }
+
+    let batch = outbox;
+    if (!batch) {
+        const keys = Object.keys(pendingEvents).slice(0, 10000);
+        if (keys.length === 0) {
+            return true;
+        }
+        batch = { batchId: crypto.randomUUID(), events: keys.map((key) => pendingEvents[key]) };
+        keys.forEach((key) => delete pendingEvents[key]);
+        await chrome.storage.local.set({ outbox: batch, pendingEvents });
+    }
+
+    try {
+        const response = await fetch(`${API_URL}/api/stats/events`, {
+            method: 'POST',
+            redirect: 'manual',
+            headers: {
+                'Content-Type': 'application/json',
+                'Authorization': `Bearer ${authToken}`
+            },
+            body: JSON.stringify(batch)
+        });
+        // Any other 4xx rejects the batch itself, sending it again would not help
+        const rejected = response.status >= 400 && response.status < 500
+            && response.status !== 401 && response.status !== 429;
+        if (response.ok || rejected) {
+            await chrome.storage.local.remove('outbox');
+        }
+        return response.ok;
+    } catch (e) {
+        // Offline, the outbox is retried on the next alarm
+        return false;
+    }
+}
+
 async function updateStats() {
     await chrome.storage.local.set({
         adsBlocked: stats.adsBlocked,
-        trackersBlocked: stats.trackersBlocked
+        trackersBlocked: stats.trackersBlocked,
+        pendingEvents
     });
 
     // Notify popup if it's open
@@ -131,7 +316,12 @@ async function updateStats() {
 chrome.runtime.onMessage.addListener((message, sender, sendResponse) => {
     if (message.type === 'adBlocked') {
         stats.adsBlocked++;
+        if (sender.tab && sender.tab.url) {
+            recordEvent(new URL(sender.tab.url).hostname, 'ads');
+        }
         updateStats();
+    } else if (message.type === 'uploadEvents') {
+        uploadEvents().then(sendResponse);
     } else if (message.type === 'getStats') {
         sendResponse(stats);
     } else if (message.type === 'saveAuth') {
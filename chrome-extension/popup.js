@@ -164,26 +164,11 @@ async function syncSettings() {
         return;
     }
 
-    const stats = await chrome.storage.local.get(['adsBlocked', 'trackersBlocked']);
-    const settings = await chrome.storage.sync.get(['blockAds', 'blockTrackers', 'blockPopups']);
-
     try {
-        // Send stats to server (you'll need to create this endpoint)
-        const response = await fetch(`${API_URL}/api/stats/sync`, {
-            method: 'POST',
-            headers: {
-                'Content-Type': 'application/json',
-                'Authorization': `Bearer ${auth.authToken}`
-            },
-            body: JSON.stringify({
-                email: auth.userEmail,
-                adsBlocked: stats.adsBlocked || 0,
-                trackersBlocked: stats.trackersBlocked || 0,
-                settings: settings
-            })
-        });
-
-        if (response.ok) {
+        // The background worker uploads pending blocked-request events as one idempotent batch
+        const uploaded = await chrome.runtime.sendMessage({ type: 'uploadEvents' });
+
+        if (uploaded) {
             showStatus('Synced successfully!');
         } else {
             showStatus('Sync failed');
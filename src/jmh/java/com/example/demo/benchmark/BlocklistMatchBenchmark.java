@@ -0,0 +1,92 @@
+package com.example.demo.benchmark;
+
+import com.example.demo.service.DomainSuffixTrie;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Host lookups against blocklists of growing size. "linearScan" is what the extension did
+ * before (domain.includes over every entry), "trie" is DomainSuffixTrie. Half the hosts are
+ * subdomains of a listed domain, the other half are not listed.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class BlocklistMatchBenchmark {
+
+    private static final String[] TLDS = {"com", "net", "org", "io", "de", "co.uk"};
+
+    @Param({"100", "10000", "50000"})
+    public int domains;
+
+    private String[] blocklist;
+    private DomainSuffixTrie trie;
+    private String[] hosts;
+    private int next;
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(42);
+        blocklist = new String[domains];
+        Map<String, Integer> rules = new HashMap<>();
+        for (int i = 0; i < domains; i++) {
+            blocklist[i] = randomLabel(random) + "." + TLDS[random.nextInt(TLDS.length)];
+            rules.put(blocklist[i], DomainSuffixTrie.ADS);
+        }
+        trie = DomainSuffixTrie.build(rules);
+
+        hosts = new String[1024];
+        for (int i = 0; i < hosts.length; i++) {
+            hosts[i] = i % 2 == 0
+                    ? "cdn" + i + "." + blocklist[random.nextInt(domains)]
+                    : "www." + randomLabel(random) + "-site." + TLDS[random.nextInt(TLDS.length)];
+        }
+    }
+
+    @Benchmark
+    public boolean linearScan() {
+        String host = nextHost();
+        for (String domain : blocklist) {
+            if (host.contains(domain)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Benchmark
+    public boolean trie() {
+        return trie.match(nextHost()) != null;
+    }
+
+    private String nextHost() {
+        next = (next + 1) & (hosts.length - 1);
+        return hosts[next];
+    }
+
+    private static String randomLabel(Random random) {
+        int length = 5 + random.nextInt(10);
+        StringBuilder label = new StringBuilder(length);
+        for (int i = 0; i < length; i++) {
+            label.append((char) ('a' + random.nextInt(26)));
+        }
+        return label.toString();
+    }
+}
@@ -0,0 +1,85 @@
+package com.example.demo.benchmark;
+
+import com.example.demo.dto.DomainEstimate;
+import com.example.demo.service.HeavyHitterSketch;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * HeavyHitterSketch updates with a skewed domain stream (a few domains take most of the
+ * blocks), from one thread and from four threads sharing a sketch, plus the top-N read.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class DomainSketchBenchmark {
+
+    private static final int STREAM_LENGTH = 1 << 16;
+
+    @State(Scope.Benchmark)
+    public static class SketchState {
+        HeavyHitterSketch userSketch;
+        HeavyHitterSketch globalSketch;
+        String[] stream;
+
+        @Setup
+        public void setUp() {
+            userSketch = new HeavyHitterSketch(128, 4, 20);
+            globalSketch = new HeavyHitterSketch(4096, 4, 100);
+            // Pareto distributed ranks over ~10k domains
+            Random random = new Random(42);
+            stream = new String[STREAM_LENGTH];
+            for (int i = 0; i < STREAM_LENGTH; i++) {
+                int rank = (int) Math.min(10_000, Math.pow(1 - random.nextDouble(), -1 / 1.1));
+                stream[i] = "d" + rank + ".example.com";
+            }
+            for (String domain : stream) {
+                userSketch.add(domain, 1);
+                globalSketch.add(domain, 1);
+            }
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class Cursor {
+        int position;
+
+        String next(String[] stream) {
+            position = (position + 1) & (STREAM_LENGTH - 1);
+            return stream[position];
+        }
+    }
+
+    @Benchmark
+    public HeavyHitterSketch addUserSketch(SketchState state, Cursor cursor) {
+        state.userSketch.add(cursor.next(state.stream), 1);
+        return state.userSketch;
+    }
+
+    @Benchmark
+    @Threads(4)
+    public HeavyHitterSketch addGlobalSketchContended(SketchState state, Cursor cursor) {
+        state.globalSketch.add(cursor.next(state.stream), 1);
+        return state.globalSketch;
+    }
+
+    @Benchmark
+    public List<DomainEstimate> topTen(SketchState state) {
+        return state.globalSketch.top(10);
+    }
+}
@@ -0,0 +1,67 @@
+package com.example.demo.benchmark;
+
+import com.example.demo.model.User;
+import com.example.demo.security.JwtClaimsCache;
+import com.example.demo.security.JwtTokenProvider;
+import io.jsonwebtoken.Claims;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Token generation and parsing. "cold" forces a full signature check and JSON parse,
+ * "cached" is the hit path requests take after the first one with a token.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class JwtTokenProviderBenchmark {
+
+    private JwtClaimsCache claimsCache;
+    private JwtTokenProvider tokenProvider;
+    private User user;
+    private String token;
+
+    @Setup
+    public void setUp() {
+        claimsCache = new JwtClaimsCache(10_000);
+        tokenProvider = new JwtTokenProvider(claimsCache);
+        ReflectionTestUtils.setField(tokenProvider, "secret",
+                "benchmarkSecretKeyForJWTTokenGenerationThatIsAtLeast256BitsLong");
+        ReflectionTestUtils.setField(tokenProvider, "expiration", 86_400_000L);
+        ReflectionTestUtils.invokeMethod(tokenProvider, "init");
+
+        user = new User("alice", "alice@example.com", "unused");
+        user.setId(42L);
+        token = tokenProvider.generateToken(user);
+    }
+
+    @Benchmark
+    public String generate() {
+        return tokenProvider.generateToken(user);
+    }
+
+    @Benchmark
+    public Claims parseCold() {
+        claimsCache.invalidate(token);
+        return tokenProvider.extractAllClaims(token);
+    }
+
+    @Benchmark
+    public Claims parseCached() {
+        return tokenProvider.extractAllClaims(token);
+    }
+}
@@ -0,0 +1,217 @@
+package com.example.demo.benchmark;
+
+import com.example.demo.DemoApplication;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Closed-loop HTTP load test comparing Tomcat on platform threads with virtual threads.
+ * For each mode it boots the application on a random port and a fresh database, then keeps
+ * a fixed number of clients busy against GET /notes and POST /api/stats/increment/ads,
+ * reporting throughput and p50/p99 latency.
+ *
+ * <pre>
+ * mvn -Pbenchmarks test-compile exec:exec@load-test -Dloadtest.args="--clients=256 --duration=20"
+ * </pre>
+ * Options: --clients (default 256), --duration and --warmup in seconds (20 / 5),
+ * --modes (platform,virtual).
+ */
+public final class LoadTest {
+
+    private static final Pattern TOKEN = Pattern.compile("\"token\"\\s*:\\s*\"([^\"]+)\"");
+
+    private final HttpClient client = HttpClient.newBuilder()
+            .executor(Executors.newVirtualThreadPerTaskExecutor())
+            .connectTimeout(Duration.ofSeconds(10))
+            .build();
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = parse(args);
+        int clients = Integer.parseInt(options.getOrDefault("clients", "256"));
+        Duration duration = Duration.ofSeconds(Long.parseLong(options.getOrDefault("duration", "20")));
+        Duration warmup = Duration.ofSeconds(Long.parseLong(options.getOrDefault("warmup", "5")));
+        List<String> modes = List.of(options.getOrDefault("modes", "platform,virtual").split(","));
+
+        LoadTest loadTest = new LoadTest();
+        List<String> report = new ArrayList<>();
+        for (String mode : modes) {
+            report.addAll(loadTest.run(mode, clients, warmup, duration));
+        }
+
+        System.out.println();
+        System.out.printf("%-9s %-32s %10s %10s %10s %10s %8s%n",
+                "mode", "endpoint", "requests", "req/s", "p50 ms", "p99 ms", "errors");
+        report.forEach(System.out::println);
+        System.exit(0);
+    }
+
+    private List<String> run(String mode, int clients, Duration warmup, Duration duration) throws Exception {
+        Path database = Files.createTempFile("demo-loadtest", ".db");
+        ConfigurableApplicationContext context = new SpringApplicationBuilder(DemoApplication.class)
+                .properties(Map.of(
+                        "server.port", "0",
+                        "spring.datasource.url", "jdbc:sqlite:" + database,
+                        "spring.jpa.database-platform", "org.hibernate.community.dialect.SQLiteDialect",
+                        "spring.jpa.hibernate.ddl-auto", "update",
+                        "spring.threads.virtual.enabled", String.valueOf("virtual".equals(mode)),
+                        "spring.security.oauth2.client.registration.google.client-id", "load-test",
+                        "spring.security.oauth2.client.registration.google.client-secret", "load-test",
+                        "logging.level.root", "WARN"))
+                .run();
+        try {
+            String base = "http://localhost:" + context.getEnvironment().getProperty("local.server.port");
+            String token = login(base);
+            for (int i = 0; i < 50; i++) {
+                send(HttpRequest.newBuilder(URI.create(base + "/notes"))
+                        .header("Authorization", "Bearer " + token)
+                        .header("Content-Type", "application/json")
+                        .POST(HttpRequest.BodyPublishers.ofString(
+                                "{\"title\":\"Note " + i + "\",\"content\":\"Load test note " + i + "\"}"))
+                        .build());
+            }
+
+            Supplier<HttpRequest> listNotes = () -> HttpRequest.newBuilder(URI.create(base + "/notes?limit=50"))
+                    .header("Authorization", "Bearer " + token)
+                    .GET()
+                    .build();
+            Supplier<HttpRequest> incrementAds = () -> HttpRequest.newBuilder(URI.create(base + "/api/stats/increment/ads"))
+                    .header("Authorization", "Bearer " + token)
+                    .POST(HttpRequest.BodyPublishers.noBody())
+                    .build();
+
+            List<String> rows = new ArrayList<>();
+            rows.add(measure(mode, "GET /notes", listNotes, clients, warmup, duration));
+            rows.add(measure(mode, "POST /api/stats/increment/ads", incrementAds, clients, warmup, duration));
+            return rows;
+        } finally {
+            context.close();
+            Files.deleteIfExists(database);
+            Files.deleteIfExists(Path.of(database + "-wal"));
+            Files.deleteIfExists(Path.of(database + "-shm"));
+        }
+    }
+
+    private String measure(String mode, String name, Supplier<HttpRequest> request,
+                           int clients, Duration warmup, Duration duration) throws Exception {
+        drive(request, clients, warmup);
+        Result result = drive(request, clients, duration);
+
+        long[] latencies = result.latencies();
+        Arrays.sort(latencies);
+        double seconds = duration.toMillis() / 1000.0;
+        return String.format("%-9s %-32s %10d %10.0f %10.2f %10.2f %8d",
+                mode, name, latencies.length, latencies.length / seconds,
+                percentile(latencies, 0.50) / 1e6, percentile(latencies, 0.99) / 1e6, result.errors());
+    }
+
+    private Result drive(Supplier<HttpRequest> request, int clients, Duration duration) throws Exception {
+        long deadline = System.nanoTime() + duration.toNanos();
+        LongAdder errors = new LongAdder();
+        List<Future<long[]>> workers = new ArrayList<>();
+
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int i = 0; i < clients; i++) {
+                workers.add(executor.submit(() -> {
+                    long[] samples = new long[1024];
+                    int count = 0;
+                    while (System.nanoTime() < deadline) {
+                        long start = System.nanoTime();
+                        int status = send(request.get());
+                        long elapsed = System.nanoTime() - start;
+                        if (status != 200) {
+                            errors.increment();
+                            continue;
+                        }
+                        if (count == samples.length) {
+                            samples = Arrays.copyOf(samples, count * 2);
+                        }
+                        samples[count++] = elapsed;
+                    }
+                    return Arrays.copyOf(samples, count);
+                }));
+            }
+        }
+
+        List<long[]> perWorker = new ArrayList<>();
+        for (Future<long[]> worker : workers) {
+            perWorker.add(worker.get());
+        }
+        long[] all = new long[perWorker.stream().mapToInt(samples -> samples.length).sum()];
+        int offset = 0;
+        for (long[] samples : perWorker) {
+            System.arraycopy(samples, 0, all, offset, samples.length);
+            offset += samples.length;
+        }
+        return new Result(all, errors.sum());
+    }
+
+    private String login(String base) throws IOException, InterruptedException {
+        String credentials = "{\"username\":\"loadtest\",\"email\":\"loadtest@example.com\",\"password\":\"LoadTest123x\"}";
+        send(HttpRequest.newBuilder(URI.create(base + "/users/register"))
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString(credentials))
+                .build());
+        HttpResponse<String> response = client.send(HttpRequest.newBuilder(URI.create(base + "/auth/login"))
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString(credentials))
+                .build(), HttpResponse.BodyHandlers.ofString());
+
+        Matcher matcher = TOKEN.matcher(response.body());
+        if (!matcher.find()) {
+            throw new IllegalStateException("Login failed: " + response.statusCode() + " " + response.body());
+        }
+        return matcher.group(1);
+    }
+
+    private int send(HttpRequest request) {
+        try {
+            return client.send(request, HttpResponse.BodyHandlers.discarding()).statusCode();
+        } catch (IOException e) {
+            return -1;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return -1;
+        }
+    }
+
+    private static long percentile(long[] sorted, double percentile) {
+        if (sorted.length == 0) {
+            return 0;
+        }
+        return sorted[Math.min(sorted.length - 1, (int) Math.ceil(percentile * sorted.length) - 1)];
+    }
+
+    private static Map<String, String> parse(String[] args) {
+        Map<String, String> options = new HashMap<>();
+        for (String arg : args) {
+            if (arg.startsWith("--") && arg.contains("=")) {
+                options.put(arg.substring(2, arg.indexOf('=')), arg.substring(arg.indexOf('=') + 1));
+            }
+        }
+        return options;
+    }
+
+    private record Result(long[] latencies, long errors) {
+    }
+}
@@ -0,0 +1,83 @@
+package com.example.demo.benchmark;
+
+import com.example.demo.TestDatabase;
+import com.example.demo.dto.NoteSummary;
+import com.example.demo.model.Note;
+import com.example.demo.repository.NoteRepository;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * NoteRepository against a migrated temp-file database holding 500 notes for one user.
+ * Inserts keep growing the table during the run, which is what production does too.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class NoteRepositoryBenchmark {
+
+    private static final int NOTES = 500;
+
+    private TestDatabase database;
+    private NoteRepository noteRepository;
+    private long userId;
+
+    @Setup
+    public void setUp() {
+        database = new TestDatabase();
+        noteRepository = database.noteRepository();
+        userId = database.insertUser("alice@example.com");
+
+        List<Note> notes = new ArrayList<>();
+        for (int i = 0; i < NOTES; i++) {
+            notes.add(new Note("Note " + i, "Some content for note number " + i + ", long enough to need a preview. ".repeat(8), userId));
+        }
+        // batchInsert derives the ids from last_insert_rowid() and needs a transaction
+        new TransactionTemplate(database.transactionManager())
+                .executeWithoutResult(status -> noteRepository.batchInsert(notes));
+    }
+
+    @TearDown
+    public void tearDown() {
+        database.close();
+    }
+
+    @Benchmark
+    public Note insert() {
+        return noteRepository.save(new Note("Benchmark", "Written by the benchmark", userId));
+    }
+
+    @Benchmark
+    public Optional<Note> findById() {
+        return noteRepository.findById(ThreadLocalRandom.current().nextLong(1, NOTES + 1));
+    }
+
+    @Benchmark
+    public List<Note> listFirstPage() {
+        return noteRepository.findPageByUserId(userId, null, 50);
+    }
+
+    @Benchmark
+    public List<NoteSummary> listFirstSummaryPage() {
+        return noteRepository.findSummaryPageByUserId(userId, null, 50, 200);
+    }
+}
@@ -0,0 +1,78 @@
+package com.example.demo.benchmark;
+
+import com.example.demo.dto.CreateUserRequest;
+import com.example.demo.validation.StrongPasswordValidator;
+import jakarta.validation.ConstraintViolation;
+import jakarta.validation.Validation;
+import jakarta.validation.Validator;
+import jakarta.validation.ValidatorFactory;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * StrongPasswordValidator on its own for an accepted password, and the full bean validation
+ * of a registration request for an accepted and a rejected password.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class PasswordValidationBenchmark {
+
+    private final StrongPasswordValidator passwordValidator = new StrongPasswordValidator();
+    private ValidatorFactory validatorFactory;
+    private Validator validator;
+    private CreateUserRequest validRequest;
+    private CreateUserRequest weakRequest;
+
+    @Setup
+    public void setUp() {
+        validatorFactory = Validation.buildDefaultValidatorFactory();
+        validator = validatorFactory.getValidator();
+        validRequest = request("Correct9Horse4Battery");
+        weakRequest = request("alllowercase1");
+    }
+
+    @TearDown
+    public void tearDown() {
+        validatorFactory.close();
+    }
+
+    @Benchmark
+    public boolean isValid() {
+        // The context is only touched when a password is rejected
+        return passwordValidator.isValid("Correct9Horse4Battery", null);
+    }
+
+    @Benchmark
+    public Set<ConstraintViolation<CreateUserRequest>> validateAccepted() {
+        return validator.validate(validRequest);
+    }
+
+    @Benchmark
+    public Set<ConstraintViolation<CreateUserRequest>> validateRejected() {
+        return validator.validate(weakRequest);
+    }
+
+    private static CreateUserRequest request(String password) {
+        CreateUserRequest request = new CreateUserRequest();
+        request.setUsername("alice");
+        request.setEmail("alice@example.com");
+        request.setPassword(password);
+        return request;
+    }
+}
@@ -0,0 +1,93 @@
+package com.example.demo.benchmark;
+
+import com.example.demo.dto.NoteSummary;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Jackson serialization of the response maps NoteController builds, with an ObjectMapper
+ * configured the way Spring Boot configures the MVC one.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ResponseSerializationBenchmark {
+
+    private ObjectMapper objectMapper;
+    private Map<String, Object> noteResponse;
+    private Map<String, Object> notesPageResponse;
+    private Map<String, Object> summaryPageResponse;
+
+    @Setup
+    public void setUp() {
+        objectMapper = Jackson2ObjectMapperBuilder.json().build();
+        LocalDateTime now = LocalDateTime.now();
+
+        noteResponse = note(1, now);
+
+        List<Map<String, Object>> notes = new ArrayList<>();
+        List<NoteSummary> summaries = new ArrayList<>();
+        for (int i = 0; i < 50; i++) {
+            notes.add(note(i, now));
+            summaries.add(new NoteSummary((long) i, "Note " + i, "A preview of the note content ".repeat(6), true, now));
+        }
+        notesPageResponse = page(notes);
+        summaryPageResponse = page(summaries);
+    }
+
+    @Benchmark
+    public byte[] singleNote() throws JsonProcessingException {
+        return objectMapper.writeValueAsBytes(noteResponse);
+    }
+
+    @Benchmark
+    public byte[] notesPage() throws JsonProcessingException {
+        return objectMapper.writeValueAsBytes(notesPageResponse);
+    }
+
+    @Benchmark
+    public byte[] summaryPage() throws JsonProcessingException {
+        return objectMapper.writeValueAsBytes(summaryPageResponse);
+    }
+
+    private static Map<String, Object> note(long id, LocalDateTime at) {
+        Map<String, Object> response = new HashMap<>();
+        response.put("id", id);
+        response.put("title", "Note " + id);
+        response.put("content", "Some content for note number " + id + ", long enough to need a preview. ".repeat(8));
+        response.put("userId", 42L);
+        response.put("createdAt", at);
+        response.put("updatedAt", at);
+        return response;
+    }
+
+    private static Map<String, Object> page(List<?> items) {
+        Map<String, Object> response = new HashMap<>();
+        response.put("notes", items);
+        response.put("count", items.size());
+        response.put("nextCursor", "MTc2MDgxMjM0NTY3ODo0Mg");
+        response.put("hasMore", true);
+        return response;
+    }
+}
@@ -0,0 +1,162 @@
+package com.example.demo.benchmark;
+
+import com.example.demo.config.SqliteDataSourceConfig;
+import com.zaxxer.hikari.HikariConfig;
+import com.zaxxer.hikari.HikariDataSource;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Mixed note reads and writes against a SQLite file, six reader threads and two writer threads.
+ * "default" is sqlite-jdbc out of the box behind one Hikari pool, "tuned" is the
+ * SqliteDataSourceConfig setup. Failed operations (mostly SQLITE_BUSY) are reported as counters.
+ */
+@State(Scope.Group)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class SqliteMixedWorkloadBenchmark {
+
+    private static final int USERS = 50;
+    private static final int NOTES_PER_USER = 200;
+
+    @Param({"default", "tuned"})
+    public String setup;
+
+    private Path databaseFile;
+    private final List<HikariDataSource> pools = new ArrayList<>();
+    private JdbcTemplate jdbcTemplate;
+    private TransactionTemplate readTransaction;
+    private TransactionTemplate writeTransaction;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        databaseFile = Files.createTempFile("sqlite-bench", ".db");
+        String url = "jdbc:sqlite:" + databaseFile;
+
+        DataSource dataSource;
+        if ("tuned".equals(setup)) {
+            var pragmas = SqliteDataSourceConfig.pragmas(5000, 16384, 256);
+            HikariDataSource writer = SqliteDataSourceConfig.writerPool(url, pragmas, 30000);
+            HikariDataSource reader = SqliteDataSourceConfig.readerPool(url, pragmas, 4);
+            pools.add(writer);
+            pools.add(reader);
+            LazyConnectionDataSourceProxy proxy = new LazyConnectionDataSourceProxy(writer);
+            proxy.setReadOnlyDataSource(reader);
+            dataSource = proxy;
+        } else {
+            HikariConfig config = new HikariConfig();
+            config.setJdbcUrl(url);
+            HikariDataSource pool = new HikariDataSource(config);
+            pools.add(pool);
+            dataSource = pool;
+        }
+
+        jdbcTemplate = new JdbcTemplate(dataSource);
+        DataSourceTransactionManager transactionManager = new DataSourceTransactionManager(dataSource);
+        writeTransaction = new TransactionTemplate(transactionManager);
+        readTransaction = new TransactionTemplate(transactionManager);
+        readTransaction.setReadOnly(true);
+
+        jdbcTemplate.execute("CREATE TABLE notes (id INTEGER PRIMARY KEY AUTOINCREMENT, title VARCHAR(255) NOT NULL, "
+                + "content TEXT NOT NULL, user_id INTEGER NOT NULL, created_at DATETIME, updated_at DATETIME)");
+        jdbcTemplate.execute("CREATE INDEX idx_notes_user_updated ON notes(user_id, updated_at DESC, id)");
+        writeTransaction.executeWithoutResult(status -> {
+            List<Object[]> rows = new ArrayList<>();
+            long now = System.currentTimeMillis();
+            for (int user = 1; user <= USERS; user++) {
+                for (int i = 0; i < NOTES_PER_USER; i++) {
+                    Timestamp at = new Timestamp(now - i * 1000L);
+                    rows.add(new Object[]{"Note " + i, "Content of note " + i + " for user " + user, user, at, at});
+                }
+            }
+            jdbcTemplate.batchUpdate(
+                    "INSERT INTO notes (title, content, user_id, created_at, updated_at) VALUES (?, ?, ?, ?, ?)", rows);
+        });
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        pools.forEach(HikariDataSource::close);
+        Files.deleteIfExists(databaseFile);
+        Files.deleteIfExists(Path.of(databaseFile + "-wal"));
+        Files.deleteIfExists(Path.of(databaseFile + "-shm"));
+    }
+
+    @Benchmark
+    @Group("mixed")
+    @GroupThreads(6)
+    public Object readPage(Failures failures) {
+        long userId = ThreadLocalRandom.current().nextLong(1, USERS + 1);
+        try {
+            return readTransaction.execute(status -> jdbcTemplate.queryForList(
+                    "SELECT id, title, content, updated_at FROM notes WHERE user_id = ? "
+                            + "ORDER BY updated_at DESC, id LIMIT 50", userId));
+        } catch (DataAccessException e) {
+            failures.readFailures++;
+            return null;
+        }
+    }
+
+    @Benchmark
+    @Group("mixed")
+    @GroupThreads(2)
+    public void writeNote(Failures failures) {
+        long userId = ThreadLocalRandom.current().nextLong(1, USERS + 1);
+        try {
+            writeTransaction.executeWithoutResult(status -> {
+                Timestamp now = new Timestamp(System.currentTimeMillis());
+                jdbcTemplate.update("INSERT INTO notes (title, content, user_id, created_at, updated_at) VALUES (?, ?, ?, ?, ?)",
+                        "Benchmark", "Written by the benchmark", userId, now, now);
+                jdbcTemplate.update("UPDATE notes SET updated_at = ? WHERE id = "
+                        + "(SELECT id FROM notes WHERE user_id = ? ORDER BY updated_at LIMIT 1)", now, userId);
+            });
+        } catch (DataAccessException e) {
+            failures.writeFailures++;
+        }
+    }
+
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class Failures {
+        public long readFailures;
+        public long writeFailures;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            readFailures = 0;
+            writeFailures = 0;
+        }
+    }
+}
@@ -0,0 +1,78 @@
+package com.example.demo.benchmark;
+
+import com.example.demo.TestDatabase;
+import com.example.demo.model.Statistics;
+import com.example.demo.repository.StatisticsRepository;
+import com.example.demo.service.StatisticsAggregator;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.scheduling.concurrent.SimpleAsyncTaskScheduler;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Stats ingestion: the entity's increment helpers, and the in-memory aggregator the
+ * increment endpoints record into, hit from four threads for the same user.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class StatisticsBenchmark {
+
+    @State(Scope.Thread)
+    public static class EntityState {
+        final Statistics statistics = new Statistics(1L);
+    }
+
+    @State(Scope.Benchmark)
+    public static class AggregatorState {
+        TestDatabase database;
+        StatisticsAggregator aggregator;
+        long userId;
+
+        @Setup
+        public void setUp() {
+            database = new TestDatabase();
+            userId = database.insertUser("alice@example.com");
+            // Flushing is left to the scheduled job in the application, not scheduled here
+            aggregator = new StatisticsAggregator(new StatisticsRepository(database.jdbcTemplate()),
+                    database.transactionManager(), new SimpleAsyncTaskScheduler(), 5000, 30);
+        }
+
+        @TearDown
+        public void tearDown() {
+            aggregator.flush();
+            database.close();
+        }
+    }
+
+    @Benchmark
+    public Statistics incrementAdsBlocked(EntityState state) {
+        state.statistics.incrementAdsBlocked(1);
+        return state.statistics;
+    }
+
+    @Benchmark
+    public Statistics incrementTrackersBlocked(EntityState state) {
+        state.statistics.incrementTrackersBlocked(1);
+        return state.statistics;
+    }
+
+    @Benchmark
+    @Threads(4)
+    public long aggregatorRecordAds(AggregatorState state) {
+        return state.aggregator.recordAds(state.userId, 1);
+    }
+}
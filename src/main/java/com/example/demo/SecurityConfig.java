@@ -73,6 +73,9 @@ public class SecurityConfig {
                         .requestMatchers("/", "/index.html", "/error").permitAll()
                         .requestMatchers("/auth/**", "/users/register", "/users/login").permitAll()
                         .requestMatchers("/oauth2/**", "/login/oauth2/**").permitAll()
+                        .requestMatchers("/api/blocklist/**").permitAll()
+                        // Scraped by Prometheus without a token, nothing else under /actuator is exposed
+                        .requestMatchers("/actuator/health", "/actuator/prometheus").permitAll()
                         .requestMatchers("/admin/**").hasRole("ADMIN")
                         .requestMatchers("/user/**", "/notes/**").hasAnyAuthority("ROLE_USER", "ROLE_ADMIN", "OIDC_USER")
                         .anyRequest().authenticated()
@@ -0,0 +1,18 @@
+package com.example.demo.config;
+
+import org.hibernate.cfg.SchemaToolingSettings;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernatePropertiesCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+public class HibernateConfig {
+
+    // Schema validation/update only looks at the tables Hibernate maps. The grouped default reads
+    // every table's metadata and fails on FTS5 virtual tables, whose columns have no declared type.
+    @Bean
+    public HibernatePropertiesCustomizer schemaExtractionCustomizer() {
+        return properties -> properties.putIfAbsent(
+                SchemaToolingSettings.HBM2DDL_JDBC_METADATA_EXTRACTOR_STRATEGY, "individually");
+    }
+}
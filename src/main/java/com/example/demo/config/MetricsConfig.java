@@ -0,0 +1,187 @@
+package com.example.demo.config;
+
+import com.example.demo.security.LoginRateLimiter;
+import com.example.demo.security.PasswordHashingService;
+import com.example.demo.service.BlocklistService;
+import com.example.demo.service.DomainSketchService;
+import com.example.demo.service.NoteCache;
+import com.example.demo.service.NoteCompactionService;
+import com.example.demo.service.NoteImportService;
+import com.example.demo.service.StatisticsAggregator;
+import com.example.demo.service.StatisticsRollupService;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.aopalliance.intercept.MethodInterceptor;
+import org.springframework.aop.framework.AbstractAdvisingBeanPostProcessor;
+import org.springframework.aop.support.DefaultPointcutAdvisor;
+import org.springframework.aop.support.StaticMethodMatcherPointcut;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.annotation.AnnotatedElementUtils;
+import org.springframework.stereotype.Repository;
+import org.springframework.util.ClassUtils;
+
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Application metrics beyond what Boot instruments itself (http.server.requests, JVM, Hikari
+ * pools): repository call timers and gauges over the in-memory queues and buffers. Published
+ * at /actuator/prometheus.
+ */
+@Configuration
+public class MetricsConfig {
+
+    // Static, so the post-processor doesn't pull this configuration in early
+    @Bean
+    static RepositoryMetricsPostProcessor repositoryMetricsPostProcessor(ObjectProvider<MeterRegistry> meterRegistry) {
+        return new RepositoryMetricsPostProcessor(meterRegistry);
+    }
+
+    @Bean
+    public MeterBinder writeBehindMetrics(StatisticsAggregator statisticsAggregator,
+                                          StatisticsRollupService statisticsRollupService,
+                                          DomainSketchService domainSketchService) {
+        return registry -> {
+            Gauge.builder("stats.pending.deltas", statisticsAggregator, StatisticsAggregator::getPendingDeltas)
+                    .description("Blocked counts recorded but not flushed to the statistics table yet")
+                    .register(registry);
+            Gauge.builder("stats.counters.users", statisticsAggregator, StatisticsAggregator::getTrackedUsers)
+                    .description("Per-user statistics totals held in memory")
+                    .register(registry);
+            Gauge.builder("stats.rollups.pending", statisticsRollupService, StatisticsRollupService::getPendingBuckets)
+                    .description("History buckets and domain counts waiting for the next rollup flush")
+                    .register(registry);
+            Gauge.builder("stats.sketches.users", domainSketchService, DomainSketchService::getTrackedUsers)
+                    .description("Per-user top-domain sketches held in memory")
+                    .register(registry);
+        };
+    }
+
+    @Bean
+    public MeterBinder authMetrics(PasswordHashingService passwordHashingService, LoginRateLimiter loginRateLimiter) {
+        return registry -> {
+            Gauge.builder("auth.password.queue.depth", passwordHashingService, PasswordHashingService::getQueueDepth)
+                    .description("Password hashes waiting for a hashing thread")
+                    .register(registry);
+            Gauge.builder("auth.password.active", passwordHashingService, PasswordHashingService::getActiveCount)
+                    .description("Password hashes in progress")
+                    .register(registry);
+            FunctionCounter.builder("auth.password.rejected", passwordHashingService,
+                            PasswordHashingService::getRejectedCount)
+                    .description("Requests turned away with 429 because the hashing pool was saturated")
+                    .register(registry);
+            FunctionCounter.builder("auth.login.throttled", loginRateLimiter, LoginRateLimiter::getThrottledCount)
+                    .description("Login attempts rejected by the per IP / per email rate limit")
+                    .register(registry);
+            Gauge.builder("auth.login.tracked.keys", loginRateLimiter, LoginRateLimiter::getTrackedKeys)
+                    .description("IP addresses and emails with a login rate limit bucket")
+                    .register(registry);
+        };
+    }
+
+    @Bean
+    public MeterBinder blocklistMetrics(BlocklistService blocklistService) {
+        return registry -> {
+            Gauge.builder("blocklist.rules", blocklistService,
+                            service -> service.getSnapshot().trie().getRuleCount())
+                    .description("Rules in the current blocklist snapshot")
+                    .register(registry);
+            Gauge.builder("blocklist.age", blocklistService,
+                            service -> Duration.between(service.getSnapshot().compiledAt(), Instant.now()).toSeconds())
+                    .description("Time since the current blocklist snapshot was compiled")
+                    .baseUnit("seconds")
+                    .register(registry);
+        };
+    }
+
+    // cache_gets{result}, cache_evictions, cache_eviction_weight and cache_size per cache, plus the estimated bytes held
+    @Bean
+    public MeterBinder noteCacheMetrics(NoteCache noteCache) {
+        return registry -> {
+            CaffeineCacheMetrics.monitor(registry, noteCache.getPages(), "notes.pages");
+            CaffeineCacheMetrics.monitor(registry, noteCache.getNotes(), "notes.byId");
+            CaffeineCacheMetrics.monitor(registry, noteCache.getRevisions(), "notes.revisions");
+            Gauge.builder("notes.cache.weight", noteCache, NoteCache::getPagesWeightedSize)
+                    .tag("cache", "notes.pages")
+                    .description("Estimated size of the cached first pages of note listings")
+                    .baseUnit("bytes")
+                    .register(registry);
+            Gauge.builder("notes.cache.weight", noteCache, NoteCache::getNotesWeightedSize)
+                    .tag("cache", "notes.byId")
+                    .description("Estimated size of the cached single notes")
+                    .baseUnit("bytes")
+                    .register(registry);
+        };
+    }
+
+    @Bean
+    public MeterBinder noteStorageMetrics(NoteCompactionService noteCompactionService) {
+        return registry -> FunctionCounter.builder("notes.storage.compacted", noteCompactionService,
+                        NoteCompactionService::getCompactedCount)
+                .description("Existing notes rewritten with a compressed body since startup")
+                .register(registry);
+    }
+
+    @Bean
+    public MeterBinder noteImportMetrics(NoteImportService noteImportService) {
+        return registry -> {
+            FunctionCounter.builder("notes.import.records", noteImportService, NoteImportService::getImportedCount)
+                    .tag("outcome", "imported")
+                    .description("Imported notes, counted as each chunk commits")
+                    .register(registry);
+            FunctionCounter.builder("notes.import.records", noteImportService, NoteImportService::getRejectedCount)
+                    .tag("outcome", "rejected")
+                    .description("Import records skipped as invalid")
+                    .register(registry);
+        };
+    }
+
+    /**
+     * Wraps the public methods of @Repository classes in a db.repository timer tagged with the
+     * repository, method and exception. Added in front of an existing transaction proxy, so
+     * the time includes opening and committing the transaction.
+     */
+    static final class RepositoryMetricsPostProcessor extends AbstractAdvisingBeanPostProcessor {
+
+        RepositoryMetricsPostProcessor(ObjectProvider<MeterRegistry> meterRegistry) {
+            StaticMethodMatcherPointcut pointcut = new StaticMethodMatcherPointcut() {
+                @Override
+                public boolean matches(Method method, Class<?> targetClass) {
+                    Class<?> userClass = ClassUtils.getUserClass(targetClass);
+                    return AnnotatedElementUtils.hasAnnotation(userClass, Repository.class)
+                            && method.getDeclaringClass() == userClass
+                            && Modifier.isPublic(method.getModifiers());
+                }
+            };
+            MethodInterceptor timing = invocation -> {
+                long start = System.nanoTime();
+                String exception = "none";
+                try {
+                    return invocation.proceed();
+                } catch (Throwable e) {
+                    exception = e.getClass().getSimpleName();
+                    throw e;
+                } finally {
+                    Timer.builder("db.repository")
+                            .tag("repository", ClassUtils.getUserClass(invocation.getThis()).getSimpleName())
+                            .tag("method", invocation.getMethod().getName())
+                            .tag("exception", exception)
+                            .register(meterRegistry.getObject())
+                            .record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+                }
+            };
+            this.advisor = new DefaultPointcutAdvisor(pointcut, timing);
+            setBeforeExistingAdvisors(true);
+            setProxyTargetClass(true);
+        }
+    }
+}
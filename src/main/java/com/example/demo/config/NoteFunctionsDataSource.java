@@ -0,0 +1,50 @@
+package com.example.demo.config;
+
+import com.example.demo.model.NoteContentCodec;
+import org.sqlite.Function;
+import org.sqlite.SQLiteConfig;
+import org.sqlite.SQLiteConnection;
+import org.sqlite.SQLiteDataSource;
+
+import java.sql.SQLException;
+import java.util.Properties;
+
+/**
+ * sqlite-jdbc data source that registers the application's SQL functions on every connection it
+ * opens. Since V14 the schema doesn't call note_content() any more, but V12 still does while it
+ * rebuilds the index, so the writer connection Flyway migrates on has to provide it.
+ */
+public class NoteFunctionsDataSource extends SQLiteDataSource {
+
+    public NoteFunctionsDataSource(String url, Properties pragmas) {
+        super(new SQLiteConfig(pragmas));
+        setUrl(url);
+    }
+
+    @Override
+    public SQLiteConnection getConnection(String username, String password) throws SQLException {
+        SQLiteConnection connection = super.getConnection(username, password);
+        try {
+            // note_content(content, content_compressed): the full body, inflated if it is stored compressed
+            Function.create(connection, "note_content", new NoteContentFunction(), 2, Function.FLAG_DETERMINISTIC);
+        } catch (SQLException e) {
+            connection.close();
+            throw e;
+        }
+        return connection;
+    }
+
+    // One instance per connection, sqlite-jdbc keeps per-call state in the Function object
+    private static final class NoteContentFunction extends Function {
+
+        @Override
+        protected void xFunc() throws SQLException {
+            byte[] compressed = value_blob(1);
+            if (compressed == null || compressed.length == 0) {
+                result(value_text(0));
+            } else {
+                result(NoteContentCodec.decompress(compressed));
+            }
+        }
+    }
+}
@@ -0,0 +1,15 @@
+package com.example.demo.config;
+
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.annotation.EnableScheduling;
+
+/**
+ * Makes Boot provide its TaskScheduler, which the background jobs (stats flushes, sketch
+ * checkpoints, rollup and note compaction, tombstone pruning, blocklist reloads) share. It runs
+ * on virtual threads when spring.threads.virtual.enabled is set, on the spring.task.scheduling
+ * pool otherwise. A job still running at shutdown is left to finish rather than interrupted.
+ */
+@Configuration
+@EnableScheduling
+public class SchedulingConfig {
+}
@@ -0,0 +1,162 @@
+package com.example.demo.config;
+
+import com.zaxxer.hikari.HikariConfig;
+import com.zaxxer.hikari.HikariDataSource;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+import org.sqlite.SQLiteConfig;
+import org.sqlite.SQLiteDataSource;
+
+import javax.sql.DataSource;
+import java.util.Properties;
+import java.util.concurrent.Semaphore;
+
+/**
+ * SQLite connection setup. Every connection runs in WAL mode with the pragmas below.
+ * Read-only transactions are served from a pool of query-only connections, everything
+ * else goes through a single writer connection so concurrent writers wait in the pool
+ * instead of racing for the database lock and failing with SQLITE_BUSY. Note exports read from
+ * a third pool of their own, see exportDataSource().
+ */
+@Configuration
+public class SqliteDataSourceConfig {
+
+    private final String url;
+    private final int readPoolSize;
+    private final long writerQueueTimeoutMs;
+    private final Properties pragmas;
+    private final boolean virtualThreads;
+    private final int maxConcurrentConnections;
+    private final int exportPoolSize;
+
+    public SqliteDataSourceConfig(DataSourceProperties dataSourceProperties,
+                                  @Value("${sqlite.read-pool-size:4}") int readPoolSize,
+                                  @Value("${sqlite.writer.queue-timeout-ms:30000}") long writerQueueTimeoutMs,
+                                  @Value("${sqlite.busy-timeout-ms:5000}") int busyTimeoutMs,
+                                  @Value("${sqlite.cache-size-kb:16384}") int cacheSizeKb,
+                                  @Value("${sqlite.mmap-size-mb:256}") long mmapSizeMb,
+                                  @Value("${spring.threads.virtual.enabled:false}") boolean virtualThreads,
+                                  @Value("${sqlite.max-concurrent-connections:0}") int maxConcurrentConnections,
+                                  @Value("${notes.export.max-concurrent:2}") int exportPoolSize) {
+        this.url = dataSourceProperties.determineUrl();
+        this.readPoolSize = readPoolSize;
+        this.writerQueueTimeoutMs = writerQueueTimeoutMs;
+        this.pragmas = pragmas(busyTimeoutMs, cacheSizeKb, mmapSizeMb);
+        this.virtualThreads = virtualThreads;
+        this.maxConcurrentConnections = maxConcurrentConnections;
+        this.exportPoolSize = exportPoolSize;
+    }
+
+    // Read-only transactions go to the reader pool, everything else to the writer. The proxy only
+    // fetches a physical connection when the first statement runs, once the read-only flag is known
+    @Bean
+    @Primary
+    public DataSource dataSource() {
+        DataSource writer = writerDataSource();
+        DataSource reader = readerDataSource();
+
+        // On virtual threads, JDBC calls pin their carrier; keep some carriers free for other work
+        if (virtualThreads) {
+            Semaphore permits = new Semaphore(permitCount(), true);
+            writer = new ConcurrencyLimitingDataSource(writer, permits, writerQueueTimeoutMs);
+            reader = new ConcurrencyLimitingDataSource(reader, permits, writerQueueTimeoutMs);
+        }
+
+        LazyConnectionDataSourceProxy dataSource = new LazyConnectionDataSourceProxy(writer);
+        dataSource.setReadOnlyDataSource(reader);
+        return dataSource;
+    }
+
+    // 0 means one less than the number of carrier threads, and never more than the pools can hand out
+    private int permitCount() {
+        if (maxConcurrentConnections > 0) {
+            return maxConcurrentConnections;
+        }
+        int carriers = Runtime.getRuntime().availableProcessors();
+        return Math.max(1, Math.min(carriers - 1, readPoolSize + 1));
+    }
+
+    @Bean(defaultCandidate = false)
+    public HikariDataSource writerDataSource() {
+        return writerPool(url, pragmas, writerQueueTimeoutMs);
+    }
+
+    @Bean(defaultCandidate = false)
+    public HikariDataSource readerDataSource() {
+        return readerPool(url, pragmas, readPoolSize);
+    }
+
+    /**
+     * One query-only connection per export NoteExportService lets run. An export holds its
+     * connection until the client has downloaded the last row, so exports don't share the reader
+     * pool or the virtual thread permits: a few slow downloads would otherwise starve every other
+     * read. A running export only pins a carrier while it fetches the next rows, at most
+     * notes.export.max-concurrent carriers at once, which should stay below the number of cores.
+     */
+    @Bean(defaultCandidate = false)
+    public HikariDataSource exportDataSource() {
+        return exportPool(url, pragmas, exportPoolSize);
+    }
+
+    public static Properties pragmas(int busyTimeoutMs, int cacheSizeKb, long mmapSizeMb) {
+        // sqlite-jdbc applies these as PRAGMAs when it opens a connection
+        Properties properties = new Properties();
+        properties.setProperty("journal_mode", "WAL");
+        // Durable across application crashes; only an OS crash can lose the last commits
+        properties.setProperty("synchronous", "NORMAL");
+        properties.setProperty("busy_timeout", String.valueOf(busyTimeoutMs));
+        // A negative cache_size is in KiB rather than pages
+        properties.setProperty("cache_size", String.valueOf(-cacheSizeKb));
+        properties.setProperty("mmap_size", String.valueOf(mmapSizeMb * 1024 * 1024));
+        properties.setProperty("temp_store", "MEMORY");
+        properties.setProperty("foreign_keys", "true");
+        return properties;
+    }
+
+    public static HikariDataSource writerPool(String url, Properties pragmas, long queueTimeoutMs) {
+        HikariConfig config = new HikariConfig();
+        config.setPoolName("sqlite-writer");
+        Properties properties = copyOf(pragmas);
+        // Take the write lock when the transaction starts, a deferred transaction that has to
+        // upgrade its lock later gets SQLITE_BUSY right away instead of waiting for busy_timeout
+        properties.setProperty("transaction_mode", "IMMEDIATE");
+        config.setDataSource(new NoteFunctionsDataSource(url, properties));
+        config.setMaximumPoolSize(1);
+        config.setMinimumIdle(1);
+        config.setConnectionTimeout(queueTimeoutMs);
+        return new HikariDataSource(config);
+    }
+
+    public static HikariDataSource readerPool(String url, Properties pragmas, int poolSize) {
+        return queryOnlyPool("sqlite-reader", url, pragmas, poolSize, 1);
+    }
+
+    // Opened on the first export, NoteExportService never asks for more connections than it has
+    public static HikariDataSource exportPool(String url, Properties pragmas, int poolSize) {
+        return queryOnlyPool("sqlite-export", url, pragmas, poolSize, 0);
+    }
+
+    private static HikariDataSource queryOnlyPool(String name, String url, Properties pragmas, int poolSize,
+                                                  int minimumIdle) {
+        HikariConfig config = new HikariConfig();
+        config.setPoolName(name);
+        // Nothing a query-only connection runs calls note_content() any more (see V14)
+        SQLiteDataSource dataSource = new SQLiteDataSource(new SQLiteConfig(copyOf(pragmas)));
+        dataSource.setUrl(url);
+        config.setDataSource(dataSource);
+        config.setConnectionInitSql("PRAGMA query_only = 1");
+        config.setMaximumPoolSize(poolSize);
+        config.setMinimumIdle(minimumIdle);
+        return new HikariDataSource(config);
+    }
+
+    private static Properties copyOf(Properties properties) {
+        Properties copy = new Properties();
+        copy.putAll(properties);
+        return copy;
+    }
+}
@@ -0,0 +1,48 @@
+package com.example.demo.controller;
+
+import java.util.Locale;
+
+/**
+ * Reads the Accept-Encoding request header. Only gzip is ever offered, so all that matters is
+ * whether the client accepts it: listed (as gzip, x-gzip or *) with a q-value above 0.
+ */
+final class AcceptEncoding {
+
+    private AcceptEncoding() {
+    }
+
+    static boolean acceptsGzip(String acceptEncoding) {
+        if (acceptEncoding == null || acceptEncoding.isBlank()) {
+            return false;
+        }
+        double gzip = -1;
+        double any = -1;
+        for (String coding : acceptEncoding.split(",")) {
+            String[] parts = coding.split(";");
+            String name = parts[0].trim().toLowerCase(Locale.ROOT);
+            double quality = quality(parts);
+            if (name.equals("gzip") || name.equals("x-gzip")) {
+                gzip = Math.max(gzip, quality);
+            } else if (name.equals("*")) {
+                any = quality;
+            }
+        }
+        // An explicit gzip entry wins over the wildcard, gzip;q=0 turns it down even with *
+        return (gzip >= 0 ? gzip : any) > 0;
+    }
+
+    // A missing or malformed q-value counts as 1, as if it weren't there
+    private static double quality(String[] parameters) {
+        for (int i = 1; i < parameters.length; i++) {
+            String parameter = parameters[i].trim().toLowerCase(Locale.ROOT);
+            if (parameter.startsWith("q=")) {
+                try {
+                    return Double.parseDouble(parameter.substring(2).trim());
+                } catch (NumberFormatException e) {
+                    return 1;
+                }
+            }
+        }
+        return 1;
+    }
+}
@@ -2,7 +2,7 @@ package com.example.demo.controller;
 
 import com.example.demo.model.User;
 import com.example.demo.security.JwtTokenProvider;
-import com.example.demo.security.MyUserDetailsService;
+import com.example.demo.security.LoginRateLimiter;
 import com.example.demo.service.UserService;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpSession;
@@ -11,7 +11,6 @@ import org.slf4j.LoggerFactory;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.core.context.SecurityContextHolder;
-import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.web.bind.annotation.*;
 
 import java.util.HashMap;
@@ -27,12 +26,13 @@ public class AuthController {
 
     private final UserService userService;
     private final JwtTokenProvider jwtTokenProvider;
-    private final MyUserDetailsService userDetailsService;
+    private final LoginRateLimiter loginRateLimiter;
 
-    public AuthController(UserService userService, JwtTokenProvider jwtTokenProvider, MyUserDetailsService userDetailsService) {
+    public AuthController(UserService userService, JwtTokenProvider jwtTokenProvider,
+                          LoginRateLimiter loginRateLimiter) {
         this.userService = userService;
         this.jwtTokenProvider = jwtTokenProvider;
-        this.userDetailsService = userDetailsService;
+        this.loginRateLimiter = loginRateLimiter;
     }
 
     @PostMapping("/login")
@@ -47,6 +47,9 @@ public class AuthController {
             return ResponseEntity.badRequest().body(response);
         }
 
+        // 429 before any hashing, behind a proxy set server.forward-headers-strategy for the real client IP
+        loginRateLimiter.checkLogin(request.getRemoteAddr(), email);
+
         // Clear OAuth2 session
         HttpSession session = request.getSession(false);
         if (session != null) {
@@ -61,9 +64,7 @@ public class AuthController {
             Optional<User> userOpt = userService.findByEmail(email);
             if (userOpt.isPresent()) {
                 User user = userOpt.get();
-                UserDetails userDetails = userDetailsService.loadUserByUsername(email);
-                String role = user.getRole() != null ? user.getRole() : "ROLE_USER";
-                String token = jwtTokenProvider.generateToken(userDetails, role);
+                String token = jwtTokenProvider.generateToken(user);
 
                 response.put("message", "Login successful");
                 response.put("token", token);
@@ -0,0 +1,112 @@
+package com.example.demo.controller;
+
+import com.example.demo.service.BlocklistService;
+import com.example.demo.service.DomainSuffixTrie;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.HashMap;
+import java.util.Map;
+
+@RestController
+@RequestMapping("/api/blocklist")
+public class BlocklistController {
+
+    private final BlocklistService blocklistService;
+
+    public BlocklistController(BlocklistService blocklistService) {
+        this.blocklistService = blocklistService;
+    }
+
+    // Check a single host against the current blocklist
+    @GetMapping("/match")
+    public ResponseEntity<Map<String, Object>> match(@RequestParam String host) {
+        BlocklistService.Snapshot snapshot = blocklistService.getSnapshot();
+        // The same snapshot for the lookup and the reported version, a reload in between can't mix them
+        DomainSuffixTrie.Match match = snapshot.match(host);
+
+        Map<String, Object> response = new HashMap<>();
+        response.put("host", host);
+        response.put("blocked", match != null);
+        if (match != null) {
+            response.put("rule", match.rule());
+            response.put("category", match.category());
+        }
+        response.put("version", snapshot.version());
+        return ResponseEntity.ok(response);
+    }
+
+    /**
+     * declarativeNetRequest block rules in the format of the extension's rules.json. With
+     * ?since=version only the rules added and removed since that version are returned (nothing,
+     * when it is the current one), or the full set when that version is too old. 304 only for a
+     * matching If-None-Match, a client that sends none always gets a body.
+     */
+    @GetMapping
+    public ResponseEntity<byte[]> ruleSet(
+            @RequestParam(required = false) String since,
+            @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch,
+            @RequestHeader(value = HttpHeaders.ACCEPT_ENCODING, required = false) String acceptEncoding) {
+        BlocklistService.Snapshot snapshot = blocklistService.getSnapshot();
+        BlocklistService.Payload body = since == null
+                ? snapshot.rules()
+                : blocklistService.getDelta(snapshot, since).orElse(snapshot.rules());
+        return serve(snapshot, body, ifNoneMatch, acceptEncoding);
+    }
+
+    // Compiled trie for matching inside the extension, stored gzipped and sent without re-encoding
+    @GetMapping("/snapshot")
+    public ResponseEntity<byte[]> snapshot(
+            @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch,
+            @RequestHeader(value = HttpHeaders.ACCEPT_ENCODING, required = false) String acceptEncoding) {
+        BlocklistService.Snapshot snapshot = blocklistService.getSnapshot();
+        return serve(snapshot, snapshot.trieSnapshot(), ifNoneMatch, acceptEncoding);
+    }
+
+    // Each version's bytes never change, so the version is a strong ETag; the encoding is part of it
+    private ResponseEntity<byte[]> serve(BlocklistService.Snapshot snapshot, BlocklistService.Payload body,
+                                         String ifNoneMatch, String acceptEncoding) {
+        boolean gzip = AcceptEncoding.acceptsGzip(acceptEncoding);
+        String eTag = gzip ? snapshot.version() + "-gzip" : snapshot.version();
+        if (ifNoneMatch != null && matchesVersion(ifNoneMatch, snapshot.version())) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED)
+                    .eTag(eTag)
+                    .header("X-Blocklist-Version", snapshot.version())
+                    .build();
+        }
+
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_JSON)
+                .eTag(eTag)
+                .cacheControl(CacheControl.noCache())
+                .header("X-Blocklist-Version", snapshot.version())
+                .header(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING);
+        if (gzip) {
+            return response.header(HttpHeaders.CONTENT_ENCODING, "gzip").body(body.gzip());
+        }
+        return response.body(body.identity());
+    }
+
+    private static boolean matchesVersion(String ifNoneMatch, String version) {
+        for (String tag : ifNoneMatch.split(",")) {
+            String value = tag.trim();
+            if (value.equals("*")) {
+                return true;
+            }
+            value = value.startsWith("W/") ? value.substring(2) : value;
+            value = value.replace("\"", "");
+            if (value.equals(version) || value.equals(version + "-gzip")) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,16 @@
+package com.example.demo.controller;
+
+import org.springframework.http.CacheControl;
+
+/**
+ * Cache-Control for the conditional GETs of the note and statistics endpoints, which validate
+ * with the ETag and Last-Modified of the user's data.
+ */
+final class CachePolicy {
+
+    // Per-user data: browsers may keep it but must revalidate, shared caches must not store it
+    static final CacheControl PRIVATE_REVALIDATE = CacheControl.noCache().cachePrivate();
+
+    private CachePolicy() {
+    }
+}
@@ -1,32 +1,67 @@
 package com.example.demo.controller;
 
+import com.example.demo.dto.NoteBatchRequest;
+import com.example.demo.dto.NoteBatchResult;
+import com.example.demo.dto.NoteChangePage;
 import com.example.demo.dto.NoteDTO;
+import com.example.demo.dto.NoteImportResult;
+import com.example.demo.dto.NotePage;
+import com.example.demo.dto.NoteSearchHit;
+import com.example.demo.dto.NotesRevision;
 import com.example.demo.model.Note;
 import com.example.demo.model.User;
+import com.example.demo.security.AuthenticatedUser;
+import com.example.demo.service.NoteExportService;
+import com.example.demo.service.NoteImportService;
 import com.example.demo.service.NoteService;
+import com.example.demo.service.NoteSyncService;
 import com.example.demo.service.UserService;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
 import jakarta.validation.Valid;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.http.CacheControl;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.AccessDeniedException;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.security.core.Authentication;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
 
+import java.io.IOException;
+import java.io.InputStream;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.stream.Collectors;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+import java.util.zip.ZipException;
 
 @RestController
 @RequestMapping("/notes")
 public class NoteController {
 
+    private static final Logger logger = LoggerFactory.getLogger(NoteController.class);
+
     private final NoteService noteService;
+    private final NoteExportService noteExportService;
+    private final NoteImportService noteImportService;
+    private final NoteSyncService noteSyncService;
     private final UserService userService;
 
-    public NoteController(NoteService noteService, UserService userService) {
+    public NoteController(NoteService noteService, NoteExportService noteExportService,
+                          NoteImportService noteImportService, NoteSyncService noteSyncService,
+                          UserService userService) {
         this.noteService = noteService;
+        this.noteExportService = noteExportService;
+        this.noteImportService = noteImportService;
+        this.noteSyncService = noteSyncService;
         this.userService = userService;
     }
 
@@ -37,9 +72,8 @@ public class NoteController {
             Authentication authentication) {
 
         Long userId = getUserIdFromAuthentication(authentication);
-        System.out.println("Creating note for userId: " + userId);
         Note note = noteService.createNote(noteDTO, userId);
-        System.out.println("Created note - id: " + note.getId() + ", userId: " + note.getUserId() + ", title: " + note.getTitle());
+        logger.debug("Created note {} for userId {}", note.getId(), userId);
 
         Map<String, Object> response = new HashMap<>();
         response.put("message", "Note created successfully");
@@ -52,18 +86,169 @@ public class NoteController {
         return ResponseEntity.status(HttpStatus.CREATED).body(response);
     }
 
+    @PostMapping("/batch")
+    @PreAuthorize("hasAnyAuthority('ROLE_USER', 'ROLE_ADMIN', 'OIDC_USER')")
+    public ResponseEntity<Map<String, Object>> applyBatch(
+            @Valid @RequestBody NoteBatchRequest batchRequest,
+            Authentication authentication) {
+
+        Long userId = getUserIdFromAuthentication(authentication);
+        List<NoteBatchResult> results = noteService.applyBatch(batchRequest.getOperations(), userId);
+
+        Map<String, Long> counts = results.stream()
+                .collect(Collectors.groupingBy(NoteBatchResult::getStatus, Collectors.counting()));
+
+        Map<String, Object> response = new HashMap<>();
+        response.put("message", "Batch processed");
+        response.put("results", results);
+        response.put("counts", counts);
+
+        return ResponseEntity.ok(response);
+    }
+
     @GetMapping
     @PreAuthorize("hasAnyAuthority('ROLE_USER', 'ROLE_ADMIN', 'OIDC_USER')")
-    public ResponseEntity<Map<String, Object>> getAllNotes(Authentication authentication) {
+    public ResponseEntity<Map<String, Object>> getAllNotes(
+            @RequestParam(required = false) String cursor,
+            @RequestParam(required = false) Integer limit,
+            @RequestParam(defaultValue = "full") String view,
+            Authentication authentication,
+            WebRequest webRequest) {
         Long userId = getUserIdFromAuthentication(authentication);
-        System.out.println("Getting notes for userId: " + userId);
-        System.out.println("Authentication name: " + authentication.getName());
-        List<Note> notes = noteService.getAllNotesByUserId(userId);
-        System.out.println("Found " + notes.size() + " notes for userId: " + userId);
+
+        // Read before the page, a write in between only makes the next poll fetch again
+        NotesRevision revision = noteService.getNotesRevision(userId);
+        if (checkNotModified(webRequest, revision, userId)) {
+            return null;
+        }
+
+        // summary drops the full content and returns a short preview instead
+        NotePage<?> page = switch (view) {
+            case "full" -> noteService.getNotesPage(userId, cursor, limit);
+            case "summary" -> noteService.getNoteSummariesPage(userId, cursor, limit);
+            default -> throw new IllegalArgumentException("view must be 'full' or 'summary'");
+        };
+        logger.debug("Listed {} notes ({} view) for userId {}", page.items().size(), view, userId);
 
         Map<String, Object> response = new HashMap<>();
-        response.put("notes", notes);
-        response.put("total", notes.size());
+        response.put("notes", page.items());
+        response.put("count", page.items().size());
+        response.put("nextCursor", page.nextCursor());
+        response.put("hasMore", page.hasMore());
+
+        return ResponseEntity.ok().cacheControl(CachePolicy.PRIVATE_REVALIDATE).body(response);
+    }
+
+    @GetMapping("/search")
+    @PreAuthorize("hasAnyAuthority('ROLE_USER', 'ROLE_ADMIN', 'OIDC_USER')")
+    public ResponseEntity<Map<String, Object>> searchNotes(
+            @RequestParam("q") String query,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(required = false) Integer limit,
+            Authentication authentication) {
+
+        Long userId = getUserIdFromAuthentication(authentication);
+        NotePage<NoteSearchHit> page = noteService.searchNotes(userId, query, cursor, limit);
+
+        Map<String, Object> response = new HashMap<>();
+        response.put("results", page.items());
+        response.put("count", page.items().size());
+        response.put("nextCursor", page.nextCursor());
+        response.put("hasMore", page.hasMore());
+
+        return ResponseEntity.ok(response);
+    }
+
+    // Change feed for offline clients: what changed after since, deletes as tombstones
+    @GetMapping("/changes")
+    @PreAuthorize("hasAnyAuthority('ROLE_USER', 'ROLE_ADMIN', 'OIDC_USER')")
+    public ResponseEntity<Map<String, Object>> getChanges(
+            @RequestParam(defaultValue = "0") long since,
+            @RequestParam(required = false) Integer limit,
+            Authentication authentication) {
+
+        Long userId = getUserIdFromAuthentication(authentication);
+        NoteChangePage page = noteSyncService.getChanges(userId, since, limit);
+        logger.debug("Returned {} note changes since {} for userId {}", page.changes().size(), since, userId);
+
+        Map<String, Object> response = new HashMap<>();
+        response.put("changes", page.changes());
+        response.put("count", page.changes().size());
+        response.put("nextSince", page.nextSince());
+        response.put("hasMore", page.hasMore());
+
+        return ResponseEntity.ok().cacheControl(CacheControl.noStore()).body(response);
+    }
+
+    /**
+     * Streams all of the user's notes as NDJSON or CSV, straight from the database cursor. The body
+     * is gzip-compressed when the client accepts it.
+     */
+    @GetMapping("/export")
+    @PreAuthorize("hasAnyAuthority('ROLE_USER', 'ROLE_ADMIN', 'OIDC_USER')")
+    public void exportNotes(
+            @RequestParam(defaultValue = "ndjson") String format,
+            @RequestHeader(value = HttpHeaders.ACCEPT_ENCODING, required = false) String acceptEncoding,
+            Authentication authentication,
+            HttpServletResponse response) {
+
+        Long userId = getUserIdFromAuthentication(authentication);
+        NoteExportService.Format exportFormat = NoteExportService.Format.parse(format);
+        boolean gzip = AcceptEncoding.acceptsGzip(acceptEncoding);
+
+        try {
+            long count = noteExportService.export(userId, exportFormat, () -> {
+                response.setContentType(exportFormat.contentType());
+                response.setHeader(HttpHeaders.CONTENT_DISPOSITION, ContentDisposition.attachment()
+                        .filename("notes." + exportFormat.extension()).build().toString());
+                response.setHeader(HttpHeaders.CACHE_CONTROL, CacheControl.noStore().getHeaderValue());
+                response.setHeader(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING);
+                if (gzip) {
+                    response.setHeader(HttpHeaders.CONTENT_ENCODING, "gzip");
+                    return new GZIPOutputStream(response.getOutputStream(), 8192);
+                }
+                return response.getOutputStream();
+            });
+            logger.debug("Exported {} notes as {} for userId {}", count, exportFormat, userId);
+        } catch (IOException e) {
+            // The client went away mid-download, the response is already committed
+            logger.debug("Note export for userId {} aborted: {}", userId, e.getMessage());
+        }
+    }
+
+    /**
+     * Imports notes from an NDJSON body (gzip-compressed with Content-Encoding: gzip), committing
+     * them in chunks while the body is still being read.
+     */
+    @PostMapping("/import")
+    @PreAuthorize("hasAnyAuthority('ROLE_USER', 'ROLE_ADMIN', 'OIDC_USER')")
+    public ResponseEntity<Map<String, Object>> importNotes(
+            @RequestHeader(value = HttpHeaders.CONTENT_ENCODING, required = false) String contentEncoding,
+            Authentication authentication,
+            HttpServletRequest request) throws IOException {
+
+        Long userId = getUserIdFromAuthentication(authentication);
+        InputStream body = request.getInputStream();
+        if (contentEncoding != null && contentEncoding.trim().equalsIgnoreCase("gzip")) {
+            try {
+                body = new GZIPInputStream(body, 8192);
+            } catch (ZipException e) {
+                throw new IllegalArgumentException("Request body is not gzip-compressed");
+            }
+        } else if (contentEncoding != null && !contentEncoding.trim().equalsIgnoreCase("identity")) {
+            throw new IllegalArgumentException("Content-Encoding must be gzip or identity");
+        }
+
+        NoteImportResult result = noteImportService.importNotes(userId, body);
+        logger.debug("Imported {} notes for userId {}, {} rejected, complete={}",
+                result.imported(), userId, result.rejected(), result.complete());
+
+        Map<String, Object> response = new HashMap<>();
+        response.put("message", result.complete() ? "Import finished" : "Import stopped early");
+        response.put("complete", result.complete());
+        response.put("imported", result.imported());
+        response.put("rejected", result.rejected());
+        response.put("errors", result.errors());
 
         return ResponseEntity.ok(response);
     }
@@ -72,10 +257,17 @@ public class NoteController {
     @PreAuthorize("hasAnyAuthority('ROLE_USER', 'ROLE_ADMIN', 'OIDC_USER')")
     public ResponseEntity<Map<String, Object>> getNoteById(
             @PathVariable Long id,
-            Authentication authentication) {
+            Authentication authentication,
+            WebRequest webRequest) {
 
         Long userId = getUserIdFromAuthentication(authentication);
 
+        // Any change to the user's notes moves the revision, so it validates a single note as well
+        NotesRevision revision = noteService.getNotesRevision(userId);
+        if (checkNotModified(webRequest, revision, userId)) {
+            return null;
+        }
+
         try {
             Optional<Note> noteOpt = noteService.getNoteById(id, userId);
 
@@ -89,7 +281,7 @@ public class NoteController {
                 response.put("createdAt", note.getCreatedAt());
                 response.put("updatedAt", note.getUpdatedAt());
 
-                return ResponseEntity.ok(response);
+                return ResponseEntity.ok().cacheControl(CachePolicy.PRIVATE_REVALIDATE).body(response);
             } else {
                 Map<String, Object> response = new HashMap<>();
                 response.put("message", "Note not found");
@@ -161,11 +353,22 @@ public class NoteController {
         }
     }
 
+    // Sets ETag and Last-Modified; true (and a 304 already set) when the client's copy is current
+    private boolean checkNotModified(WebRequest webRequest, NotesRevision revision, Long userId) {
+        long lastModified = revision.modifiedAt() != null ? revision.modifiedAt() : -1;
+        return webRequest.checkNotModified(revision.eTag(userId), lastModified);
+    }
+
     private Long getUserIdFromAuthentication(Authentication authentication) {
         if (authentication == null || !authentication.isAuthenticated()) {
             throw new AccessDeniedException("User not authenticated");
         }
 
+        // Stateless JWT principal already carries the id, no lookup needed
+        if (authentication.getPrincipal() instanceof AuthenticatedUser authenticatedUser) {
+            return authenticatedUser.id();
+        }
+
         String email = null;
         
         // Handle OAuth2 authentication
@@ -173,11 +376,9 @@ public class NoteController {
             org.springframework.security.oauth2.core.user.OAuth2User oauth2User = 
                 (org.springframework.security.oauth2.core.user.OAuth2User) authentication.getPrincipal();
             email = oauth2User.getAttribute("email");
-            System.out.println("OAuth2 authentication - email: " + email);
         } else {
             // Handle regular JWT/username authentication
             email = authentication.getName();
-            System.out.println("JWT authentication - email: " + email);
         }
 
         if (email == null || email.isEmpty()) {
@@ -191,7 +392,7 @@ public class NoteController {
         }
 
         User user = userOpt.get();
-        System.out.println("Found user - id: " + user.getId() + ", email: " + user.getEmail());
+        logger.trace("Resolved userId {} for {}", user.getId(), email);
         return user.getId();
     }
 }
@@ -3,9 +3,9 @@ package com.example.demo.controller;
 import com.example.demo.model.User;
 import com.example.demo.security.JwtTokenProvider;
 import com.example.demo.service.UserService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.security.core.annotation.AuthenticationPrincipal;
-import org.springframework.security.core.userdetails.UserDetails;
-import org.springframework.security.core.userdetails.UserDetailsService;
 import org.springframework.security.oauth2.core.user.OAuth2User;
 import org.springframework.stereotype.Controller;
 import org.springframework.web.bind.annotation.GetMapping;
@@ -17,14 +17,14 @@ import java.util.Optional;
 @Controller
 public class OAuth2Controller {
 
+    private static final Logger logger = LoggerFactory.getLogger(OAuth2Controller.class);
+
     private final UserService userService;
     private final JwtTokenProvider jwtTokenProvider;
-    private final UserDetailsService userDetailsService;
 
-    public OAuth2Controller(UserService userService, JwtTokenProvider jwtTokenProvider, UserDetailsService userDetailsService) {
+    public OAuth2Controller(UserService userService, JwtTokenProvider jwtTokenProvider) {
         this.userService = userService;
         this.jwtTokenProvider = jwtTokenProvider;
-        this.userDetailsService = userDetailsService;
     }
 
     @GetMapping("/oauth2/success")
@@ -42,9 +42,7 @@ public class OAuth2Controller {
                 return new RedirectView("/?error=oauth2_failed");
             }
 
-            System.out.println("OAuth2 Login successful:");
-            System.out.println("Email: " + email);
-            System.out.println("Name: " + name);
+            logger.info("OAuth2 login successful for {}", email);
 
             // Check if user exists, if not create one
             Optional<User> userOpt = userService.findByEmail(email);
@@ -62,9 +60,7 @@ public class OAuth2Controller {
             }
 
             // Generate JWT token for the user
-            UserDetails userDetails = userDetailsService.loadUserByUsername(email);
-            String role = user.getRole() != null ? user.getRole() : "ROLE_USER";
-            String token = jwtTokenProvider.generateToken(userDetails, role);
+            String token = jwtTokenProvider.generateToken(user);
 
             // Encode parameters for the URL
             String encodedEmail = URLEncoder.encode(email, StandardCharsets.UTF_8);
@@ -78,8 +74,7 @@ public class OAuth2Controller {
             return new RedirectView(redirectUrl);
 
         } catch (Exception e) {
-            System.err.println("OAuth2 error: " + e.getMessage());
-            e.printStackTrace();
+            logger.error("OAuth2 login failed", e);
             return new RedirectView("/?error=oauth2_failed");
         }
     }
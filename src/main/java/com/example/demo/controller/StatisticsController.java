@@ -1,17 +1,34 @@
 package com.example.demo.controller;
 
+import com.example.demo.dto.StatsBucket;
+import com.example.demo.dto.StatsEventBatchResult;
 import com.example.demo.model.Statistics;
+import com.example.demo.model.User;
 import com.example.demo.repository.StatisticsRepository;
+import com.example.demo.security.AuthenticatedUser;
+import com.example.demo.service.DomainSketchService;
+import com.example.demo.service.StatisticsAggregator;
+import com.example.demo.service.StatisticsEventService;
+import com.example.demo.service.StatisticsRollupService;
+import com.example.demo.service.UserService;
+import jakarta.servlet.http.HttpServletRequest;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.core.Authentication;
+import org.springframework.web.context.request.WebRequest;
 import org.springframework.web.bind.annotation.*;
 
+import java.io.IOException;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.format.DateTimeParseException;
 import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
 import java.util.Map;
-import java.util.Optional;
 
 @RestController
 @RequestMapping("/api/stats")
@@ -19,14 +36,27 @@ public class StatisticsController {
 
     private static final Logger logger = LoggerFactory.getLogger(StatisticsController.class);
     private final StatisticsRepository statisticsRepository;
-
-    public StatisticsController(StatisticsRepository statisticsRepository) {
+    private final StatisticsAggregator statisticsAggregator;
+    private final StatisticsEventService statisticsEventService;
+    private final StatisticsRollupService statisticsRollupService;
+    private final DomainSketchService domainSketchService;
+    private final UserService userService;
+
+    public StatisticsController(StatisticsRepository statisticsRepository, StatisticsAggregator statisticsAggregator,
+                                StatisticsEventService statisticsEventService,
+                                StatisticsRollupService statisticsRollupService,
+                                DomainSketchService domainSketchService, UserService userService) {
         this.statisticsRepository = statisticsRepository;
+        this.statisticsAggregator = statisticsAggregator;
+        this.statisticsEventService = statisticsEventService;
+        this.statisticsRollupService = statisticsRollupService;
+        this.domainSketchService = domainSketchService;
+        this.userService = userService;
     }
 
     // Get user statistics
     @GetMapping
-    public ResponseEntity<Map<String, Object>> getStatistics(Authentication auth) {
+    public ResponseEntity<Map<String, Object>> getStatistics(Authentication auth, WebRequest webRequest) {
         if (auth == null || !auth.isAuthenticated() || auth.getName().equals("anonymousUser")) {
             logger.warn("Unauthorized access attempt to GET /api/stats");
             Map<String, Object> response = new HashMap<>();
@@ -34,23 +64,26 @@ public class StatisticsController {
             return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body(response);
         }
 
-        String email = auth.getName();
-        Optional<Statistics> statsOpt = statisticsRepository.findByUserEmail(email);
+        Long userId = resolveUserId(auth);
+        if (userId == null) {
+            Map<String, Object> response = new HashMap<>();
+            response.put("message", "Unauthorized");
+            return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body(response);
+        }
 
-        if (statsOpt.isEmpty()) {
-            // Create new statistics for user
-            Statistics newStats = new Statistics(email);
-            statisticsRepository.save(newStats);
-            statsOpt = Optional.of(newStats);
+        // Served from memory, includes increments not flushed to the database yet
+        StatisticsAggregator.Totals totals = statisticsAggregator.getTotals(userId);
+        // Sets ETag/Last-Modified, a poll that matches gets a bodiless 304
+        if (webRequest.checkNotModified(totals.eTag(userId), totals.lastModified())) {
+            return null;
         }
 
-        Statistics stats = statsOpt.get();
         Map<String, Object> response = new HashMap<>();
-        response.put("adsBlocked", stats.getAdsBlocked());
-        response.put("trackersBlocked", stats.getTrackersBlocked());
-        response.put("timeSaved", String.format("%.1fh", stats.getTimeSaved()));
+        response.put("adsBlocked", totals.adsBlocked());
+        response.put("trackersBlocked", totals.trackersBlocked());
+        response.put("timeSaved", String.format("%.1fh", totals.timeSaved()));
 
-        return ResponseEntity.ok(response);
+        return ResponseEntity.ok().cacheControl(CachePolicy.PRIVATE_REVALIDATE).body(response);
     }
 
     // Sync statistics from extension
@@ -66,28 +99,21 @@ public class StatisticsController {
             return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body(response);
         }
 
-        String email = auth.getName();
-
-        // Get or create statistics
-        Statistics stats = statisticsRepository.findByUserEmail(email)
-                .orElse(new Statistics(email));
-
-        // Update statistics
-        if (data.containsKey("adsBlocked")) {
-            int adsBlocked = (Integer) data.get("adsBlocked");
-            stats.setAdsBlocked(adsBlocked);
-        }
-
-        if (data.containsKey("trackersBlocked")) {
-            int trackersBlocked = (Integer) data.get("trackersBlocked");
-            stats.setTrackersBlocked(trackersBlocked);
+        Long userId = resolveUserId(auth);
+        if (userId == null) {
+            Map<String, Object> response = new HashMap<>();
+            response.put("message", "Unauthorized");
+            return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body(response);
         }
 
-        // Recalculate time saved
-        double timeSaved = (stats.getAdsBlocked() * 2.0 + stats.getTrackersBlocked() * 0.5) / 3600.0;
-        stats.setTimeSaved(timeSaved);
+        // Absolute totals overwrite the row, write out pending deltas first so they aren't applied twice
+        statisticsAggregator.flush(userId);
 
-        statisticsRepository.save(stats);
+        Integer adsBlocked = data.get("adsBlocked") instanceof Number number ? number.intValue() : null;
+        Integer trackersBlocked = data.get("trackersBlocked") instanceof Number number ? number.intValue() : null;
+        // One upsert, also creates the row on a user's first sync
+        Statistics stats = statisticsRepository.replaceTotals(userId, adsBlocked, trackersBlocked);
+        statisticsAggregator.reload(userId);
 
         Map<String, Object> response = new HashMap<>();
         response.put("message", "Statistics synced successfully");
@@ -112,20 +138,23 @@ public class StatisticsController {
             return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body(response);
         }
 
-        // We take email from authenticated user
-        String email = auth.getName();
-
-        Statistics stats = statisticsRepository.findByUserEmail(email)
-                .orElse(new Statistics(email));
+        // We take the user from the authentication, not from the request
+        Long userId = resolveUserId(auth);
+        if (userId == null) {
+            Map<String, Object> response = new HashMap<>();
+            response.put("message", "Unauthorized");
+            return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body(response);
+        }
 
-        stats.incrementAdsBlocked(count);
-        statisticsRepository.save(stats);
+        // Buffered in memory, written out by the aggregator's next batched flush
+        long adsBlocked = statisticsAggregator.recordAds(userId, count);
+        statisticsRollupService.record(userId, System.currentTimeMillis(), true, count, null);
 
-        logger.info("User {} incremented ads blocked by {}", email, count);
+        logger.debug("User {} incremented ads blocked by {}", auth.getName(), count);
 
         Map<String, Object> response = new HashMap<>();
         response.put("message", "Ads blocked count updated");
-        response.put("adsBlocked", stats.getAdsBlocked());
+        response.put("adsBlocked", adsBlocked);
 
         return ResponseEntity.ok(response);
     }
@@ -144,21 +173,185 @@ public class StatisticsController {
             return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body(response);
         }
 
-        // Take the email from the authenticated user, not from the parameter
+        // Take the user from the authentication, not from the parameter
+        Long userId = resolveUserId(auth);
+        if (userId == null) {
+            Map<String, Object> response = new HashMap<>();
+            response.put("message", "Unauthorized");
+            return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body(response);
+        }
+
+        // Buffered in memory, written out by the aggregator's next batched flush
+        long trackersBlocked = statisticsAggregator.recordTrackers(userId, count);
+        statisticsRollupService.record(userId, System.currentTimeMillis(), false, count, null);
+
+        logger.debug("User {} incremented trackers blocked by {}", auth.getName(), count);
+
+        Map<String, Object> response = new HashMap<>();
+        response.put("message", "Trackers blocked count updated");
+        response.put("trackersBlocked", trackersBlocked);
+
+        return ResponseEntity.ok(response);
+    }
+
+    // Upload a batch of blocked-request events, retries with the same batchId are applied once
+    @PostMapping(value = "/events", consumes = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<Map<String, Object>> ingestEvents(HttpServletRequest request, Authentication auth)
+            throws IOException {
+
+        if (auth == null || !auth.isAuthenticated() || auth.getName().equals("anonymousUser")) {
+            logger.warn("Unauthorized access attempt to POST /api/stats/events");
+            Map<String, Object> response = new HashMap<>();
+            response.put("message", "Unauthorized");
+            return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body(response);
+        }
+
         String email = auth.getName();
+        Long userId = resolveUserId(auth);
+        if (userId == null) {
+            Map<String, Object> response = new HashMap<>();
+            response.put("message", "Unauthorized");
+            return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body(response);
+        }
+
+        // Streamed straight from the request body, the batch is never bound to objects as a whole
+        StatsEventBatchResult result = statisticsEventService.ingest(userId, request.getInputStream());
+        StatisticsAggregator.Totals totals = statisticsAggregator.getTotals(userId);
+
+        logger.debug("User {} uploaded event batch {}: {} accepted, {} rejected, duplicate={}",
+                email, result.batchId(), result.accepted(), result.rejected(), result.duplicate());
+
+        Map<String, Object> response = new HashMap<>();
+        response.put("message", result.duplicate() ? "Batch already received" : "Events recorded");
+        response.put("batchId", result.batchId());
+        response.put("duplicate", result.duplicate());
+        response.put("accepted", result.accepted());
+        response.put("rejected", result.rejected());
+        response.put("errors", result.errors());
+        response.put("adsBlocked", totals.adsBlocked());
+        response.put("trackersBlocked", totals.trackersBlocked());
+        response.put("timeSaved", String.format("%.1fh", totals.timeSaved()));
+
+        return ResponseEntity.ok(response);
+    }
+
+    /**
+     * Blocked counts over time, from/to are ISO-8601 instants (default: the last 7 days) and
+     * buckets are UTC minutes, hours or days. Minutes are kept for 48 hours and hours for 35
+     * days, older ranges come back in the coarser buckets they were compacted into.
+     */
+    @GetMapping("/history")
+    public ResponseEntity<Map<String, Object>> getHistory(
+            @RequestParam(required = false) String from,
+            @RequestParam(required = false) String to,
+            @RequestParam(defaultValue = "day") String granularity,
+            @RequestParam(defaultValue = "10") int top,
+            Authentication auth) {
+
+        if (auth == null || !auth.isAuthenticated() || auth.getName().equals("anonymousUser")) {
+            logger.warn("Unauthorized access attempt to GET /api/stats/history");
+            Map<String, Object> response = new HashMap<>();
+            response.put("message", "Unauthorized");
+            return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body(response);
+        }
 
-        Statistics stats = statisticsRepository.findByUserEmail(email)
-                .orElse(new Statistics(email));
+        Long userId = resolveUserId(auth);
+        if (userId == null) {
+            Map<String, Object> response = new HashMap<>();
+            response.put("message", "Unauthorized");
+            return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body(response);
+        }
+        if (top < 0 || top > 100) {
+            throw new IllegalArgumentException("top must be between 0 and 100");
+        }
 
-        stats.incrementTrackersBlocked(count);
-        statisticsRepository.save(stats);
+        Instant end = to != null ? parseInstant("to", to) : Instant.now();
+        Instant start = from != null ? parseInstant("from", from) : end.minus(Duration.ofDays(7));
+        StatisticsRollupService.Granularity size = StatisticsRollupService.Granularity.parse(granularity);
+        List<StatsBucket> buckets = statisticsRollupService.getHistory(userId, start, end, size);
 
-        logger.info("User {} incremented trackers blocked by {}", email, count);
+        long adsBlocked = 0;
+        long trackersBlocked = 0;
+        for (StatsBucket bucket : buckets) {
+            adsBlocked += bucket.adsBlocked();
+            trackersBlocked += bucket.trackersBlocked();
+        }
 
         Map<String, Object> response = new HashMap<>();
-        response.put("message", "Trackers blocked count updated");
-        response.put("trackersBlocked", stats.getTrackersBlocked());
+        response.put("from", start);
+        response.put("to", end);
+        response.put("granularity", size.name().toLowerCase(Locale.ROOT));
+        response.put("buckets", buckets);
+        response.put("adsBlocked", adsBlocked);
+        response.put("trackersBlocked", trackersBlocked);
+        response.put("topDomains", top == 0 ? List.of() : statisticsRollupService.getTopDomains(userId, start, end, top));
 
         return ResponseEntity.ok(response);
     }
-}
\ No newline at end of file
+
+    /**
+     * All-time most blocked domains of the user, or of all users with scope=global. Counts are
+     * estimates from a fixed-size sketch and may be high by up to errorBound.
+     */
+    @GetMapping("/top-domains")
+    public ResponseEntity<Map<String, Object>> getTopDomains(
+            @RequestParam(defaultValue = "10") int limit,
+            @RequestParam(defaultValue = "user") String scope,
+            Authentication auth) {
+
+        if (auth == null || !auth.isAuthenticated() || auth.getName().equals("anonymousUser")) {
+            logger.warn("Unauthorized access attempt to GET /api/stats/top-domains");
+            Map<String, Object> response = new HashMap<>();
+            response.put("message", "Unauthorized");
+            return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body(response);
+        }
+
+        boolean global = "global".equals(scope);
+        if (!global && !"user".equals(scope)) {
+            throw new IllegalArgumentException("scope must be 'user' or 'global'");
+        }
+        // A sketch only knows its top capacity domains, a longer list can't be answered
+        int capacity = global ? domainSketchService.getGlobalCapacity() : domainSketchService.getUserCapacity();
+        if (limit < 1 || limit > capacity) {
+            throw new IllegalArgumentException("limit must be between 1 and " + capacity + " for scope " + scope);
+        }
+
+        DomainSketchService.TopDomains top;
+        if (global) {
+            top = domainSketchService.topGlobal(limit);
+        } else {
+            Long userId = resolveUserId(auth);
+            if (userId == null) {
+                Map<String, Object> response = new HashMap<>();
+                response.put("message", "Unauthorized");
+                return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body(response);
+            }
+            top = domainSketchService.topForUser(userId, limit);
+        }
+
+        Map<String, Object> response = new HashMap<>();
+        response.put("scope", scope);
+        response.put("domains", top.domains());
+        response.put("totalBlocked", top.total());
+        response.put("errorBound", top.errorBound());
+        response.put("tracked", top.capacity());
+
+        return ResponseEntity.ok(response);
+    }
+
+    // The JWT principal carries the id, sessions from the OAuth2 login need a lookup
+    private Long resolveUserId(Authentication auth) {
+        if (auth.getPrincipal() instanceof AuthenticatedUser authenticatedUser) {
+            return authenticatedUser.id();
+        }
+        return userService.findByEmail(auth.getName()).map(User::getId).orElse(null);
+    }
+
+    private static Instant parseInstant(String name, String value) {
+        try {
+            return Instant.parse(value);
+        } catch (DateTimeParseException e) {
+            throw new IllegalArgumentException(name + " must be an ISO-8601 instant, e.g. 2024-01-31T00:00:00Z");
+        }
+    }
+}
@@ -3,7 +3,6 @@ package com.example.demo.controller;
 import com.example.demo.dto.CreateUserRequest;
 import com.example.demo.model.User;
 import com.example.demo.security.JwtTokenProvider;
-import com.example.demo.security.MyUserDetailsService;
 import com.example.demo.service.UserService;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpSession;
@@ -13,7 +12,6 @@ import org.slf4j.LoggerFactory;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.core.context.SecurityContextHolder;
-import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.web.bind.annotation.*;
 
 import java.util.HashMap;
@@ -27,12 +25,10 @@ public class UserController {
 
     private final UserService userService;
     private final JwtTokenProvider jwtTokenProvider;
-    private final MyUserDetailsService userDetailsService;
 
-    public UserController(UserService userService, JwtTokenProvider jwtTokenProvider, MyUserDetailsService userDetailsService) {
+    public UserController(UserService userService, JwtTokenProvider jwtTokenProvider) {
         this.userService = userService;
         this.jwtTokenProvider = jwtTokenProvider;
-        this.userDetailsService = userDetailsService;
     }
 
     // use CreateUserRequest DTO with validation
@@ -59,9 +55,7 @@ public class UserController {
             );
 
             // Generate JWT token for the newly registered user
-            UserDetails userDetails = userDetailsService.loadUserByUsername(request.getEmail());
-            String role = user.getRole() != null ? user.getRole() : "ROLE_USER";
-            String token = jwtTokenProvider.generateToken(userDetails, role);
+            String token = jwtTokenProvider.generateToken(user);
 
             response.put("message", "User created successfully");
             response.put("token", token);
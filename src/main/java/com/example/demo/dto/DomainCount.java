@@ -0,0 +1,9 @@
+package com.example.demo.dto;
+
+// Blocked counts for one domain
+public record DomainCount(String domain, long adsBlocked, long trackersBlocked) {
+
+    public long total() {
+        return adsBlocked + trackersBlocked;
+    }
+}
@@ -0,0 +1,5 @@
+package com.example.demo.dto;
+
+// Estimated blocked count for one domain, overestimated by at most the sketch's error bound
+public record DomainEstimate(String domain, long count) {
+}
@@ -0,0 +1,31 @@
+package com.example.demo.dto;
+
+public class NoteBatchOperation {
+
+    // create, update or delete
+    private String op;
+    private Long id;
+    private String title;
+    private String content;
+
+    public NoteBatchOperation() {}
+
+    public NoteBatchOperation(String op, Long id, String title, String content) {
+        this.op = op;
+        this.id = id;
+        this.title = title;
+        this.content = content;
+    }
+
+    public String getOp() { return op; }
+    public void setOp(String op) { this.op = op; }
+
+    public Long getId() { return id; }
+    public void setId(Long id) { this.id = id; }
+
+    public String getTitle() { return title; }
+    public void setTitle(String title) { this.title = title; }
+
+    public String getContent() { return content; }
+    public void setContent(String content) { this.content = content; }
+}
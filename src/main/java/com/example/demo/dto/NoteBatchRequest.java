@@ -0,0 +1,14 @@
+package com.example.demo.dto;
+
+import jakarta.validation.constraints.NotEmpty;
+
+import java.util.List;
+
+public class NoteBatchRequest {
+
+    @NotEmpty(message = "At least one operation is required")
+    private List<NoteBatchOperation> operations;
+
+    public List<NoteBatchOperation> getOperations() { return operations; }
+    public void setOperations(List<NoteBatchOperation> operations) { this.operations = operations; }
+}
@@ -0,0 +1,36 @@
+package com.example.demo.dto;
+
+// Outcome of one operation in a batch, index points back into the request's operations list
+public class NoteBatchResult {
+
+    private int index;
+    private String op;
+    private String status;
+    private Long id;
+    private String message;
+
+    public NoteBatchResult() {}
+
+    public NoteBatchResult(int index, String op, String status, Long id, String message) {
+        this.index = index;
+        this.op = op;
+        this.status = status;
+        this.id = id;
+        this.message = message;
+    }
+
+    public int getIndex() { return index; }
+    public void setIndex(int index) { this.index = index; }
+
+    public String getOp() { return op; }
+    public void setOp(String op) { this.op = op; }
+
+    public String getStatus() { return status; }
+    public void setStatus(String status) { this.status = status; }
+
+    public Long getId() { return id; }
+    public void setId(Long id) { this.id = id; }
+
+    public String getMessage() { return message; }
+    public void setMessage(String message) { this.message = message; }
+}
@@ -0,0 +1,15 @@
+package com.example.demo.dto;
+
+import java.time.LocalDateTime;
+
+/**
+ * One entry of the notes change feed: the current state of a note created or updated after the
+ * client's sequence, or a tombstone (deleted, only id and seq set) for a note deleted after it.
+ */
+public record NoteChange(long seq, Long id, boolean deleted, String title, String content,
+                         LocalDateTime createdAt, LocalDateTime updatedAt) {
+
+    public static NoteChange tombstone(long seq, Long id) {
+        return new NoteChange(seq, id, true, null, null, null, null);
+    }
+}
@@ -0,0 +1,7 @@
+package com.example.demo.dto;
+
+import java.util.List;
+
+// Changes in sequence order, nextSince is the sequence to ask from next (since itself if nothing changed)
+public record NoteChangePage(List<NoteChange> changes, long nextSince, boolean hasMore) {
+}
@@ -0,0 +1,15 @@
+package com.example.demo.dto;
+
+import java.util.List;
+
+/**
+ * Outcome of a note import. Notes are committed in chunks as they are read, so an import that
+ * stopped early (complete is false) keeps everything imported before the line it stopped at.
+ * errors holds at most the first few rejected lines.
+ */
+public record NoteImportResult(long imported, long rejected, boolean complete, List<LineError> errors) {
+
+    // line is the 1-based line of the record in the (decompressed) request body
+    public record LineError(long line, String message) {
+    }
+}
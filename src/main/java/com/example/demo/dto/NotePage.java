@@ -0,0 +1,11 @@
+package com.example.demo.dto;
+
+import java.util.List;
+
+// One page of a keyset-paginated listing, nextCursor is null on the last page
+public record NotePage<T>(List<T> items, String nextCursor) {
+
+    public boolean hasMore() {
+        return nextCursor != null;
+    }
+}
@@ -0,0 +1,38 @@
+package com.example.demo.dto;
+
+import java.time.LocalDateTime;
+
+public class NoteSearchHit {
+
+    private Long id;
+    private String title;
+    private String snippet;
+    private LocalDateTime updatedAt;
+    private double rank;
+
+    public NoteSearchHit() {}
+
+    public NoteSearchHit(Long id, String title, String snippet, LocalDateTime updatedAt, double rank) {
+        this.id = id;
+        this.title = title;
+        this.snippet = snippet;
+        this.updatedAt = updatedAt;
+        this.rank = rank;
+    }
+
+    public Long getId() { return id; }
+    public void setId(Long id) { this.id = id; }
+
+    public String getTitle() { return title; }
+    public void setTitle(String title) { this.title = title; }
+
+    public String getSnippet() { return snippet; }
+    public void setSnippet(String snippet) { this.snippet = snippet; }
+
+    public LocalDateTime getUpdatedAt() { return updatedAt; }
+    public void setUpdatedAt(LocalDateTime updatedAt) { this.updatedAt = updatedAt; }
+
+    // bm25 score, lower is a better match
+    public double getRank() { return rank; }
+    public void setRank(double rank) { this.rank = rank; }
+}
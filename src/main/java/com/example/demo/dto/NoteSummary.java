@@ -0,0 +1,38 @@
+package com.example.demo.dto;
+
+import java.time.LocalDateTime;
+
+// List-view projection of a note: everything but the full content
+public class NoteSummary {
+
+    private Long id;
+    private String title;
+    private String preview;
+    private boolean truncated;
+    private LocalDateTime updatedAt;
+
+    public NoteSummary() {}
+
+    public NoteSummary(Long id, String title, String preview, boolean truncated, LocalDateTime updatedAt) {
+        this.id = id;
+        this.title = title;
+        this.preview = preview;
+        this.truncated = truncated;
+        this.updatedAt = updatedAt;
+    }
+
+    public Long getId() { return id; }
+    public void setId(Long id) { this.id = id; }
+
+    public String getTitle() { return title; }
+    public void setTitle(String title) { this.title = title; }
+
+    public String getPreview() { return preview; }
+    public void setPreview(String preview) { this.preview = preview; }
+
+    public boolean isTruncated() { return truncated; }
+    public void setTruncated(boolean truncated) { this.truncated = truncated; }
+
+    public LocalDateTime getUpdatedAt() { return updatedAt; }
+    public void setUpdatedAt(LocalDateTime updatedAt) { this.updatedAt = updatedAt; }
+}
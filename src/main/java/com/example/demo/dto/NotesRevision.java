@@ -0,0 +1,13 @@
+package com.example.demo.dto;
+
+/**
+ * Version stamp of a user's notes, bumped by every insert, update and delete. modifiedAt is
+ * epoch milliseconds of the last change, null if the notes never changed.
+ */
+public record NotesRevision(long revision, Long modifiedAt) {
+
+    // Weak: identifies the user's notes as a whole, not the bytes of one representation
+    public String eTag(Long userId) {
+        return "W/\"n" + userId + "-" + revision + "\"";
+    }
+}
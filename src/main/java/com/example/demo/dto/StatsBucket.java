@@ -0,0 +1,7 @@
+package com.example.demo.dto;
+
+import java.time.Instant;
+
+// Blocked counts of one history bucket, start is the UTC bucket boundary
+public record StatsBucket(Instant start, long adsBlocked, long trackersBlocked) {
+}
@@ -0,0 +1,5 @@
+package com.example.demo.dto;
+
+// One validated entry of an event batch: count requests to domain blocked as category ("ads" or "trackers")
+public record StatsEvent(String domain, String category, long timestamp, int count) {
+}
@@ -0,0 +1,15 @@
+package com.example.demo.dto;
+
+import java.util.List;
+
+/**
+ * Outcome of an uploaded event batch. A duplicate batch reports what was applied the first
+ * time it was received and changes nothing. errors holds at most the first few rejected events.
+ */
+public record StatsEventBatchResult(String batchId, boolean duplicate, int accepted, int rejected,
+                                    long adsBlocked, long trackersBlocked, List<EventError> errors) {
+
+    // index points back into the request's events array
+    public record EventError(int index, String message) {
+    }
+}
@@ -1,5 +1,7 @@
 package com.example.demo.exception;
 
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.AccessDeniedException;
@@ -18,6 +20,12 @@ import java.util.stream.Collectors;
 @RestControllerAdvice
 public class GlobalExceptionHandler {
 
+    private final MeterRegistry meterRegistry;
+
+    public GlobalExceptionHandler(MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+    }
+
     // Handle validation errors (400)
     @ExceptionHandler(MethodArgumentNotValidException.class)
     public ResponseEntity<ErrorResponse> handleValidationExceptions(
@@ -45,6 +53,7 @@ public class GlobalExceptionHandler {
                 validationErrors
         );
 
+        countError("validation", HttpStatus.BAD_REQUEST);
         return new ResponseEntity<>(errorResponse, HttpStatus.BAD_REQUEST);
     }
 
@@ -68,6 +77,7 @@ public class GlobalExceptionHandler {
                 null
         );
 
+        countError("illegal_argument", status);
         return new ResponseEntity<>(errorResponse, status);
     }
 
@@ -86,6 +96,7 @@ public class GlobalExceptionHandler {
                 null
         );
 
+        countError("malformed_json", HttpStatus.BAD_REQUEST);
         return new ResponseEntity<>(errorResponse, HttpStatus.BAD_REQUEST);
     }
 
@@ -104,9 +115,50 @@ public class GlobalExceptionHandler {
                 null
         );
 
+        countError("access_denied", HttpStatus.FORBIDDEN);
         return new ResponseEntity<>(errorResponse, HttpStatus.FORBIDDEN);
     }
 
+    // Handle login throttling and a saturated hashing pool (429)
+    @ExceptionHandler(TooManyRequestsException.class)
+    public ResponseEntity<ErrorResponse> handleTooManyRequestsException(
+            TooManyRequestsException ex,
+            WebRequest request) {
+
+        ErrorResponse errorResponse = new ErrorResponse(
+                HttpStatus.TOO_MANY_REQUESTS.value(),
+                HttpStatus.TOO_MANY_REQUESTS.getReasonPhrase(),
+                ex.getMessage(),
+                LocalDateTime.now(),
+                request.getDescription(false).replace("uri=", ""),
+                null
+        );
+
+        countError("too_many_requests", HttpStatus.TOO_MANY_REQUESTS);
+        return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+                .header(HttpHeaders.RETRY_AFTER, String.valueOf(ex.getRetryAfterSeconds()))
+                .body(errorResponse);
+    }
+
+    // Handle a change feed request from before the pruned tombstones (410)
+    @ExceptionHandler(SyncResetRequiredException.class)
+    public ResponseEntity<ErrorResponse> handleSyncResetRequiredException(
+            SyncResetRequiredException ex,
+            WebRequest request) {
+
+        ErrorResponse errorResponse = new ErrorResponse(
+                HttpStatus.GONE.value(),
+                HttpStatus.GONE.getReasonPhrase(),
+                ex.getMessage(),
+                LocalDateTime.now(),
+                request.getDescription(false).replace("uri=", ""),
+                null
+        );
+
+        countError("sync_reset", HttpStatus.GONE);
+        return new ResponseEntity<>(errorResponse, HttpStatus.GONE);
+    }
+
     // Handle generic exceptions (500)
     @ExceptionHandler(Exception.class)
     public ResponseEntity<ErrorResponse> handleGlobalException(
@@ -128,9 +180,15 @@ public class GlobalExceptionHandler {
                 null
         );
 
+        countError("unexpected", HttpStatus.INTERNAL_SERVER_ERROR);
         return new ResponseEntity<>(errorResponse, HttpStatus.INTERNAL_SERVER_ERROR);
     }
 
+    // api.errors{handler, status}: which branch produced how many 4xx/5xx responses
+    private void countError(String handler, HttpStatus status) {
+        meterRegistry.counter("api.errors", "handler", handler, "status", String.valueOf(status.value())).increment();
+    }
+
     // Error response structure
     public static class ErrorResponse {
         private int status;
@@ -0,0 +1,12 @@
+package com.example.demo.exception;
+
+/**
+ * Thrown when a client asks for changes since a sequence whose deletes were already pruned,
+ * mapped to 410 by GlobalExceptionHandler. The client has to drop its copy and sync from 0.
+ */
+public class SyncResetRequiredException extends RuntimeException {
+
+    public SyncResetRequiredException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,19 @@
+package com.example.demo.exception;
+
+/**
+ * Thrown when a request is turned away to protect the server, mapped to 429 with a
+ * Retry-After header by GlobalExceptionHandler.
+ */
+public class TooManyRequestsException extends RuntimeException {
+
+    private final long retryAfterSeconds;
+
+    public TooManyRequestsException(String message, long retryAfterSeconds) {
+        super(message);
+        this.retryAfterSeconds = Math.max(1, retryAfterSeconds);
+    }
+
+    public long getRetryAfterSeconds() {
+        return retryAfterSeconds;
+    }
+}
@@ -1,5 +1,6 @@
 package com.example.demo.model;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import jakarta.persistence.*;
 import jakarta.validation.constraints.NotBlank;
 import jakarta.validation.constraints.Size;
@@ -24,6 +25,10 @@ public class Note {
     @Column(nullable = false, columnDefinition = "TEXT")
     private String content;
 
+    // Body read from notes.content_compressed, inflated on every read and never kept inflated
+    @Transient
+    private byte[] compressedContent;
+
     @Column(name = "user_id", nullable = false)
     private Long userId;
 
@@ -68,12 +73,32 @@ public class Note {
         this.title = title;
     }
 
+    // Doesn't store the inflated body: cached notes are shared and weighed at their compressed size
     public String getContent() {
+        if (content == null && compressedContent != null) {
+            return NoteContentCodec.decompress(compressedContent);
+        }
         return content;
     }
 
     public void setContent(String content) {
         this.content = content;
+        this.compressedContent = null;
+    }
+
+    public void setCompressedContent(byte[] compressedContent) {
+        this.content = null;
+        this.compressedContent = compressedContent;
+    }
+
+    // Bytes the body takes in memory, a compressed one only ever takes its compressed size
+    @JsonIgnore
+    public int getContentFootprint() {
+        String text = content;
+        if (text != null) {
+            return 2 * text.length();
+        }
+        return compressedContent != null ? compressedContent.length : 0;
     }
 
     public Long getUserId() {
@@ -6,12 +6,10 @@ import jakarta.persistence.*;
 @Table(name = "statistics")
 public class Statistics {
 
+    // One row per user, the user id is the primary key
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
-    private Long id;
-
-    @Column(nullable = false)
-    private String userEmail;
+    @Column(name = "user_id")
+    private Long userId;
 
     @Column(nullable = false)
     private Integer adsBlocked = 0;
@@ -22,21 +20,21 @@ public class Statistics {
     @Column(nullable = false)
     private Double timeSaved = 0.0; // in hours
 
+    @Column(name = "updated_at", nullable = false)
+    private Long updatedAt = 0L; // epoch milliseconds
+
     public Statistics() {}
 
-    public Statistics(String userEmail) {
-        this.userEmail = userEmail;
+    public Statistics(Long userId) {
+        this.userId = userId;
         this.adsBlocked = 0;
         this.trackersBlocked = 0;
         this.timeSaved = 0.0;
     }
 
     // Getters and Setters
-    public Long getId() { return id; }
-    public void setId(Long id) { this.id = id; }
-
-    public String getUserEmail() { return userEmail; }
-    public void setUserEmail(String userEmail) { this.userEmail = userEmail; }
+    public Long getUserId() { return userId; }
+    public void setUserId(Long userId) { this.userId = userId; }
 
     public Integer getAdsBlocked() { return adsBlocked; }
     public void setAdsBlocked(Integer adsBlocked) { this.adsBlocked = adsBlocked; }
@@ -47,6 +45,9 @@ public class Statistics {
     public Double getTimeSaved() { return timeSaved; }
     public void setTimeSaved(Double timeSaved) { this.timeSaved = timeSaved; }
 
+    public Long getUpdatedAt() { return updatedAt; }
+    public void setUpdatedAt(Long updatedAt) { this.updatedAt = updatedAt; }
+
     // Helper methods
     public void incrementAdsBlocked(int count) {
         this.adsBlocked += count;
@@ -59,4 +60,4 @@ public class Statistics {
         // Assume each tracker takes 0.5 seconds
         this.timeSaved += (count * 0.5) / 3600.0; // Convert to hours
     }
-}
\ No newline at end of file
+}
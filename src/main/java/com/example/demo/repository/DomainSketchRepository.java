@@ -0,0 +1,42 @@
+package com.example.demo.repository;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+import java.util.Optional;
+
+@Repository
+public class DomainSketchRepository {
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public DomainSketchRepository(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    public Optional<byte[]> find(String sketchId) {
+        List<byte[]> rows = jdbcTemplate.query("SELECT data FROM domain_sketches WHERE sketch_id = ?",
+                (rs, rowNum) -> rs.getBytes(1), sketchId);
+        return rows.stream().findFirst();
+    }
+
+    // userId is null for the global sketch; a user deleted since the sketch was loaded is skipped
+    public void save(List<Checkpoint> checkpoints, long now) {
+        jdbcTemplate.batchUpdate(
+                "INSERT INTO domain_sketches (sketch_id, user_id, data, updated_at) "
+                        + "SELECT ?, ?, ?, ? WHERE ? IS NULL OR EXISTS (SELECT 1 FROM users WHERE id = ?) "
+                        + "ON CONFLICT (sketch_id) DO UPDATE SET data = excluded.data, updated_at = excluded.updated_at",
+                checkpoints, checkpoints.size(), (ps, checkpoint) -> {
+                    ps.setString(1, checkpoint.sketchId());
+                    ps.setObject(2, checkpoint.userId());
+                    ps.setBytes(3, checkpoint.data());
+                    ps.setLong(4, now);
+                    ps.setObject(5, checkpoint.userId());
+                    ps.setObject(6, checkpoint.userId());
+                });
+    }
+
+    public record Checkpoint(String sketchId, Long userId, byte[] data) {
+    }
+}
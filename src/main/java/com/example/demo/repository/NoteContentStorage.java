@@ -0,0 +1,61 @@
+package com.example.demo.repository;
+
+import com.example.demo.model.NoteContentCodec;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Types;
+
+/**
+ * Decides how a note body is stored. With compression enabled, bodies longer than the threshold
+ * go Deflate-compressed into content_compressed and content only keeps their first few hundred
+ * characters, enough for the summary preview, so list queries never touch the compressed column.
+ * Reading works the same either way, a compressed row is only inflated when its content is used.
+ */
+@Component
+public class NoteContentStorage {
+
+    private final boolean compressionEnabled;
+    private final int inlineCodePoints;
+    private final int thresholdChars;
+
+    public NoteContentStorage(@Value("${notes.storage.compression.enabled:false}") boolean compressionEnabled,
+                              @Value("${notes.storage.compression.threshold-chars:1024}") int thresholdChars,
+                              @Value("${notes.preview-length:200}") int previewLength) {
+        this.compressionEnabled = compressionEnabled;
+        // One more than the preview so length(content) still tells the summary query it's truncated
+        this.inlineCodePoints = Math.max(256, previewLength + 1);
+        // A body over the threshold has at least half as many code points, so the prefix is a real prefix
+        this.thresholdChars = Math.max(thresholdChars, 2 * inlineCodePoints);
+    }
+
+    public boolean isCompressionEnabled() {
+        return compressionEnabled;
+    }
+
+    public int getThresholdChars() {
+        return thresholdChars;
+    }
+
+    public boolean shouldCompress(String content) {
+        return compressionEnabled && content != null && content.length() > thresholdChars;
+    }
+
+    // Binds content to a statement's content and content_compressed parameters
+    public void bind(PreparedStatement ps, int contentIndex, int compressedIndex, String content) throws SQLException {
+        if (shouldCompress(content)) {
+            ps.setString(contentIndex, inlinePrefix(content));
+            ps.setBytes(compressedIndex, NoteContentCodec.compress(content));
+        } else {
+            ps.setString(contentIndex, content);
+            ps.setNull(compressedIndex, Types.BLOB);
+        }
+    }
+
+    // Counted in code points like SQLite's substr() and length(), never splits a surrogate pair
+    private String inlinePrefix(String content) {
+        return content.substring(0, content.offsetByCodePoints(0, inlineCodePoints));
+    }
+}
@@ -0,0 +1,45 @@
+package com.example.demo.repository;
+
+import com.example.demo.model.Note;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.stereotype.Repository;
+
+import javax.sql.DataSource;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.util.function.Consumer;
+
+/**
+ * Reads for note exports, on the export pool rather than the shared reader pool (see
+ * SqliteDataSourceConfig.exportDataSource). Not transactional: the single SELECT already reads
+ * one consistent snapshot for as long as its statement is open.
+ */
+@Repository
+public class NoteExportRepository {
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public NoteExportRepository(@Qualifier("exportDataSource") DataSource exportDataSource) {
+        this.jdbcTemplate = new JdbcTemplate(exportDataSource);
+    }
+
+    /**
+     * Hands the user's notes to action one row at a time, in the order of idx_notes_user_updated so
+     * no sort is needed. Nothing is collected: the statement steps through the result set as the
+     * action consumes it, so memory stays flat however many notes there are. The export connection
+     * is held until the last row has been handled.
+     */
+    public long forEachByUserId(Long userId, int fetchSize, Consumer<Note> action) {
+        String sql = "SELECT * FROM notes WHERE user_id = ? ORDER BY updated_at DESC, id";
+        long[] count = new long[1];
+        jdbcTemplate.query(connection -> {
+            PreparedStatement ps = connection.prepareStatement(sql, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+            ps.setFetchSize(fetchSize);
+            ps.setLong(1, userId);
+            return ps;
+        }, (RowCallbackHandler) rs -> action.accept(NoteRepository.NOTE_ROW_MAPPER.mapRow(rs, (int) count[0]++)));
+        return count[0];
+    }
+}
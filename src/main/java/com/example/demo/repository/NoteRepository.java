@@ -1,29 +1,47 @@
 package com.example.demo.repository;
 
+import com.example.demo.dto.NoteChange;
+import com.example.demo.dto.NoteCursor;
+import com.example.demo.dto.NoteSummary;
+import com.example.demo.dto.NotesRevision;
+import com.example.demo.dto.SearchCursor;
 import com.example.demo.model.Note;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.jdbc.core.RowMapper;
 import org.springframework.jdbc.support.GeneratedKeyHolder;
 import org.springframework.jdbc.support.KeyHolder;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
 import java.sql.PreparedStatement;
 import java.sql.Statement;
 import java.sql.Timestamp;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Optional;
 
 @Repository
 public class NoteRepository {
 
+    private static final Logger logger = LoggerFactory.getLogger(NoteRepository.class);
+
     private final JdbcTemplate jdbcTemplate;
+    private final NoteContentStorage contentStorage;
 
-    private final RowMapper<Note> noteRowMapper = (rs, rowNum) -> {
+    // A compressed body is kept as is and only inflated if the note's content is read
+    static final RowMapper<Note> NOTE_ROW_MAPPER = (rs, rowNum) -> {
         Note note = new Note();
         note.setId(rs.getLong("id"));
         note.setTitle(rs.getString("title"));
-        note.setContent(rs.getString("content"));
+        byte[] compressed = rs.getBytes("content_compressed");
+        if (compressed != null) {
+            note.setCompressedContent(compressed);
+        } else {
+            note.setContent(rs.getString("content"));
+        }
         note.setUserId(rs.getLong("user_id"));
         
         Timestamp createdAt = rs.getTimestamp("created_at");
@@ -39,8 +57,11 @@ public class NoteRepository {
         return note;
     };
 
-    public NoteRepository(JdbcTemplate jdbcTemplate) {
+    private static final String INDEX_SQL = "INSERT OR REPLACE INTO notes_fts (rowid, title, content) VALUES (?, ?, ?)";
+
+    public NoteRepository(JdbcTemplate jdbcTemplate, NoteContentStorage contentStorage) {
         this.jdbcTemplate = jdbcTemplate;
+        this.contentStorage = contentStorage;
     }
 
     public Note save(Note note) {
@@ -52,67 +73,283 @@ public class NoteRepository {
     }
 
     private Note insert(Note note) {
-        String sql = "INSERT INTO notes (title, content, user_id, created_at, updated_at) VALUES (?, ?, ?, ?, ?)";
+        String sql = "INSERT INTO notes (title, content, content_compressed, user_id, created_at, updated_at) VALUES (?, ?, ?, ?, ?, ?)";
         KeyHolder keyHolder = new GeneratedKeyHolder();
 
         jdbcTemplate.update(connection -> {
             PreparedStatement ps = connection.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS);
             ps.setString(1, note.getTitle());
-            ps.setString(2, note.getContent());
-            ps.setLong(3, note.getUserId());
-            ps.setTimestamp(4, Timestamp.valueOf(note.getCreatedAt() != null ? note.getCreatedAt() : LocalDateTime.now()));
-            ps.setTimestamp(5, Timestamp.valueOf(note.getUpdatedAt() != null ? note.getUpdatedAt() : LocalDateTime.now()));
+            contentStorage.bind(ps, 2, 3, note.getContent());
+            ps.setLong(4, note.getUserId());
+            ps.setTimestamp(5, Timestamp.valueOf(note.getCreatedAt() != null ? note.getCreatedAt() : LocalDateTime.now()));
+            ps.setTimestamp(6, Timestamp.valueOf(note.getUpdatedAt() != null ? note.getUpdatedAt() : LocalDateTime.now()));
             return ps;
         }, keyHolder);
 
         Long id = keyHolder.getKey() != null ? keyHolder.getKey().longValue() : null;
         note.setId(id);
+        index(note);
         return note;
     }
 
     private Note update(Note note) {
-        String sql = "UPDATE notes SET title = ?, content = ?, updated_at = ? WHERE id = ? AND user_id = ?";
+        String sql = "UPDATE notes SET title = ?, content = ?, content_compressed = ?, updated_at = ? WHERE id = ? AND user_id = ?";
         
         int updated = jdbcTemplate.update(sql, ps -> {
             ps.setString(1, note.getTitle());
-            ps.setString(2, note.getContent());
-            ps.setTimestamp(3, Timestamp.valueOf(LocalDateTime.now()));
-            ps.setLong(4, note.getId());
-            ps.setLong(5, note.getUserId());
+            contentStorage.bind(ps, 2, 3, note.getContent());
+            ps.setTimestamp(4, Timestamp.valueOf(LocalDateTime.now()));
+            ps.setLong(5, note.getId());
+            ps.setLong(6, note.getUserId());
         });
 
         if (updated == 0) {
             return null;
         }
+        index(note);
         return note;
     }
 
+    // Owner-scoped update that returns the stored row, empty if the note is missing or not the user's
+    public Optional<Note> updateReturning(Note note) {
+        String sql = "UPDATE notes SET title = ?, content = ?, content_compressed = ?, updated_at = ? "
+                + "WHERE id = ? AND user_id = ? RETURNING *";
+
+        List<Note> notes = jdbcTemplate.query(sql, ps -> {
+            ps.setString(1, note.getTitle());
+            contentStorage.bind(ps, 2, 3, note.getContent());
+            ps.setTimestamp(4, Timestamp.valueOf(note.getUpdatedAt() != null ? note.getUpdatedAt() : LocalDateTime.now()));
+            ps.setLong(5, note.getId());
+            ps.setLong(6, note.getUserId());
+        }, NOTE_ROW_MAPPER);
+        if (notes.isEmpty()) {
+            return Optional.empty();
+        }
+        index(note);
+        return Optional.of(notes.get(0));
+    }
+
+    // Multi-row insert through one batched statement. Must run inside a transaction: the ids are
+    // derived from last_insert_rowid(), which only works because AUTOINCREMENT hands out consecutive
+    // ids while this transaction holds SQLite's write lock.
+    public List<Note> batchInsert(List<Note> notes) {
+        if (notes.isEmpty()) {
+            return notes;
+        }
+        String sql = "INSERT INTO notes (title, content, content_compressed, user_id, created_at, updated_at) VALUES (?, ?, ?, ?, ?, ?)";
+        Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+
+        jdbcTemplate.batchUpdate(sql, notes, notes.size(), (ps, note) -> {
+            ps.setString(1, note.getTitle());
+            contentStorage.bind(ps, 2, 3, note.getContent());
+            ps.setLong(4, note.getUserId());
+            ps.setTimestamp(5, note.getCreatedAt() != null ? Timestamp.valueOf(note.getCreatedAt()) : now);
+            ps.setTimestamp(6, note.getUpdatedAt() != null ? Timestamp.valueOf(note.getUpdatedAt()) : now);
+        });
+
+        Long lastId = jdbcTemplate.queryForObject("SELECT last_insert_rowid()", Long.class);
+        long firstId = lastId - notes.size() + 1;
+        for (int i = 0; i < notes.size(); i++) {
+            notes.get(i).setId(firstId + i);
+        }
+        index(notes);
+        return notes;
+    }
+
+    // Returns per-note update counts, 0 means the note doesn't exist or belongs to someone else
+    public int[] batchUpdate(List<Note> notes) {
+        if (notes.isEmpty()) {
+            return new int[0];
+        }
+        String sql = "UPDATE notes SET title = ?, content = ?, content_compressed = ?, updated_at = ? WHERE id = ? AND user_id = ?";
+        Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+
+        int[] counts = jdbcTemplate.batchUpdate(sql, notes, notes.size(), (ps, note) -> {
+            ps.setString(1, note.getTitle());
+            contentStorage.bind(ps, 2, 3, note.getContent());
+            ps.setTimestamp(4, now);
+            ps.setLong(5, note.getId());
+            ps.setLong(6, note.getUserId());
+        })[0];
+
+        List<Note> updated = new ArrayList<>();
+        for (int i = 0; i < counts.length; i++) {
+            if (counts[i] > 0) {
+                updated.add(notes.get(i));
+            }
+        }
+        index(updated);
+        return counts;
+    }
+
+    // notes_fts is contentless (see V14) and indexed from here, with the full text of compressed
+    // bodies. Deletes are left to the notes_fts_after_delete trigger.
+    private void index(Note note) {
+        jdbcTemplate.update(INDEX_SQL, note.getId(), note.getTitle(), note.getContent());
+    }
+
+    private void index(List<Note> notes) {
+        if (notes.isEmpty()) {
+            return;
+        }
+        jdbcTemplate.batchUpdate(INDEX_SQL, notes, notes.size(), (ps, note) -> {
+            ps.setLong(1, note.getId());
+            ps.setString(2, note.getTitle());
+            ps.setString(3, note.getContent());
+        });
+    }
+
+    public int[] batchDeleteByIdsAndUserId(List<Long> ids, Long userId) {
+        if (ids.isEmpty()) {
+            return new int[0];
+        }
+        String sql = "DELETE FROM notes WHERE id = ? AND user_id = ?";
+
+        return jdbcTemplate.batchUpdate(sql, ids, ids.size(), (ps, id) -> {
+            ps.setLong(1, id);
+            ps.setLong(2, userId);
+        })[0];
+    }
+
     public Optional<Note> findById(Long id) {
         String sql = "SELECT * FROM notes WHERE id = ?";
-        List<Note> notes = jdbcTemplate.query(sql, ps -> ps.setLong(1, id), noteRowMapper);
+        List<Note> notes = jdbcTemplate.query(sql, ps -> ps.setLong(1, id), NOTE_ROW_MAPPER);
         return notes.isEmpty() ? Optional.empty() : Optional.of(notes.get(0));
     }
 
+    public Optional<Long> findOwnerId(Long id) {
+        String sql = "SELECT user_id FROM notes WHERE id = ?";
+        List<Long> owners = jdbcTemplate.queryForList(sql, Long.class, id);
+        return owners.isEmpty() ? Optional.empty() : Optional.of(owners.get(0));
+    }
+
     public Optional<Note> findByIdAndUserId(Long id, Long userId) {
         String sql = "SELECT * FROM notes WHERE id = ? AND user_id = ?";
         List<Note> notes = jdbcTemplate.query(sql, ps -> {
             ps.setLong(1, id);
             ps.setLong(2, userId);
-        }, noteRowMapper);
+        }, NOTE_ROW_MAPPER);
         return notes.isEmpty() ? Optional.empty() : Optional.of(notes.get(0));
     }
 
     public List<Note> findByUserId(Long userId) {
         String sql = "SELECT * FROM notes WHERE user_id = ? ORDER BY updated_at DESC";
-        System.out.println("NoteRepository.findByUserId - querying for userId: " + userId);
-        List<Note> notes = jdbcTemplate.query(sql, ps -> ps.setLong(1, userId), noteRowMapper);
-        System.out.println("NoteRepository.findByUserId - found " + notes.size() + " notes");
-        for (Note note : notes) {
-            System.out.println("  Note id: " + note.getId() + ", userId: " + note.getUserId() + ", title: " + note.getTitle());
-        }
+        List<Note> notes = jdbcTemplate.query(sql, ps -> ps.setLong(1, userId), NOTE_ROW_MAPPER);
+        logger.debug("findByUserId({}) returned {} notes", userId, notes.size());
         return notes;
     }
 
+    // Keyset pagination: seeks straight to the cursor on idx_notes_user_updated instead of OFFSET scanning.
+    // The updated_at <= ? bound gives the index a range start, the OR breaks ties on id.
+    public List<Note> findPageByUserId(Long userId, NoteCursor after, int limit) {
+        if (after == null) {
+            String sql = "SELECT * FROM notes WHERE user_id = ? ORDER BY updated_at DESC, id LIMIT ?";
+            return jdbcTemplate.query(sql, ps -> {
+                ps.setLong(1, userId);
+                ps.setInt(2, limit);
+            }, NOTE_ROW_MAPPER);
+        }
+
+        String sql = "SELECT * FROM notes WHERE user_id = ? AND updated_at <= ? AND (updated_at < ? OR id > ?) "
+                + "ORDER BY updated_at DESC, id LIMIT ?";
+        return jdbcTemplate.query(sql, ps -> {
+            ps.setLong(1, userId);
+            ps.setTimestamp(2, new Timestamp(after.updatedAt()));
+            ps.setTimestamp(3, new Timestamp(after.updatedAt()));
+            ps.setLong(4, after.id());
+            ps.setInt(5, limit);
+        }, NOTE_ROW_MAPPER);
+    }
+
+    // Same ordering as findPageByUserId, but only reads a prefix of the content column. A compressed
+    // row keeps a longer prefix than any preview there (see NoteContentStorage), its BLOB isn't read
+    public List<NoteSummary> findSummaryPageByUserId(Long userId, NoteCursor after, int limit, int previewLength) {
+        String columns = "SELECT id, title, updated_at, substr(content, 1, ?) AS preview, length(content) > ? AS truncated FROM notes ";
+        RowMapper<NoteSummary> summaryRowMapper = (rs, rowNum) -> {
+            Timestamp updatedAt = rs.getTimestamp("updated_at");
+            return new NoteSummary(
+                    rs.getLong("id"),
+                    rs.getString("title"),
+                    rs.getString("preview"),
+                    rs.getBoolean("truncated"),
+                    updatedAt != null ? updatedAt.toLocalDateTime() : null);
+        };
+
+        if (after == null) {
+            String sql = columns + "WHERE user_id = ? ORDER BY updated_at DESC, id LIMIT ?";
+            return jdbcTemplate.query(sql, ps -> {
+                ps.setInt(1, previewLength);
+                ps.setInt(2, previewLength);
+                ps.setLong(3, userId);
+                ps.setInt(4, limit);
+            }, summaryRowMapper);
+        }
+
+        String sql = columns + "WHERE user_id = ? AND updated_at <= ? AND (updated_at < ? OR id > ?) "
+                + "ORDER BY updated_at DESC, id LIMIT ?";
+        return jdbcTemplate.query(sql, ps -> {
+            ps.setInt(1, previewLength);
+            ps.setInt(2, previewLength);
+            ps.setLong(3, userId);
+            ps.setTimestamp(4, new Timestamp(after.updatedAt()));
+            ps.setTimestamp(5, new Timestamp(after.updatedAt()));
+            ps.setLong(6, after.id());
+            ps.setInt(7, limit);
+        }, summaryRowMapper);
+    }
+
+    // Full-text search over notes_fts (indexed by this class, see V14). Ordered by bm25 rank, then id,
+    // and paged by keyset on that pair. ftsQuery must already be a valid FTS5 MATCH expression. The
+    // index keeps no text, matches come back as notes for the caller to build snippets from.
+    public List<SearchMatch> search(Long userId, String ftsQuery, SearchCursor after, int limit) {
+        String sql = "SELECT n.*, notes_fts.rank AS rank "
+                + "FROM notes_fts JOIN notes n ON n.id = notes_fts.rowid "
+                + "WHERE notes_fts MATCH ? AND n.user_id = ? "
+                + (after != null ? "AND (notes_fts.rank > ? OR (notes_fts.rank = ? AND n.id > ?)) " : "")
+                + "ORDER BY notes_fts.rank, n.id LIMIT ?";
+
+        return jdbcTemplate.query(sql, ps -> {
+            int i = 1;
+            ps.setString(i++, ftsQuery);
+            ps.setLong(i++, userId);
+            if (after != null) {
+                ps.setDouble(i++, after.rank());
+                ps.setDouble(i++, after.rank());
+                ps.setLong(i++, after.id());
+            }
+            ps.setInt(i, limit);
+        }, (rs, rowNum) -> new SearchMatch(NOTE_ROW_MAPPER.mapRow(rs, rowNum), rs.getDouble("rank")));
+    }
+
+    // Rows stored uncompressed although they are over the threshold, in id order after afterId
+    @Transactional(readOnly = true)
+    public List<Note> findUncompressedAfter(long afterId, int minLength, int limit) {
+        String sql = "SELECT id, content FROM notes WHERE id > ? AND content_compressed IS NULL AND length(content) > ? "
+                + "ORDER BY id LIMIT ?";
+        return jdbcTemplate.query(sql, (rs, rowNum) -> {
+            Note note = new Note();
+            note.setId(rs.getLong("id"));
+            note.setContent(rs.getString("content"));
+            return note;
+        }, afterId, minLength, limit);
+    }
+
+    // Rewrites the bodies in the current storage format. A row edited since it was read keeps the
+    // edit, and updated_at is left alone because the note itself doesn't change
+    public int[] rewriteContent(List<Note> notes) {
+        if (notes.isEmpty()) {
+            return new int[0];
+        }
+        String sql = "UPDATE notes SET content = ?, content_compressed = ? "
+                + "WHERE id = ? AND content_compressed IS NULL AND content = ?";
+
+        return jdbcTemplate.batchUpdate(sql, notes, notes.size(), (ps, note) -> {
+            contentStorage.bind(ps, 1, 2, note.getContent());
+            ps.setLong(3, note.getId());
+            ps.setString(4, note.getContent());
+        })[0];
+    }
+
     public boolean deleteById(Long id) {
         String sql = "DELETE FROM notes WHERE id = ?";
         int deleted = jdbcTemplate.update(sql, ps -> ps.setLong(1, id));
@@ -128,9 +365,74 @@ public class NoteRepository {
         return deleted > 0;
     }
 
+    // Change feed, see V13: live notes stamped after since and, unless a client starts from
+    // scratch, tombstones of notes deleted after it, in stamp order. Both sides are range scans
+    // on (user_id, change_seq) and stamps are unique per user, so since alone is the cursor.
+    public List<NoteChange> findChangesSince(Long userId, long since, boolean includeTombstones, int limit) {
+        String notes = "SELECT change_seq, id, 0 AS deleted, user_id, title, content, content_compressed, created_at, updated_at "
+                + "FROM notes WHERE user_id = ? AND change_seq > ?";
+        String tombstones = "SELECT change_seq, note_id, 1, user_id, NULL, NULL, NULL, NULL, NULL "
+                + "FROM note_tombstones WHERE user_id = ? AND change_seq > ?";
+        String sql = (includeTombstones ? notes + " UNION ALL " + tombstones : notes) + " ORDER BY change_seq LIMIT ?";
+
+        RowMapper<NoteChange> changeRowMapper = (rs, rowNum) -> {
+            long seq = rs.getLong("change_seq");
+            if (rs.getBoolean("deleted")) {
+                return NoteChange.tombstone(seq, rs.getLong("id"));
+            }
+            Note note = NOTE_ROW_MAPPER.mapRow(rs, rowNum);
+            return new NoteChange(seq, note.getId(), false, note.getTitle(), note.getContent(),
+                    note.getCreatedAt(), note.getUpdatedAt());
+        };
+
+        return jdbcTemplate.query(sql, ps -> {
+            int i = 1;
+            ps.setLong(i++, userId);
+            ps.setLong(i++, since);
+            if (includeTombstones) {
+                ps.setLong(i++, userId);
+                ps.setLong(i++, since);
+            }
+            ps.setInt(i, limit);
+        }, changeRowMapper);
+    }
+
+    // Highest sequence whose tombstones may be gone, 0 if none were pruned yet
+    public long findPrunedSeq(Long userId) {
+        List<Long> seqs = jdbcTemplate.queryForList("SELECT notes_pruned_seq FROM users WHERE id = ?", Long.class, userId);
+        return seqs.isEmpty() ? 0 : seqs.get(0);
+    }
+
+    // Drops tombstones deleted before the cutoff (epoch ms) and raises each affected user's
+    // notes_pruned_seq first, so clients that still needed them are told to start over
+    @Transactional
+    public int pruneTombstones(long deletedBefore) {
+        jdbcTemplate.update("UPDATE users SET notes_pruned_seq = max(notes_pruned_seq, "
+                + "(SELECT max(change_seq) FROM note_tombstones t WHERE t.user_id = users.id AND t.deleted_at < ?)) "
+                + "WHERE id IN (SELECT user_id FROM note_tombstones WHERE deleted_at < ?)", deletedBefore, deletedBefore);
+        return jdbcTemplate.update("DELETE FROM note_tombstones WHERE deleted_at < ?", deletedBefore);
+    }
+
+    // Kept on the users row by the notes_revision_* triggers, a primary key read. notes_modified_at
+    // is NULL until the user's first change, which the driver won't return as a Long
+    @Transactional(readOnly = true)
+    public NotesRevision findRevision(Long userId) {
+        List<NotesRevision> revisions = jdbcTemplate.query(
+                "SELECT notes_revision, notes_modified_at FROM users WHERE id = ?",
+                (rs, rowNum) -> {
+                    long modifiedAt = rs.getLong(2);
+                    return new NotesRevision(rs.getLong(1), rs.wasNull() ? null : modifiedAt);
+                },
+                userId);
+        return revisions.isEmpty() ? new NotesRevision(0, null) : revisions.get(0);
+    }
+
     public boolean existsById(Long id) {
         String sql = "SELECT COUNT(*) FROM notes WHERE id = ?";
         Integer count = jdbcTemplate.queryForObject(sql, Integer.class, id);
         return count != null && count > 0;
     }
+
+    public record SearchMatch(Note note, double rank) {
+    }
 }
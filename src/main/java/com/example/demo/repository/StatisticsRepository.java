@@ -1,9 +1,83 @@
 package com.example.demo.repository;
 
 import com.example.demo.model.Statistics;
-import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
 
-public interface StatisticsRepository extends JpaRepository<Statistics, Long> {
-    Optional<Statistics> findByUserEmail(String userEmail);
-}
\ No newline at end of file
+/**
+ * One statistics row per user, keyed by user_id. Every read and write is a single statement
+ * on the primary key; counters are only changed with upserts, never read-modify-write.
+ */
+@Repository
+public class StatisticsRepository {
+
+    private final JdbcTemplate jdbcTemplate;
+
+    private final RowMapper<Statistics> statisticsRowMapper = (rs, rowNum) -> {
+        Statistics statistics = new Statistics(rs.getLong("user_id"));
+        statistics.setAdsBlocked(rs.getInt("ads_blocked"));
+        statistics.setTrackersBlocked(rs.getInt("trackers_blocked"));
+        statistics.setTimeSaved(rs.getDouble("time_saved"));
+        statistics.setUpdatedAt(rs.getLong("updated_at"));
+        return statistics;
+    };
+
+    public StatisticsRepository(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    @Transactional(readOnly = true)
+    public Optional<Statistics> findByUserId(Long userId) {
+        List<Statistics> rows = jdbcTemplate.query(
+                "SELECT user_id, ads_blocked, trackers_blocked, time_saved, updated_at FROM statistics WHERE user_id = ?",
+                statisticsRowMapper, userId);
+        return rows.stream().findFirst();
+    }
+
+    // Adds the deltas in one batch, the first delta of a user creates its row; a user deleted since is skipped
+    public void addAll(Collection<Increment> increments) {
+        long now = System.currentTimeMillis();
+        jdbcTemplate.batchUpdate(
+                "INSERT INTO statistics (user_id, ads_blocked, trackers_blocked, time_saved, updated_at) "
+                        + "SELECT ?, ?, ?, ?, ? WHERE EXISTS (SELECT 1 FROM users WHERE id = ?) "
+                        + "ON CONFLICT (user_id) DO UPDATE SET "
+                        + "ads_blocked = ads_blocked + excluded.ads_blocked, "
+                        + "trackers_blocked = trackers_blocked + excluded.trackers_blocked, "
+                        + "time_saved = time_saved + excluded.time_saved, "
+                        + "updated_at = excluded.updated_at",
+                increments, increments.size(), (ps, increment) -> {
+                    ps.setLong(1, increment.userId());
+                    ps.setLong(2, increment.adsBlocked());
+                    ps.setLong(3, increment.trackersBlocked());
+                    ps.setDouble(4, increment.timeSaved());
+                    ps.setLong(5, now);
+                    ps.setLong(6, increment.userId());
+                });
+    }
+
+    /**
+     * Overwrites the given totals (null keeps the stored value) and recomputes time saved with
+     * the weights of Statistics.incrementAdsBlocked/incrementTrackersBlocked, returns the row.
+     */
+    public Statistics replaceTotals(Long userId, Integer adsBlocked, Integer trackersBlocked) {
+        return jdbcTemplate.queryForObject(
+                "INSERT INTO statistics (user_id, ads_blocked, trackers_blocked, time_saved, updated_at) "
+                        + "VALUES (?1, COALESCE(?2, 0), COALESCE(?3, 0), (COALESCE(?2, 0) * 2.0 + COALESCE(?3, 0) * 0.5) / 3600.0, ?4) "
+                        + "ON CONFLICT (user_id) DO UPDATE SET "
+                        + "ads_blocked = COALESCE(?2, ads_blocked), "
+                        + "trackers_blocked = COALESCE(?3, trackers_blocked), "
+                        + "time_saved = (COALESCE(?2, ads_blocked) * 2.0 + COALESCE(?3, trackers_blocked) * 0.5) / 3600.0, "
+                        + "updated_at = ?4 "
+                        + "RETURNING user_id, ads_blocked, trackers_blocked, time_saved, updated_at",
+                statisticsRowMapper, userId, adsBlocked, trackersBlocked, System.currentTimeMillis());
+    }
+
+    public record Increment(long userId, long adsBlocked, long trackersBlocked, double timeSaved) {
+    }
+}
@@ -0,0 +1,116 @@
+package com.example.demo.repository;
+
+import com.example.demo.dto.DomainCount;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.util.Collection;
+import java.util.List;
+
+@Repository
+public class StatisticsRollupRepository {
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public StatisticsRollupRepository(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    // Deltas of a user deleted since they were recorded are skipped, as in StatisticsRepository.addAll
+    public void addToBuckets(String granularity, Collection<BucketDelta> deltas) {
+        jdbcTemplate.batchUpdate(
+                "INSERT INTO stats_rollups (user_id, granularity, bucket_start, ads_blocked, trackers_blocked) "
+                        + "SELECT ?, ?, ?, ?, ? WHERE EXISTS (SELECT 1 FROM users WHERE id = ?) "
+                        + "ON CONFLICT (user_id, granularity, bucket_start) DO UPDATE SET "
+                        + "ads_blocked = ads_blocked + excluded.ads_blocked, "
+                        + "trackers_blocked = trackers_blocked + excluded.trackers_blocked",
+                deltas, deltas.size(), (ps, delta) -> {
+                    ps.setLong(1, delta.userId());
+                    ps.setString(2, granularity);
+                    ps.setLong(3, delta.bucketStart());
+                    ps.setLong(4, delta.adsBlocked());
+                    ps.setLong(5, delta.trackersBlocked());
+                    ps.setLong(6, delta.userId());
+                });
+    }
+
+    public void addToDomains(Collection<DomainDelta> deltas) {
+        jdbcTemplate.batchUpdate(
+                "INSERT INTO stats_top_domains (user_id, day, domain, ads_blocked, trackers_blocked) "
+                        + "SELECT ?, ?, ?, ?, ? WHERE EXISTS (SELECT 1 FROM users WHERE id = ?) "
+                        + "ON CONFLICT (user_id, day, domain) DO UPDATE SET "
+                        + "ads_blocked = ads_blocked + excluded.ads_blocked, "
+                        + "trackers_blocked = trackers_blocked + excluded.trackers_blocked",
+                deltas, deltas.size(), (ps, delta) -> {
+                    ps.setLong(1, delta.userId());
+                    ps.setLong(2, delta.day());
+                    ps.setString(3, delta.domain());
+                    ps.setLong(4, delta.adsBlocked());
+                    ps.setLong(5, delta.trackersBlocked());
+                    ps.setLong(6, delta.userId());
+                });
+    }
+
+    // Every bucket of the given granularities overlapping [from, to), one index range per granularity
+    public List<BucketRow> findBuckets(Long userId, List<String> granularities, long from, long to) {
+        String placeholders = String.join(", ", granularities.stream().map(g -> "?").toList());
+        Object[] args = new Object[granularities.size() + 3];
+        args[0] = userId;
+        for (int i = 0; i < granularities.size(); i++) {
+            args[i + 1] = granularities.get(i);
+        }
+        args[args.length - 2] = from;
+        args[args.length - 1] = to;
+        return jdbcTemplate.query(
+                "SELECT granularity, bucket_start, ads_blocked, trackers_blocked FROM stats_rollups "
+                        + "WHERE user_id = ? AND granularity IN (" + placeholders + ") "
+                        + "AND bucket_start >= ? AND bucket_start < ? ORDER BY bucket_start",
+                (rs, rowNum) -> new BucketRow(rs.getString(1), rs.getLong(2), rs.getLong(3), rs.getLong(4)),
+                args);
+    }
+
+    public List<DomainCount> findTopDomains(Long userId, long fromDay, long toDay, int limit) {
+        return jdbcTemplate.query(
+                "SELECT domain, SUM(ads_blocked), SUM(trackers_blocked) FROM stats_top_domains "
+                        + "WHERE user_id = ? AND day >= ? AND day < ? "
+                        + "GROUP BY domain ORDER BY SUM(ads_blocked) + SUM(trackers_blocked) DESC, domain LIMIT ?",
+                (rs, rowNum) -> new DomainCount(rs.getString(1), rs.getLong(2), rs.getLong(3)),
+                userId, fromDay, toDay, limit);
+    }
+
+    /**
+     * Folds buckets of one granularity that start before cutoff into the coarser granularity
+     * and deletes them. Must run inside a transaction; returns the number of folded buckets.
+     */
+    public int compact(String from, String to, long coarserSizeMs, long cutoff) {
+        jdbcTemplate.update(
+                "INSERT INTO stats_rollups (user_id, granularity, bucket_start, ads_blocked, trackers_blocked) "
+                        + "SELECT user_id, ?, bucket_start - bucket_start % ?, SUM(ads_blocked), SUM(trackers_blocked) "
+                        + "FROM stats_rollups WHERE granularity = ? AND bucket_start < ? "
+                        + "GROUP BY user_id, bucket_start - bucket_start % ? "
+                        + "ON CONFLICT (user_id, granularity, bucket_start) DO UPDATE SET "
+                        + "ads_blocked = ads_blocked + excluded.ads_blocked, "
+                        + "trackers_blocked = trackers_blocked + excluded.trackers_blocked",
+                to, coarserSizeMs, from, cutoff, coarserSizeMs);
+        return jdbcTemplate.update("DELETE FROM stats_rollups WHERE granularity = ? AND bucket_start < ?", from, cutoff);
+    }
+
+    // Keeps the top domains of each user's day in [fromDay, toDay), returns the number of rows removed
+    public int trimDomains(long fromDay, long toDay, int keepPerDay) {
+        return jdbcTemplate.update(
+                "DELETE FROM stats_top_domains WHERE rowid IN (SELECT rowid FROM ("
+                        + "SELECT rowid, ROW_NUMBER() OVER (PARTITION BY user_id, day "
+                        + "ORDER BY ads_blocked + trackers_blocked DESC, domain) AS position "
+                        + "FROM stats_top_domains WHERE day >= ? AND day < ?) WHERE position > ?)",
+                fromDay, toDay, keepPerDay);
+    }
+
+    public record BucketDelta(long userId, long bucketStart, long adsBlocked, long trackersBlocked) {
+    }
+
+    public record DomainDelta(long userId, long day, String domain, long adsBlocked, long trackersBlocked) {
+    }
+
+    public record BucketRow(String granularity, long bucketStart, long adsBlocked, long trackersBlocked) {
+    }
+}
@@ -0,0 +1,18 @@
+package com.example.demo.security;
+
+import org.springframework.security.core.AuthenticatedPrincipal;
+
+import java.io.Serializable;
+
+/**
+ * Principal rebuilt from JWT claims alone. Carries everything the controllers need
+ * (id, email, role) so a request doesn't have to go back to the users table.
+ */
+public record AuthenticatedUser(Long id, String email, String role) implements AuthenticatedPrincipal, Serializable {
+
+    // authentication.getName() keeps returning the email, same as with UserDetails
+    @Override
+    public String getName() {
+        return email;
+    }
+}
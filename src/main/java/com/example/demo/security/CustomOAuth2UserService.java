@@ -2,6 +2,8 @@ package com.example.demo.security;
 
 import com.example.demo.model.User;
 import com.example.demo.service.UserService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.context.annotation.Lazy;
 import org.springframework.security.core.GrantedAuthority;
 import org.springframework.security.core.authority.SimpleGrantedAuthority;
@@ -17,6 +19,8 @@ import java.util.*;
 @Service
 public class CustomOAuth2UserService extends DefaultOAuth2UserService {
 
+    private static final Logger logger = LoggerFactory.getLogger(CustomOAuth2UserService.class);
+
     private final UserService userService;
 
     public CustomOAuth2UserService(@Lazy UserService userService) {
@@ -57,9 +61,6 @@ public class CustomOAuth2UserService extends DefaultOAuth2UserService {
         // Add existing OAuth2 authorities
         authorities.addAll(oauth2User.getAuthorities());
 
-        System.out.println("CustomOAuth2UserService - Adding role: " + role);
-        System.out.println("CustomOAuth2UserService - All authorities: " + authorities);
-
         // Return OAuth2User with additional ROLE_USER authority
         // Use email as the name attribute key so authentication.getName() returns email
         DefaultOAuth2User oauth2UserWithRole = new DefaultOAuth2User(
@@ -68,7 +69,7 @@ public class CustomOAuth2UserService extends DefaultOAuth2UserService {
                 "email" // Use email as the name attribute key
         );
         
-        System.out.println("CustomOAuth2UserService - Created OAuth2User with authorities: " + oauth2UserWithRole.getAuthorities());
+        logger.debug("Loaded OAuth2 user {} with authorities {}", email, oauth2UserWithRole.getAuthorities());
         
         return oauth2UserWithRole;
     }
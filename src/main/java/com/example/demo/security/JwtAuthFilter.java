@@ -1,10 +1,17 @@
 package com.example.demo.security;
 
+import io.jsonwebtoken.Claims;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
 import jakarta.servlet.FilterChain;
 import jakarta.servlet.ServletException;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.Authentication;
 import org.springframework.security.core.authority.SimpleGrantedAuthority;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.security.core.userdetails.UserDetails;
@@ -19,78 +26,107 @@ import java.util.Collections;
 @Component
 public class JwtAuthFilter extends OncePerRequestFilter {
 
+    // GenericFilterBean already has a commons-logging 'logger' field
+    private static final Logger log = LoggerFactory.getLogger(JwtAuthFilter.class);
+
     private final JwtTokenProvider jwtTokenProvider;
     private final UserDetailsService userDetailsService;
-
-    public JwtAuthFilter(JwtTokenProvider jwtTokenProvider, UserDetailsService userDetailsService) {
+    private final TokenVersionRegistry tokenVersionRegistry;
+    private final boolean statelessPrincipal;
+    private final MeterRegistry meterRegistry;
+
+    public JwtAuthFilter(JwtTokenProvider jwtTokenProvider,
+                         UserDetailsService userDetailsService,
+                         TokenVersionRegistry tokenVersionRegistry,
+                         MeterRegistry meterRegistry,
+                         @Value("${jwt.stateless-principal:true}") boolean statelessPrincipal) {
         this.jwtTokenProvider = jwtTokenProvider;
         this.userDetailsService = userDetailsService;
+        this.tokenVersionRegistry = tokenVersionRegistry;
+        this.meterRegistry = meterRegistry;
+        this.statelessPrincipal = statelessPrincipal;
     }
 
     @Override
     protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
             throws ServletException, IOException {
 
-        System.out.println("=== JwtAuthFilter ===");
-        System.out.println("Request URI: " + request.getRequestURI());
-        System.out.println("Request Method: " + request.getMethod());
-
         // Skip JWT filter for OAuth2 endpoints
         String path = request.getRequestURI();
         if (path.startsWith("/oauth2/") || path.startsWith("/login/oauth2/")) {
-            System.out.println("Skipping JWT filter - OAuth2 endpoint");
+            log.trace("Skipping JWT filter for OAuth2 endpoint {}", path);
             filterChain.doFilter(request, response);
             return;
         }
 
         // Check if there's already an authentication (e.g., from OAuth2 session)
-        if (SecurityContextHolder.getContext().getAuthentication() != null
-                && SecurityContextHolder.getContext().getAuthentication().isAuthenticated()) {
-            String authName = SecurityContextHolder.getContext().getAuthentication().getName();
-            System.out.println("Existing authentication found: " + authName);
-            System.out.println("Authentication class: " + SecurityContextHolder.getContext().getAuthentication().getClass().getName());
-
-            if (!authName.equals("anonymousUser")) {
-                System.out.println("Using existing OAuth2/session authentication, skipping JWT");
-                filterChain.doFilter(request, response);
-                return;
-            }
+        Authentication existing = SecurityContextHolder.getContext().getAuthentication();
+        if (existing != null && existing.isAuthenticated() && !existing.getName().equals("anonymousUser")) {
+            log.trace("Using existing {} for {}, skipping JWT", existing.getClass().getSimpleName(), existing.getName());
+            filterChain.doFilter(request, response);
+            return;
         }
 
+        // Times the token check only, not the rest of the chain
+        Timer.Sample sample = Timer.start(meterRegistry);
+        String outcome = "no_token";
         String authHeader = request.getHeader("Authorization");
-        System.out.println("Authorization header: " + authHeader);
 
         String token = null;
+        Claims claims = null;
         String username = null;
 
         if (authHeader != null && authHeader.startsWith("Bearer ")) {
             token = authHeader.substring(7);
-            System.out.println("JWT token found: " + token.substring(0, Math.min(20, token.length())) + "...");
 
             try {
-                username = jwtTokenProvider.extractUsername(token);
-                System.out.println("Extracted username from JWT: " + username);
+                // Parsed and verified once, later calls for the same token hit the claims cache
+                claims = jwtTokenProvider.extractAllClaims(token);
+                username = claims.getSubject();
             } catch (Exception e) {
-                System.out.println("JWT token validation failed: " + e.getMessage());
-                logger.debug("JWT token validation failed: " + e.getMessage());
+                outcome = "invalid";
+                log.debug("JWT token validation failed for {} {}: {}", request.getMethod(), path, e.getMessage());
             }
         } else {
-            System.out.println("No JWT token in Authorization header");
+            log.trace("No bearer token on {} {}", request.getMethod(), path);
         }
 
-        if (username != null && SecurityContextHolder.getContext().getAuthentication() == null) {
+        // Tokens that carry uid/ver are trusted as-is, only the token version is checked
+        if (username != null && statelessPrincipal && SecurityContextHolder.getContext().getAuthentication() == null
+                && claims.get(JwtTokenProvider.CLAIM_USER_ID) != null) {
+            Long userId = claims.get(JwtTokenProvider.CLAIM_USER_ID, Long.class);
+            Integer tokenVersion = claims.get(JwtTokenProvider.CLAIM_TOKEN_VERSION, Integer.class);
+
+            if (tokenVersionRegistry.isCurrent(userId, tokenVersion)) {
+                String role = claims.get(JwtTokenProvider.CLAIM_ROLE, String.class);
+                if (role == null) {
+                    role = "ROLE_USER";
+                }
+
+                AuthenticatedUser principal = new AuthenticatedUser(userId, username, role);
+                UsernamePasswordAuthenticationToken authToken = new UsernamePasswordAuthenticationToken(
+                        principal,
+                        null,
+                        Collections.singletonList(new SimpleGrantedAuthority(role))
+                );
+                authToken.setDetails(new WebAuthenticationDetailsSource().buildDetails(request));
+                SecurityContextHolder.getContext().setAuthentication(authToken);
+                outcome = "claims";
+
+                log.trace("JWT authentication set from claims for {} ({})", username, role);
+            } else {
+                outcome = "revoked";
+                log.debug("Rejected JWT with revoked token version {} for userId {}", tokenVersion, userId);
+            }
+        } else if (username != null && SecurityContextHolder.getContext().getAuthentication() == null) {
             try {
                 UserDetails userDetails = userDetailsService.loadUserByUsername(username);
-                System.out.println("Loaded UserDetails for: " + userDetails.getUsername());
-
-                if (jwtTokenProvider.validateToken(token, userDetails)) {
-                    System.out.println("JWT token is valid");
 
-                    String role = jwtTokenProvider.getRoleFromToken(token);
+                if (jwtTokenProvider.validateClaims(claims, userDetails)) {
+                    String role = claims.get(JwtTokenProvider.CLAIM_ROLE, String.class);
                     if (role == null) {
                         role = "ROLE_USER";
                     }
-                    System.out.println("User role: " + role);
 
                     UsernamePasswordAuthenticationToken authToken = new UsernamePasswordAuthenticationToken(
                             userDetails,
@@ -99,26 +135,20 @@ public class JwtAuthFilter extends OncePerRequestFilter {
                     );
                     authToken.setDetails(new WebAuthenticationDetailsSource().buildDetails(request));
                     SecurityContextHolder.getContext().setAuthentication(authToken);
+                    outcome = "user_lookup";
 
-                    System.out.println("JWT authentication set successfully for: " + username);
+                    log.trace("JWT authentication set from user lookup for {} ({})", username, role);
                 } else {
-                    System.out.println("JWT token validation failed");
+                    outcome = "invalid";
+                    log.debug("JWT claims do not match user {}", username);
                 }
             } catch (Exception e) {
-                System.out.println("Authentication failed: " + e.getMessage());
-                logger.debug("Authentication failed: " + e.getMessage());
-                e.printStackTrace();
-            }
-        } else {
-            if (username == null) {
-                System.out.println("No username extracted from JWT");
-            }
-            if (SecurityContextHolder.getContext().getAuthentication() != null) {
-                System.out.println("Authentication already exists, not setting JWT auth");
+                outcome = "invalid";
+                log.debug("JWT authentication failed for {}", username, e);
             }
         }
+        sample.stop(meterRegistry.timer("auth.jwt.filter", "outcome", outcome));
 
-        System.out.println("=== END JwtAuthFilter ===");
         filterChain.doFilter(request, response);
     }
 }
@@ -0,0 +1,116 @@
+package com.example.demo.security;
+
+import io.jsonwebtoken.Claims;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Base64;
+import java.util.Date;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+/**
+ * Bounded cache of already verified JWT claims, keyed by a SHA-256 digest of the token.
+ * Entries live until the token's own expiration, so a token is parsed and
+ * signature-checked once per lifetime instead of on every request.
+ */
+@Component
+public class JwtClaimsCache {
+
+    private final int maxEntries;
+    private final Map<String, CachedClaims> entries = new ConcurrentHashMap<>();
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    public JwtClaimsCache(@Value("${jwt.cache.max-entries:10000}") int maxEntries) {
+        this.maxEntries = maxEntries;
+    }
+
+    public Claims getOrParse(String token, Function<String, Claims> parser) {
+        String key = digest(token);
+        long now = System.currentTimeMillis();
+
+        CachedClaims cached = entries.get(key);
+        if (cached != null) {
+            if (cached.expiresAt() > now) {
+                hits.increment();
+                return cached.claims();
+            }
+            if (entries.remove(key, cached)) {
+                evictions.increment();
+            }
+        }
+
+        misses.increment();
+        // Throws on a bad signature or an expired token, so only verified claims get cached
+        Claims claims = parser.apply(token);
+
+        Date expiration = claims.getExpiration();
+        if (expiration != null && expiration.getTime() > now) {
+            if (entries.size() >= maxEntries) {
+                evict(now);
+            }
+            entries.put(key, new CachedClaims(claims, expiration.getTime()));
+        }
+        return claims;
+    }
+
+    public void invalidate(String token) {
+        if (entries.remove(digest(token)) != null) {
+            evictions.increment();
+        }
+    }
+
+    public long getHits() { return hits.sum(); }
+    public long getMisses() { return misses.sum(); }
+    public long getEvictions() { return evictions.sum(); }
+    public int size() { return entries.size(); }
+
+    // Drops expired tokens first; if the cache is still full, drops the ones closest
+    // to expiry until it is back under 90% of capacity so this doesn't run on every miss
+    private void evict(long now) {
+        entries.entrySet().removeIf(entry -> {
+            boolean expired = entry.getValue().expiresAt() <= now;
+            if (expired) {
+                evictions.increment();
+            }
+            return expired;
+        });
+
+        int target = maxEntries - Math.max(1, maxEntries / 10);
+        if (entries.size() <= target) {
+            return;
+        }
+
+        entries.entrySet().stream()
+                .sorted(Map.Entry.comparingByValue((a, b) -> Long.compare(a.expiresAt(), b.expiresAt())))
+                .limit(entries.size() - target)
+                .map(Map.Entry::getKey)
+                .toList()
+                .forEach(key -> {
+                    if (entries.remove(key) != null) {
+                        evictions.increment();
+                    }
+                });
+    }
+
+    private static String digest(String token) {
+        try {
+            MessageDigest sha256 = MessageDigest.getInstance("SHA-256");
+            byte[] hash = sha256.digest(token.getBytes(StandardCharsets.UTF_8));
+            return Base64.getEncoder().encodeToString(hash);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+
+    private record CachedClaims(Claims claims, long expiresAt) {
+    }
+}
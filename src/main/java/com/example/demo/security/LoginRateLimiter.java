@@ -0,0 +1,129 @@
+package com.example.demo.security;
+
+import com.example.demo.exception.TooManyRequestsException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * In-memory token buckets for login attempts, one per client IP and one per email.
+ * Attempts over the limit are rejected before any password hashing happens.
+ */
+@Component
+public class LoginRateLimiter {
+
+    private static final Logger logger = LoggerFactory.getLogger(LoginRateLimiter.class);
+
+    private static final long SWEEP_INTERVAL_NANOS = TimeUnit.SECONDS.toNanos(1);
+
+    private final Limit ipLimit;
+    private final Limit emailLimit;
+    private final int maxTrackedKeys;
+
+    private final Map<String, TokenBucket> ipBuckets = new ConcurrentHashMap<>();
+    private final Map<String, TokenBucket> emailBuckets = new ConcurrentHashMap<>();
+    private final AtomicLong lastSweep = new AtomicLong(System.nanoTime());
+    private final LongAdder throttledCount = new LongAdder();
+
+    public LoginRateLimiter(@Value("${auth.rate-limit.ip.capacity:20}") int ipCapacity,
+                            @Value("${auth.rate-limit.ip.refill-per-minute:20}") double ipRefillPerMinute,
+                            @Value("${auth.rate-limit.email.capacity:5}") int emailCapacity,
+                            @Value("${auth.rate-limit.email.refill-per-minute:5}") double emailRefillPerMinute,
+                            @Value("${auth.rate-limit.max-tracked-keys:100000}") int maxTrackedKeys) {
+        this.ipLimit = new Limit(ipCapacity, ipRefillPerMinute);
+        this.emailLimit = new Limit(emailCapacity, emailRefillPerMinute);
+        this.maxTrackedKeys = maxTrackedKeys;
+    }
+
+    // The IP is checked first, a single client over its limit can't drain a victim's email bucket
+    public void checkLogin(String clientIp, String email) {
+        long now = System.nanoTime();
+        evictIdleBuckets(now);
+
+        String limited = "ip";
+        long waitNanos = acquire(ipBuckets, ipLimit, clientIp, now);
+        if (waitNanos == 0) {
+            limited = "email";
+            waitNanos = acquire(emailBuckets, emailLimit, email.trim().toLowerCase(Locale.ROOT), now);
+        }
+        if (waitNanos > 0) {
+            throttledCount.increment();
+            // Not the email: it is personal data and arbitrary client input
+            logger.warn("Login attempt from {} throttled by the {} limit", clientIp, limited);
+            throw new TooManyRequestsException("Too many login attempts, please retry later",
+                    (long) Math.ceil(waitNanos / 1e9));
+        }
+    }
+
+    public long getThrottledCount() {
+        return throttledCount.sum();
+    }
+
+    public int getTrackedKeys() {
+        return ipBuckets.size() + emailBuckets.size();
+    }
+
+    private long acquire(Map<String, TokenBucket> buckets, Limit limit, String key, long now) {
+        return buckets.computeIfAbsent(key, k -> new TokenBucket(limit, now)).tryAcquire(now);
+    }
+
+    // A full bucket carries no state worth keeping, it is recreated full on the next attempt
+    private void evictIdleBuckets(long now) {
+        long last = lastSweep.get();
+        if (getTrackedKeys() <= maxTrackedKeys || now - last < SWEEP_INTERVAL_NANOS
+                || !lastSweep.compareAndSet(last, now)) {
+            return;
+        }
+        ipBuckets.values().removeIf(bucket -> bucket.isFull(now));
+        emailBuckets.values().removeIf(bucket -> bucket.isFull(now));
+    }
+
+    private record Limit(int capacity, double refillPerMinute) {
+
+        double tokensPerNano() {
+            return refillPerMinute / TimeUnit.MINUTES.toNanos(1);
+        }
+    }
+
+    private static final class TokenBucket {
+        private final Limit limit;
+        private double tokens;
+        private long refilledAt;
+
+        TokenBucket(Limit limit, long now) {
+            this.limit = limit;
+            this.tokens = limit.capacity();
+            this.refilledAt = now;
+        }
+
+        // Returns 0 when a token was taken, otherwise the nanos until the next one is available
+        synchronized long tryAcquire(long now) {
+            refill(now);
+            if (tokens >= 1) {
+                tokens--;
+                return 0;
+            }
+            return (long) Math.ceil((1 - tokens) / limit.tokensPerNano());
+        }
+
+        synchronized boolean isFull(long now) {
+            refill(now);
+            return tokens >= limit.capacity();
+        }
+
+        private void refill(long now) {
+            if (now > refilledAt) {
+                tokens = Math.min(limit.capacity(), tokens + (now - refilledAt) * limit.tokensPerNano());
+                refilledAt = now;
+            }
+        }
+    }
+}
@@ -0,0 +1,84 @@
+package com.example.demo.security;
+
+import com.example.demo.repository.UserRepository;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * In-memory view of users.token_version. A token is only accepted while the version
+ * it was issued with is still current, so bumping the version revokes it.
+ *
+ * Bounded, least recently used users are dropped and read again on their next request. Deleted
+ * users are remembered as such (ids are AUTOINCREMENT and never reused), so their tokens don't
+ * cost a query each. A read that overlaps a revocation doesn't keep what it read, the same
+ * generation check NoteCache uses.
+ */
+@Component
+public class TokenVersionRegistry {
+
+    // token_version starts at 0 and only grows
+    private static final int DELETED = -1;
+    private static final int GENERATION_STRIPES = 1024;
+
+    private final UserRepository userRepository;
+    private final Cache<Long, Integer> versions;
+    private final AtomicLongArray generations = new AtomicLongArray(GENERATION_STRIPES);
+
+    public TokenVersionRegistry(UserRepository userRepository,
+                                @Value("${jwt.token-versions.max-entries:100000}") long maxEntries) {
+        this.userRepository = userRepository;
+        this.versions = Caffeine.newBuilder().maximumSize(maxEntries).build();
+    }
+
+    // One primary-key read the first time a user is seen, a cache lookup after that. The read
+    // happens outside the cache so other users' lookups don't wait on it.
+    public boolean isCurrent(Long userId, Integer tokenVersion) {
+        if (userId == null || tokenVersion == null) {
+            return false;
+        }
+        Integer current = versions.getIfPresent(userId);
+        if (current == null) {
+            long generation = generations.get(stripe(userId));
+            int loaded = userRepository.findTokenVersionById(userId).orElse(DELETED);
+            Integer raced = versions.asMap().putIfAbsent(userId, loaded);
+            current = raced != null ? raced : loaded;
+            if (generations.get(stripe(userId)) != generation) {
+                versions.invalidate(userId);
+            }
+        }
+        return current != DELETED && current.equals(tokenVersion);
+    }
+
+    public void revoke(Long userId) {
+        userRepository.incrementTokenVersion(userId);
+        forget(userId);
+    }
+
+    public void forget(Long userId) {
+        invalidate(userId);
+        // Drop it again once committed, a concurrent read may have cached the old version meanwhile
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    invalidate(userId);
+                }
+            });
+        }
+    }
+
+    private void invalidate(Long userId) {
+        generations.incrementAndGet(stripe(userId));
+        versions.invalidate(userId);
+    }
+
+    private static int stripe(Long userId) {
+        return (int) Math.floorMod(userId, (long) GENERATION_STRIPES);
+    }
+}
@@ -0,0 +1,339 @@
+package com.example.demo.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.TaskScheduler;
+import org.springframework.core.io.Resource;
+import org.springframework.core.io.ResourceLoader;
+import org.springframework.stereotype.Service;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+import java.util.stream.IntStream;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Owns the ad and tracker blocklists. Filter lists are compiled into a DomainSuffixTrie for
+ * host lookups, into a gzipped snapshot of the same trie that the extension downloads and
+ * matches against locally, and into declarativeNetRequest block rules. Snapshots are versioned
+ * by a hash of their rules; the last few versions are kept so clients can fetch a delta.
+ */
+@Service
+public class BlocklistService {
+
+    private static final Logger logger = LoggerFactory.getLogger(BlocklistService.class);
+
+    private static final Pattern HOSTS_ADDRESS = Pattern.compile("0\\.0\\.0\\.0|127\\.0\\.0\\.1|::1?");
+    // Same resource types as the static rules.json shipped with the extension
+    private static final List<String> RESOURCE_TYPES = List.of("script", "xmlhttprequest", "image", "sub_frame");
+
+    private final ResourceLoader resourceLoader;
+    private final ObjectMapper objectMapper;
+    private final TaskScheduler taskScheduler;
+    private final List<String> adSources;
+    private final List<String> trackerSources;
+    private final long reloadIntervalMs;
+    private final int historySize;
+
+    private volatile Snapshot snapshot;
+    // Previous versions, oldest first, including the current one
+    private final Map<String, Snapshot> history = new LinkedHashMap<>();
+    private final Map<String, Payload> deltas = new ConcurrentHashMap<>();
+    private ScheduledFuture<?> reloadTask;
+
+    public BlocklistService(ResourceLoader resourceLoader,
+                            ObjectMapper objectMapper,
+                            TaskScheduler taskScheduler,
+                            @Value("${blocklist.ads:classpath:blocklist/ads.txt}") List<String> adSources,
+                            @Value("${blocklist.trackers:classpath:blocklist/trackers.txt}") List<String> trackerSources,
+                            @Value("${blocklist.reload-interval-ms:0}") long reloadIntervalMs,
+                            @Value("${blocklist.history-size:10}") int historySize) {
+        this.resourceLoader = resourceLoader;
+        this.objectMapper = objectMapper;
+        this.taskScheduler = taskScheduler;
+        this.adSources = adSources;
+        this.trackerSources = trackerSources;
+        this.reloadIntervalMs = reloadIntervalMs;
+        this.historySize = historySize;
+    }
+
+    @PostConstruct
+    void start() {
+        reload();
+        // 0 disables reloading, the lists are compiled once at startup
+        if (reloadIntervalMs > 0) {
+            reloadTask = taskScheduler.scheduleWithFixedDelay(this::reloadQuietly,
+                    Instant.now().plusMillis(reloadIntervalMs), Duration.ofMillis(reloadIntervalMs));
+        }
+    }
+
+    @PreDestroy
+    void stop() {
+        if (reloadTask != null) {
+            reloadTask.cancel(false);
+        }
+    }
+
+    /**
+     * Re-reads and compiles the filter lists. The current snapshot keeps serving until the new
+     * one is ready, and is kept as is when the rules did not change.
+     */
+    public synchronized Snapshot reload() {
+        Map<String, Integer> rules = new TreeMap<>();
+        int skipped = load(adSources, DomainSuffixTrie.ADS, rules) + load(trackerSources, DomainSuffixTrie.TRACKERS, rules);
+
+        String version = version(rules);
+        Snapshot current = snapshot;
+        if (current != null && current.version().equals(version)) {
+            return current;
+        }
+
+        long start = System.nanoTime();
+        DomainSuffixTrie trie = DomainSuffixTrie.build(rules);
+        Map<Integer, String> ruleIds = assignRuleIds(trie.getRules().keySet());
+        Map<String, Object> ruleSet = new LinkedHashMap<>();
+        ruleSet.put("version", version);
+        ruleSet.put("type", "full");
+        ruleSet.put("rules", ruleIds.entrySet().stream().map(rule -> dnrRule(rule.getKey(), rule.getValue())).toList());
+
+        Snapshot compiled = new Snapshot(version, Instant.now(), trie, Payload.of(serialize(version, trie)),
+                Payload.of(toJson(ruleSet)), ruleIds);
+        history.put(version, compiled);
+        while (history.size() > historySize) {
+            String evicted = history.keySet().iterator().next();
+            history.remove(evicted);
+            deltas.keySet().removeIf(key -> key.startsWith(evicted + ".."));
+        }
+        snapshot = compiled;
+        logger.info("Compiled blocklist {}: {} rules ({} skipped lines), {} trie nodes, {} byte snapshot, "
+                        + "{} byte rule set in {} ms",
+                version, trie.getRuleCount(), skipped, trie.getNodeCount(), compiled.trieSnapshot().gzip().length,
+                compiled.rules().gzip().length, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+        return compiled;
+    }
+
+    /**
+     * Delta from an earlier version to the given current one, built and gzipped once per pair of
+     * versions. Empty when the earlier version is no longer (or never was) in the history.
+     */
+    public Optional<Payload> getDelta(Snapshot current, String since) {
+        Snapshot previous;
+        synchronized (this) {
+            previous = history.get(since);
+        }
+        if (previous == null) {
+            return Optional.empty();
+        }
+        return Optional.of(deltas.computeIfAbsent(since + ".." + current.version(),
+                key -> Payload.of(toJson(delta(previous, current)))));
+    }
+
+    private Map<String, Object> delta(Snapshot from, Snapshot to) {
+        List<Integer> removed = from.ruleIds().entrySet().stream()
+                .filter(rule -> !rule.getValue().equals(to.ruleIds().get(rule.getKey())))
+                .map(Map.Entry::getKey)
+                .toList();
+        List<Map<String, Object>> added = to.ruleIds().entrySet().stream()
+                .filter(rule -> !rule.getValue().equals(from.ruleIds().get(rule.getKey())))
+                .map(rule -> dnrRule(rule.getKey(), rule.getValue()))
+                .toList();
+
+        Map<String, Object> body = new LinkedHashMap<>();
+        body.put("version", to.version());
+        body.put("since", from.version());
+        body.put("type", "delta");
+        body.put("removeRuleIds", removed);
+        body.put("addRules", added);
+        return body;
+    }
+
+    // Ids derive from the domain so a rule keeps its id across versions; the rare hash collision
+    // moves to the next free id, a delta then simply removes and re-adds the affected rule
+    private static Map<Integer, String> assignRuleIds(Iterable<String> domains) {
+        Map<Integer, String> ids = new TreeMap<>();
+        for (String domain : domains) {
+            int id = (domain.hashCode() & 0x3fffffff) + 1;
+            while (ids.containsKey(id)) {
+                id = id == 0x40000000 ? 1 : id + 1;
+            }
+            ids.put(id, domain);
+        }
+        return ids;
+    }
+
+    // Same shape as the rules in the extension's rules.json, "||" anchors the domain and its subdomains
+    private static Map<String, Object> dnrRule(int id, String domain) {
+        Map<String, Object> rule = new LinkedHashMap<>();
+        rule.put("id", id);
+        rule.put("priority", 1);
+        rule.put("action", Map.of("type", "block"));
+        Map<String, Object> condition = new LinkedHashMap<>();
+        condition.put("urlFilter", "||" + domain + "^");
+        condition.put("resourceTypes", RESOURCE_TYPES);
+        rule.put("condition", condition);
+        return rule;
+    }
+
+    private void reloadQuietly() {
+        try {
+            reload();
+        } catch (Exception e) {
+            logger.error("Blocklist reload failed, keeping version {}", snapshot.version(), e);
+        }
+    }
+
+    public Snapshot getSnapshot() {
+        return snapshot;
+    }
+
+    // Accepts plain domain lists, hosts files and the domain-only subset of Adblock syntax (||domain^)
+    private int load(List<String> locations, int category, Map<String, Integer> rules) {
+        int skipped = 0;
+        for (String location : locations) {
+            Resource resource = resourceLoader.getResource(location.trim());
+            try (BufferedReader reader = new BufferedReader(
+                    new InputStreamReader(resource.getInputStream(), StandardCharsets.UTF_8))) {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    String domain = parseLine(line);
+                    if (domain == null) {
+                        continue;
+                    }
+                    if (DomainSuffixTrie.isValidHost(domain)) {
+                        rules.merge(domain, category, (a, b) -> a | b);
+                    } else {
+                        skipped++;
+                    }
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException("Could not read blocklist " + location, e);
+            }
+        }
+        return skipped;
+    }
+
+    private static String parseLine(String line) {
+        String entry = line.strip();
+        int comment = entry.indexOf('#');
+        if (comment >= 0) {
+            entry = entry.substring(0, comment).strip();
+        }
+        if (entry.isEmpty() || entry.startsWith("!") || entry.startsWith("[")) {
+            return null;
+        }
+
+        if (entry.startsWith("||")) {
+            entry = entry.substring(2);
+            if (entry.endsWith("^")) {
+                entry = entry.substring(0, entry.length() - 1);
+            }
+        } else {
+            String[] fields = entry.split("\\s+");
+            if (fields.length > 1 && HOSTS_ADDRESS.matcher(fields[0]).matches()) {
+                entry = fields[1];
+            }
+        }
+
+        String domain = DomainSuffixTrie.normalizeHost(entry);
+        return domain.equals("localhost") || domain.isEmpty() ? null : domain;
+    }
+
+    private static String version(Map<String, Integer> rules) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            rules.forEach((domain, categories) -> {
+                digest.update(domain.getBytes(StandardCharsets.UTF_8));
+                digest.update((byte) ('0' + categories));
+            });
+            return HexFormat.of().formatHex(digest.digest(), 0, 8);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private byte[] serialize(String version, DomainSuffixTrie trie) {
+        byte[] flags = trie.getFlags();
+        Map<String, Object> body = new LinkedHashMap<>();
+        body.put("version", version);
+        body.put("rules", trie.getRuleCount());
+        body.put("categories", Map.of("ads", DomainSuffixTrie.ADS, "trackers", DomainSuffixTrie.TRACKERS));
+        body.put("labels", trie.getLabels());
+        body.put("childStart", trie.getChildStart());
+        body.put("nodeLabel", trie.getNodeLabel());
+        body.put("flags", IntStream.range(0, flags.length).map(i -> flags[i]).toArray());
+        return toJson(body);
+    }
+
+    private byte[] toJson(Map<String, Object> body) {
+        try {
+            return objectMapper.writeValueAsBytes(body);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Could not serialize blocklist", e);
+        }
+    }
+
+    // Compressed once per version at the highest level, the cost is paid once and not per request
+    private static byte[] gzip(byte[] bytes) {
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream(bytes.length / 4);
+        try (GZIPOutputStream gzip = new GZIPOutputStream(buffer) {
+            {
+                def.setLevel(Deflater.BEST_COMPRESSION);
+            }
+        }) {
+            gzip.write(bytes);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return buffer.toByteArray();
+    }
+
+    /**
+     * A compiled blocklist version. trieSnapshot is the serialized trie and rules the
+     * declarativeNetRequest rule set, both built once per version and served as is. ruleIds maps
+     * each rule id to its domain.
+     */
+    public record Snapshot(String version, Instant compiledAt, DomainSuffixTrie trie, Payload trieSnapshot,
+                           Payload rules, Map<Integer, String> ruleIds) {
+
+        // Matches against this version, whatever has been compiled since
+        public DomainSuffixTrie.Match match(String host) {
+            String normalized = DomainSuffixTrie.normalizeHost(host);
+            if (!DomainSuffixTrie.isValidHost(normalized)) {
+                throw new IllegalArgumentException("Invalid host: " + host);
+            }
+            return trie.match(normalized);
+        }
+    }
+
+    // A JSON body kept both plain and gzipped, so neither encoding is produced per request
+    public record Payload(byte[] identity, byte[] gzip) {
+
+        static Payload of(byte[] json) {
+            return new Payload(json, BlocklistService.gzip(json));
+        }
+    }
+}
@@ -0,0 +1,211 @@
+package com.example.demo.service;
+
+import com.example.demo.dto.DomainEstimate;
+import com.example.demo.repository.DomainSketchRepository;
+import com.example.demo.repository.DomainSketchRepository.Checkpoint;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.TaskScheduler;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledFuture;
+
+/**
+ * All-time most blocked domains, per user and across all users, kept in fixed-size
+ * HeavyHitterSketches instead of per-domain rows. Sketches are checkpointed to domain_sketches
+ * periodically and on shutdown, loaded on first use and merged into the live sketch, and user
+ * sketches idle for a while are dropped from memory after their last checkpoint. Counts added
+ * since the last checkpoint are lost on a crash, which the approximation tolerates.
+ */
+@Service
+public class DomainSketchService {
+
+    private static final Logger logger = LoggerFactory.getLogger(DomainSketchService.class);
+    private static final String GLOBAL_ID = "global";
+
+    private final DomainSketchRepository sketchRepository;
+    private final TaskScheduler taskScheduler;
+    private final int userWidth;
+    private final int userDepth;
+    private final int userCapacity;
+    private final int globalCapacity;
+    private final long checkpointIntervalMs;
+    private final long idleMs;
+    private final Tracked global;
+    private final Map<Long, Tracked> users = new ConcurrentHashMap<>();
+    private ScheduledFuture<?> checkpointTask;
+
+    public DomainSketchService(DomainSketchRepository sketchRepository,
+                               TaskScheduler taskScheduler,
+                               @Value("${stats.sketches.user-width:128}") int userWidth,
+                               @Value("${stats.sketches.user-depth:4}") int userDepth,
+                               @Value("${stats.sketches.user-capacity:20}") int userCapacity,
+                               @Value("${stats.sketches.global-width:4096}") int globalWidth,
+                               @Value("${stats.sketches.global-depth:4}") int globalDepth,
+                               @Value("${stats.sketches.global-capacity:100}") int globalCapacity,
+                               @Value("${stats.sketches.checkpoint-interval-ms:60000}") long checkpointIntervalMs,
+                               @Value("${stats.sketches.idle-minutes:30}") long idleMinutes) {
+        this.sketchRepository = sketchRepository;
+        this.taskScheduler = taskScheduler;
+        this.userWidth = userWidth;
+        this.userDepth = userDepth;
+        this.userCapacity = userCapacity;
+        this.globalCapacity = globalCapacity;
+        this.checkpointIntervalMs = checkpointIntervalMs;
+        this.idleMs = Duration.ofMinutes(idleMinutes).toMillis();
+        this.global = new Tracked(null, new HeavyHitterSketch(globalWidth, globalDepth, globalCapacity));
+    }
+
+    @PostConstruct
+    void start() {
+        restore(GLOBAL_ID, global.sketch);
+        checkpointTask = taskScheduler.scheduleWithFixedDelay(this::checkpointQuietly,
+                Instant.now().plusMillis(checkpointIntervalMs), Duration.ofMillis(checkpointIntervalMs));
+    }
+
+    @PreDestroy
+    void stop() {
+        checkpointTask.cancel(false);
+        checkpoint();
+    }
+
+    public void record(long userId, String domain, long count) {
+        global.add(domain, count);
+        tracked(userId).add(domain, count);
+    }
+
+    public TopDomains topForUser(long userId, int limit) {
+        Tracked user = tracked(userId);
+        user.lastUsed = System.currentTimeMillis();
+        return top(user.sketch, limit);
+    }
+
+    public TopDomains topGlobal(int limit) {
+        return top(global.sketch, limit);
+    }
+
+    // Domains tracked per user sketch and in the global one, no top list can be longer
+    public int getUserCapacity() {
+        return userCapacity;
+    }
+
+    public int getGlobalCapacity() {
+        return globalCapacity;
+    }
+
+    public int getTrackedUsers() {
+        return users.size();
+    }
+
+    /**
+     * Writes every sketch changed since the last checkpoint in one batch, then drops user
+     * sketches that were idle and are fully persisted. Synchronized, the final checkpoint on
+     * shutdown may overlap a scheduled one that is still running.
+     */
+    public synchronized void checkpoint() {
+        List<Checkpoint> checkpoints = new ArrayList<>();
+        List<Tracked> written = new ArrayList<>();
+        if (global.dirty) {
+            global.dirty = false;
+            checkpoints.add(new Checkpoint(GLOBAL_ID, null, global.sketch.toBytes()));
+            written.add(global);
+        }
+        for (Tracked user : users.values()) {
+            if (user.dirty) {
+                user.dirty = false;
+                checkpoints.add(new Checkpoint(userSketchId(user.userId), user.userId, user.sketch.toBytes()));
+                written.add(user);
+            }
+        }
+
+        long now = System.currentTimeMillis();
+        if (!checkpoints.isEmpty()) {
+            try {
+                sketchRepository.save(checkpoints, now);
+            } catch (RuntimeException e) {
+                written.forEach(tracked -> tracked.dirty = true);
+                throw e;
+            }
+            logger.debug("Checkpointed {} domain sketches", checkpoints.size());
+        }
+
+        // An add racing with the removal may land in the dropped sketch, at most a few counts
+        users.values().removeIf(user -> !user.dirty && now - user.lastUsed > idleMs);
+    }
+
+    // First use since startup or eviction reads the checkpoint, outside the map so other users
+    // hashed to the same bin don't wait for the query. Two threads loading the same user read the
+    // same checkpoint and haven't added anything yet, the one that loses the race drops its copy.
+    private Tracked tracked(long userId) {
+        Tracked user = users.get(userId);
+        if (user != null) {
+            return user;
+        }
+        Tracked loaded = load(userId);
+        user = users.putIfAbsent(userId, loaded);
+        return user != null ? user : loaded;
+    }
+
+    private Tracked load(Long userId) {
+        Tracked user = new Tracked(userId, new HeavyHitterSketch(userWidth, userDepth, userCapacity));
+        restore(userSketchId(userId), user.sketch);
+        return user;
+    }
+
+    private void restore(String sketchId, HeavyHitterSketch sketch) {
+        sketchRepository.find(sketchId).ifPresent(data -> {
+            try {
+                sketch.merge(HeavyHitterSketch.fromBytes(data));
+            } catch (IllegalArgumentException e) {
+                // Dimensions changed in the configuration, the old counts can't be carried over
+                logger.warn("Discarding domain sketch {}: {}", sketchId, e.getMessage());
+            }
+        });
+    }
+
+    private void checkpointQuietly() {
+        try {
+            checkpoint();
+        } catch (Exception e) {
+            logger.error("Domain sketch checkpoint failed, will retry", e);
+        }
+    }
+
+    private static TopDomains top(HeavyHitterSketch sketch, int limit) {
+        return new TopDomains(sketch.top(limit), sketch.getTotal(), sketch.getErrorBound(), sketch.getCapacity());
+    }
+
+    private static String userSketchId(Long userId) {
+        return "user:" + userId;
+    }
+
+    public record TopDomains(List<DomainEstimate> domains, long total, long errorBound, int capacity) {
+    }
+
+    private static final class Tracked {
+        final Long userId;
+        final HeavyHitterSketch sketch;
+        volatile boolean dirty;
+        volatile long lastUsed = System.currentTimeMillis();
+
+        Tracked(Long userId, HeavyHitterSketch sketch) {
+            this.userId = userId;
+            this.sketch = sketch;
+        }
+
+        void add(String domain, long count) {
+            sketch.add(domain, count);
+            dirty = true;
+            lastUsed = System.currentTimeMillis();
+        }
+    }
+}
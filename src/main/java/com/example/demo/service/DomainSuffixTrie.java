@@ -0,0 +1,240 @@
+package com.example.demo.service;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.regex.Pattern;
+
+/**
+ * Immutable trie over reversed domain labels ("ads.example.com" is stored as com → example → ads).
+ * A rule matches its domain and every subdomain of it. Nodes live in flat arrays in breadth-first
+ * order, so the children of a node are contiguous and sorted by label id and can be binary searched;
+ * the same arrays are published to the extension, which runs the identical lookup.
+ */
+public final class DomainSuffixTrie {
+
+    public static final int ADS = 1;
+    public static final int TRACKERS = 2;
+
+    private static final Pattern HOST = Pattern.compile(
+            "(?=.{1,253}$)([a-z0-9_]([a-z0-9_-]{0,61}[a-z0-9_])?)(\\.[a-z0-9_]([a-z0-9_-]{0,61}[a-z0-9_])?)*");
+
+    // Sorted, so label ids order the same way as the labels themselves
+    private final String[] labels;
+    private final Map<String, Integer> labelIds;
+    // Children of node i are the nodes childStart[i] .. childStart[i + 1] - 1, node 0 is the root
+    private final int[] childStart;
+    private final int[] nodeLabel;
+    // Category bits of the rule ending at a node, 0 for inner nodes
+    private final byte[] flags;
+    private final int ruleCount;
+
+    private DomainSuffixTrie(String[] labels, int[] childStart, int[] nodeLabel, byte[] flags, int ruleCount) {
+        this.labels = labels;
+        this.labelIds = new HashMap<>(labels.length * 2);
+        for (int i = 0; i < labels.length; i++) {
+            labelIds.put(labels[i], i);
+        }
+        this.childStart = childStart;
+        this.nodeLabel = nodeLabel;
+        this.flags = flags;
+        this.ruleCount = ruleCount;
+    }
+
+    /**
+     * Builds the trie from domain → category bits. A rule below another rule with the same
+     * categories is dropped, the parent already covers it.
+     */
+    public static DomainSuffixTrie build(Map<String, Integer> domains) {
+        Node root = new Node();
+        for (Map.Entry<String, Integer> entry : domains.entrySet()) {
+            String[] parts = entry.getKey().split("\\.");
+            Node node = root;
+            for (int i = parts.length - 1; i >= 0; i--) {
+                node = node.children.computeIfAbsent(parts[i], label -> new Node());
+            }
+            node.flags |= entry.getValue();
+        }
+        pruneCovered(root, 0);
+
+        TreeSet<String> labelSet = new TreeSet<>();
+        collectLabels(root, labelSet);
+        String[] labels = labelSet.toArray(String[]::new);
+        Map<String, Integer> ids = new HashMap<>(labels.length * 2);
+        for (int i = 0; i < labels.length; i++) {
+            ids.put(labels[i], i);
+        }
+
+        // Breadth-first numbering; TreeMap iteration keeps siblings in label order
+        List<Node> order = new ArrayList<>();
+        List<String> orderLabels = new ArrayList<>();
+        Deque<Node> queue = new ArrayDeque<>();
+        order.add(root);
+        orderLabels.add(null);
+        queue.add(root);
+        List<Integer> starts = new ArrayList<>();
+        while (!queue.isEmpty()) {
+            Node node = queue.poll();
+            starts.add(order.size());
+            for (Map.Entry<String, Node> child : node.children.entrySet()) {
+                order.add(child.getValue());
+                orderLabels.add(child.getKey());
+                queue.add(child.getValue());
+            }
+        }
+        starts.add(order.size());
+        int[] childStart = starts.stream().mapToInt(Integer::intValue).toArray();
+
+        int[] nodeLabel = new int[order.size()];
+        byte[] flags = new byte[order.size()];
+        int ruleCount = 0;
+        nodeLabel[0] = -1;
+        for (int i = 1; i < order.size(); i++) {
+            nodeLabel[i] = ids.get(orderLabels.get(i));
+            flags[i] = (byte) order.get(i).flags;
+            if (flags[i] != 0) {
+                ruleCount++;
+            }
+        }
+        return new DomainSuffixTrie(labels, childStart, nodeLabel, flags, ruleCount);
+    }
+
+    private static void pruneCovered(Node node, int inherited) {
+        node.children.values().removeIf(child -> {
+            if ((child.flags & ~inherited) == 0) {
+                child.flags = 0;
+            }
+            pruneCovered(child, inherited | child.flags);
+            return child.flags == 0 && child.children.isEmpty();
+        });
+    }
+
+    private static void collectLabels(Node node, TreeSet<String> labels) {
+        for (Map.Entry<String, Node> child : node.children.entrySet()) {
+            labels.add(child.getKey());
+            collectLabels(child.getValue(), labels);
+        }
+    }
+
+    /**
+     * Returns the least specific rule covering the host together with the categories of every
+     * covering rule, or null. Expects a lower-case host name without a trailing dot; lookups cost
+     * one hash probe and one binary search per label.
+     */
+    public Match match(String host) {
+        int node = 0;
+        int end = host.length();
+        int categories = 0;
+        String rule = null;
+        while (end > 0) {
+            int start = host.lastIndexOf('.', end - 1) + 1;
+            Integer labelId = labelIds.get(host.substring(start, end));
+            if (labelId == null) {
+                break;
+            }
+            node = findChild(node, labelId);
+            if (node < 0) {
+                break;
+            }
+            if (flags[node] != 0) {
+                categories |= flags[node];
+                if (rule == null) {
+                    rule = host.substring(start);
+                }
+            }
+            end = start - 1;
+        }
+        return rule == null ? null : new Match(rule, categories);
+    }
+
+    private int findChild(int node, int labelId) {
+        int low = childStart[node];
+        int high = childStart[node + 1] - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            int label = nodeLabel[mid];
+            if (label < labelId) {
+                low = mid + 1;
+            } else if (label > labelId) {
+                high = mid - 1;
+            } else {
+                return mid;
+            }
+        }
+        return -1;
+    }
+
+    public int getRuleCount() {
+        return ruleCount;
+    }
+
+    public int getNodeCount() {
+        return nodeLabel.length;
+    }
+
+    // Flat arrays for the compiled snapshot, callers must not modify them
+
+    public List<String> getLabels() {
+        return Collections.unmodifiableList(Arrays.asList(labels));
+    }
+
+    public int[] getChildStart() {
+        return childStart;
+    }
+
+    public int[] getNodeLabel() {
+        return nodeLabel;
+    }
+
+    public byte[] getFlags() {
+        return flags;
+    }
+
+    // All rules as domain → category bits, in domain order
+    public Map<String, Integer> getRules() {
+        Map<String, Integer> rules = new TreeMap<>();
+        collectRules(0, "", rules);
+        return rules;
+    }
+
+    private void collectRules(int node, String suffix, Map<String, Integer> rules) {
+        for (int child = childStart[node]; child < childStart[node + 1]; child++) {
+            String domain = suffix.isEmpty() ? labels[nodeLabel[child]] : labels[nodeLabel[child]] + "." + suffix;
+            if (flags[child] != 0) {
+                rules.put(domain, (int) flags[child]);
+            }
+            collectRules(child, domain, rules);
+        }
+    }
+
+    // Expects a normalized host, see normalizeHost
+    public static boolean isValidHost(String host) {
+        return HOST.matcher(host).matches();
+    }
+
+    public static String normalizeHost(String host) {
+        String normalized = host.trim().toLowerCase(Locale.ROOT);
+        return normalized.endsWith(".") ? normalized.substring(0, normalized.length() - 1) : normalized;
+    }
+
+    public record Match(String rule, int categories) {
+
+        // Same precedence as the extension: something on both lists counts as an ad
+        public String category() {
+            return (categories & ADS) != 0 ? "ads" : "trackers";
+        }
+    }
+
+    private static final class Node {
+        final TreeMap<String, Node> children = new TreeMap<>();
+        int flags;
+    }
+}
@@ -0,0 +1,212 @@
+package com.example.demo.service;
+
+import com.example.demo.dto.DomainEstimate;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Count-Min sketch with a bounded set of heavy-hitter candidates. Memory is fixed by width,
+ * depth and capacity, however many distinct items are added. An estimate never undercounts and
+ * overcounts by at most e / width of the total with probability 1 - e^-depth.
+ *
+ * <p>add() updates the counters with atomic adds and touches the candidate map without a lock
+ * when the item is already a candidate or too small to become one. Only an item overtaking the
+ * smallest candidate takes the lock to swap it in.
+ */
+public final class HeavyHitterSketch {
+
+    private static final int FORMAT = 1;
+
+    private final int width;
+    private final int depth;
+    private final int capacity;
+    private final AtomicLongArray counters;
+    private final AtomicLong total = new AtomicLong();
+    // Candidate → estimate when last seen, refreshed from the counters when read
+    private final Map<String, Long> candidates;
+    private final Object promoteLock = new Object();
+    // Smallest candidate estimate once the set is full, anything at or below it can't get in
+    private volatile long floor;
+
+    public HeavyHitterSketch(int width, int depth, int capacity) {
+        if (width < 1 || depth < 1 || capacity < 1) {
+            throw new IllegalArgumentException("width, depth and capacity must be positive");
+        }
+        this.width = width;
+        this.depth = depth;
+        this.capacity = capacity;
+        this.counters = new AtomicLongArray(width * depth);
+        this.candidates = new ConcurrentHashMap<>(capacity * 2);
+    }
+
+    public void add(String item, long count) {
+        total.addAndGet(count);
+        long hash = mix(item.hashCode());
+        long estimate = Long.MAX_VALUE;
+        for (int row = 0; row < depth; row++) {
+            estimate = Math.min(estimate, counters.addAndGet(index(row, hash), count));
+        }
+
+        Long seen = candidates.get(item);
+        while (seen != null && seen < estimate) {
+            if (candidates.replace(item, seen, estimate)) {
+                return;
+            }
+            seen = candidates.get(item);
+        }
+        if (seen == null && (estimate > floor || candidates.size() < capacity)) {
+            promote(item, estimate);
+        }
+    }
+
+    public long estimate(String item) {
+        long hash = mix(item.hashCode());
+        long estimate = Long.MAX_VALUE;
+        for (int row = 0; row < depth; row++) {
+            estimate = Math.min(estimate, counters.get(index(row, hash)));
+        }
+        return estimate;
+    }
+
+    // The most frequent candidates, by current estimate
+    public List<DomainEstimate> top(int limit) {
+        List<DomainEstimate> top = new ArrayList<>(candidates.size());
+        for (String item : candidates.keySet()) {
+            top.add(new DomainEstimate(item, estimate(item)));
+        }
+        top.sort(Comparator.comparingLong(DomainEstimate::count).reversed().thenComparing(DomainEstimate::domain));
+        return top.size() > limit ? List.copyOf(top.subList(0, limit)) : top;
+    }
+
+    public long getTotal() {
+        return total.get();
+    }
+
+    // Largest overcount of any estimate (with probability 1 - e^-depth)
+    public long getErrorBound() {
+        return (long) Math.ceil(Math.E / width * total.get());
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    /**
+     * Adds another sketch's counts to this one. Both must have the same width and depth;
+     * merging is exact for the counters, the candidates are re-ranked on the merged counts.
+     */
+    public void merge(HeavyHitterSketch other) {
+        if (other.width != width || other.depth != depth) {
+            throw new IllegalArgumentException("Sketch dimensions differ: " + other.width + "x" + other.depth
+                    + " vs " + width + "x" + depth);
+        }
+        for (int i = 0; i < counters.length(); i++) {
+            long value = other.counters.get(i);
+            if (value != 0) {
+                counters.addAndGet(i, value);
+            }
+        }
+        total.addAndGet(other.total.get());
+        for (String item : other.candidates.keySet()) {
+            long estimate = estimate(item);
+            if (candidates.computeIfPresent(item, (key, seen) -> Math.max(seen, estimate)) == null) {
+                promote(item, estimate);
+            }
+        }
+    }
+
+    public byte[] toBytes() {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(counters.length() * 8 + candidates.size() * 32);
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeByte(FORMAT);
+            out.writeInt(width);
+            out.writeInt(depth);
+            out.writeInt(capacity);
+            out.writeLong(total.get());
+            for (int i = 0; i < counters.length(); i++) {
+                out.writeLong(counters.get(i));
+            }
+            List<String> items = List.copyOf(candidates.keySet());
+            out.writeInt(items.size());
+            for (String item : items) {
+                out.writeUTF(item);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return bytes.toByteArray();
+    }
+
+    public static HeavyHitterSketch fromBytes(byte[] data) {
+        try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(data))) {
+            int format = in.readByte();
+            if (format != FORMAT) {
+                throw new IllegalArgumentException("Unknown sketch format " + format);
+            }
+            HeavyHitterSketch sketch = new HeavyHitterSketch(in.readInt(), in.readInt(), in.readInt());
+            sketch.total.set(in.readLong());
+            for (int i = 0; i < sketch.counters.length(); i++) {
+                sketch.counters.set(i, in.readLong());
+            }
+            int items = in.readInt();
+            for (int i = 0; i < items; i++) {
+                String item = in.readUTF();
+                sketch.promote(item, sketch.estimate(item));
+            }
+            return sketch;
+        } catch (IOException e) {
+            throw new IllegalArgumentException("Corrupt sketch data", e);
+        }
+    }
+
+    private void promote(String item, long estimate) {
+        synchronized (promoteLock) {
+            if (candidates.putIfAbsent(item, estimate) != null || candidates.size() <= capacity) {
+                if (candidates.size() == capacity) {
+                    floor = smallest().getValue();
+                }
+                return;
+            }
+            Map.Entry<String, Long> smallest = smallest();
+            candidates.remove(smallest.getKey());
+            floor = smallest().getValue();
+        }
+    }
+
+    private Map.Entry<String, Long> smallest() {
+        Map.Entry<String, Long> smallest = null;
+        for (Map.Entry<String, Long> entry : candidates.entrySet()) {
+            if (smallest == null || entry.getValue() < smallest.getValue()) {
+                smallest = entry;
+            }
+        }
+        return smallest;
+    }
+
+    private int index(int row, long hash) {
+        // Row i uses h1 + i * h2 (Kirsch-Mitzenmacher), two hashes are enough for all rows
+        int h1 = (int) hash;
+        int h2 = (int) (hash >>> 32) | 1;
+        return row * width + Math.floorMod(h1 + row * h2, width);
+    }
+
+    // SplitMix64 finalizer, spreads String.hashCode over both halves
+    private static long mix(long value) {
+        long z = value + 0x9E3779B97F4A7C15L;
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+}
@@ -0,0 +1,218 @@
+package com.example.demo.service;
+
+import com.example.demo.dto.NotePage;
+import com.example.demo.dto.NoteSummary;
+import com.example.demo.dto.NotesRevision;
+import com.example.demo.model.Note;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.function.Supplier;
+
+/**
+ * Caches the first page of each user's note listing and single notes by id in front of
+ * NoteRepository. Later pages are read with a cursor, once per scroll, and are not cached. Both
+ * caches are bounded by an estimate of the bytes their notes take, so a few users with long
+ * notes can't crowd out everyone else, and evict with Caffeine's W-TinyLFU policy. Each user's
+ * notes revision, which every conditional read checks first, is kept alongside and dropped
+ * together with the first pages.
+ *
+ * Writers invalidate after their transaction commits. A read that overlaps a write doesn't
+ * store its result: every invalidation bumps a generation counter and a load only keeps what it
+ * read if the generation is unchanged once the value is in the cache. Cached notes are shared
+ * between requests and must not be modified.
+ */
+@Component
+public class NoteCache {
+
+    // Rough per-note cost besides the strings: the Note, two LocalDateTimes, boxed ids, cache entry
+    private static final int NOTE_OVERHEAD_BYTES = 160;
+    private static final int GENERATION_STRIPES = 1024;
+    // Views and page sizes kept per user; clients stick to one or two, anything past that starts over
+    private static final int MAX_PAGES_PER_USER = 4;
+
+    private final Cache<Long, FirstPages> pages;
+    private final Cache<Long, Note> notes;
+    private final Cache<Long, NotesRevision> revisions;
+    // Striped by key, a collision only costs a read that isn't cached
+    private final AtomicLongArray pageGenerations = new AtomicLongArray(GENERATION_STRIPES);
+    private final AtomicLongArray noteGenerations = new AtomicLongArray(GENERATION_STRIPES);
+
+    public NoteCache(@Value("${notes.cache.pages.max-size-mb:32}") long pagesMaxSizeMb,
+                     @Value("${notes.cache.notes.max-size-mb:16}") long notesMaxSizeMb,
+                     @Value("${notes.cache.revisions.max-entries:100000}") long revisionsMaxEntries) {
+        this.pages = Caffeine.newBuilder()
+                .maximumWeight(pagesMaxSizeMb * 1024 * 1024)
+                .weigher((Long userId, FirstPages firstPages) -> weigh(firstPages))
+                .recordStats()
+                .build();
+        this.notes = Caffeine.newBuilder()
+                .maximumWeight(notesMaxSizeMb * 1024 * 1024)
+                .weigher((Long id, Note note) -> weigh(note))
+                .recordStats()
+                .build();
+        this.revisions = Caffeine.newBuilder()
+                .maximumSize(revisionsMaxEntries)
+                .recordStats()
+                .build();
+    }
+
+    /**
+     * First page of the user's listing in the given view and page size. The same page instance is
+     * returned to every reader until the user's notes change.
+     */
+    @SuppressWarnings("unchecked")
+    public <T> NotePage<T> getFirstPage(Long userId, String view, int pageSize, Supplier<NotePage<T>> loader) {
+        PageKey key = new PageKey(view, pageSize);
+        FirstPages cached = pages.getIfPresent(userId);
+        if (cached != null && cached.pages().containsKey(key)) {
+            return (NotePage<T>) cached.pages().get(key);
+        }
+        long generation = pageGenerations.get(stripe(userId));
+        NotePage<T> loaded = loader.get();
+        NotePage<T> page = new NotePage<>(List.copyOf(loaded.items()), loaded.nextCursor());
+        // compute() so pages of other views loaded at the same time are kept, and the entry is re-weighed
+        pages.asMap().compute(userId, (id, existing) -> FirstPages.with(existing, key, page));
+        if (pageGenerations.get(stripe(userId)) != generation) {
+            pages.invalidate(userId);
+        }
+        return page;
+    }
+
+    public Optional<Note> getNote(Long noteId, Supplier<Optional<Note>> loader) {
+        Note cached = notes.getIfPresent(noteId);
+        if (cached != null) {
+            return Optional.of(cached);
+        }
+        long generation = noteGenerations.get(stripe(noteId));
+        Optional<Note> loaded = loader.get();
+        if (loaded.isPresent()) {
+            notes.put(noteId, loaded.get());
+            if (noteGenerations.get(stripe(noteId)) != generation) {
+                notes.invalidate(noteId);
+            }
+        }
+        return loaded;
+    }
+
+    // Invalidated with the user's first pages, so it shares their generations
+    public NotesRevision getRevision(Long userId, Supplier<NotesRevision> loader) {
+        NotesRevision cached = revisions.getIfPresent(userId);
+        if (cached != null) {
+            return cached;
+        }
+        long generation = pageGenerations.get(stripe(userId));
+        NotesRevision loaded = loader.get();
+        revisions.put(userId, loaded);
+        if (pageGenerations.get(stripe(userId)) != generation) {
+            revisions.invalidate(userId);
+        }
+        return loaded;
+    }
+
+    /**
+     * Drops the user's revision, first pages and the given notes once the current transaction commits, or right
+     * away outside a transaction. A rolled back write leaves the cache alone.
+     */
+    public void invalidate(Long userId, Collection<Long> noteIds) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    evict(userId, noteIds);
+                }
+            });
+        } else {
+            evict(userId, noteIds);
+        }
+    }
+
+    public void invalidateUser(Long userId) {
+        invalidate(userId, List.of());
+    }
+
+    public Cache<Long, FirstPages> getPages() {
+        return pages;
+    }
+
+    public Cache<Long, Note> getNotes() {
+        return notes;
+    }
+
+    public Cache<Long, NotesRevision> getRevisions() {
+        return revisions;
+    }
+
+    public long getPagesWeightedSize() {
+        return pages.policy().eviction().map(eviction -> eviction.weightedSize().orElse(0)).orElse(0L);
+    }
+
+    public long getNotesWeightedSize() {
+        return notes.policy().eviction().map(eviction -> eviction.weightedSize().orElse(0)).orElse(0L);
+    }
+
+    // Generation first, so a load that already checked it can't store a value read before this write
+    private void evict(Long userId, Collection<Long> noteIds) {
+        pageGenerations.incrementAndGet(stripe(userId));
+        pages.invalidate(userId);
+        revisions.invalidate(userId);
+        for (Long noteId : noteIds) {
+            noteGenerations.incrementAndGet(stripe(noteId));
+            notes.invalidate(noteId);
+        }
+    }
+
+    private static int stripe(Long key) {
+        return (int) Math.floorMod(key, (long) GENERATION_STRIPES);
+    }
+
+    private static int weigh(FirstPages firstPages) {
+        long bytes = 64;
+        for (NotePage<?> page : firstPages.pages().values()) {
+            bytes += 64;
+            for (Object item : page.items()) {
+                bytes += item instanceof Note note ? weigh(note) : weigh((NoteSummary) item);
+            }
+        }
+        return (int) Math.min(bytes, Integer.MAX_VALUE);
+    }
+
+    private static int weigh(NoteSummary summary) {
+        long chars = (summary.getTitle() != null ? summary.getTitle().length() : 0)
+                + (summary.getPreview() != null ? summary.getPreview().length() : 0);
+        return (int) Math.min(NOTE_OVERHEAD_BYTES + 2 * chars, Integer.MAX_VALUE);
+    }
+
+    // Strings counted at two bytes per char, the worst case for compact strings. A compressed body
+    // counts at its compressed size, which Note.getContent() leaves as it is
+    private static int weigh(Note note) {
+        long bytes = 2L * (note.getTitle() != null ? note.getTitle().length() : 0) + note.getContentFootprint();
+        return (int) Math.min(NOTE_OVERHEAD_BYTES + bytes, Integer.MAX_VALUE);
+    }
+
+    private record PageKey(String view, int pageSize) {
+    }
+
+    // Immutable, a new page replaces the whole entry so the cache weighs it again
+    public record FirstPages(Map<PageKey, NotePage<?>> pages) {
+
+        static FirstPages with(FirstPages existing, PageKey key, NotePage<?> page) {
+            Map<PageKey, NotePage<?>> updated = new HashMap<>();
+            if (existing != null && existing.pages().size() < MAX_PAGES_PER_USER) {
+                updated.putAll(existing.pages());
+            }
+            updated.put(key, page);
+            return new FirstPages(Map.copyOf(updated));
+        }
+    }
+}
@@ -0,0 +1,108 @@
+package com.example.demo.service;
+
+import com.example.demo.model.Note;
+import com.example.demo.repository.NoteContentStorage;
+import com.example.demo.repository.NoteRepository;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.TaskScheduler;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.concurrent.ScheduledFuture;
+
+/**
+ * With compressed storage enabled, converts notes written before it was switched on. Works
+ * through the table in id order, a small batch per write transaction with a pause in between, so
+ * the single writer connection stays available to requests. Compressing and the read happen
+ * outside the transaction. Stops once every long body is compressed; new writes are stored
+ * compressed by NoteRepository itself.
+ */
+@Service
+public class NoteCompactionService {
+
+    private static final Logger logger = LoggerFactory.getLogger(NoteCompactionService.class);
+
+    private final NoteRepository noteRepository;
+    private final NoteContentStorage contentStorage;
+    private final TransactionTemplate transactionTemplate;
+    private final TaskScheduler taskScheduler;
+    private final int batchSize;
+    private final long pauseMs;
+    private volatile ScheduledFuture<?> compactionTask;
+    private volatile long lastId;
+    private volatile long compacted;
+
+    public NoteCompactionService(NoteRepository noteRepository,
+                                 NoteContentStorage contentStorage,
+                                 PlatformTransactionManager transactionManager,
+                                 TaskScheduler taskScheduler,
+                                 @Value("${notes.storage.compaction.batch-size:200}") int batchSize,
+                                 @Value("${notes.storage.compaction.pause-ms:250}") long pauseMs) {
+        this.noteRepository = noteRepository;
+        this.contentStorage = contentStorage;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.taskScheduler = taskScheduler;
+        this.batchSize = batchSize;
+        this.pauseMs = pauseMs;
+    }
+
+    @PostConstruct
+    void start() {
+        if (!contentStorage.isCompressionEnabled()) {
+            return;
+        }
+        compactionTask = taskScheduler.scheduleWithFixedDelay(this::compactQuietly, Instant.now().plusMillis(pauseMs),
+                Duration.ofMillis(pauseMs));
+    }
+
+    @PreDestroy
+    void stop() {
+        if (compactionTask != null) {
+            compactionTask.cancel(false);
+        }
+    }
+
+    public long getCompactedCount() {
+        return compacted;
+    }
+
+    /**
+     * Compresses the next batch and returns how many rows were rewritten, or -1 when there is
+     * nothing left to convert.
+     */
+    public int compactBatch() {
+        List<Note> notes = noteRepository.findUncompressedAfter(lastId, contentStorage.getThresholdChars(), batchSize);
+        if (notes.isEmpty()) {
+            return -1;
+        }
+        int[] counts = transactionTemplate.execute(status -> noteRepository.rewriteContent(notes));
+        lastId = notes.get(notes.size() - 1).getId();
+
+        int rewritten = 0;
+        for (int count : counts) {
+            rewritten += count > 0 ? 1 : 0;
+        }
+        compacted += rewritten;
+        return rewritten;
+    }
+
+    private void compactQuietly() {
+        try {
+            if (compactBatch() < 0) {
+                logger.info("Note compaction finished, {} notes compressed", compacted);
+                compactionTask.cancel(false);
+            }
+        } catch (RuntimeException e) {
+            // Retried from the same id after the next pause
+            logger.warn("Note compaction batch failed: {}", e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,31 @@
+package com.example.demo.service;
+
+import com.example.demo.dto.NoteDTO;
+import jakarta.validation.ConstraintViolation;
+import jakarta.validation.Validator;
+
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * NoteDTO's constraints, the ones @Valid enforces on the single-note endpoints, for the paths
+ * that report invalid notes per item instead of failing the request: batch operations and the
+ * NDJSON import.
+ */
+final class NoteConstraints {
+
+    private NoteConstraints() {
+    }
+
+    // null when valid, otherwise "field: message" per violation, sorted, joined by "; "
+    static String violations(Validator validator, String title, String content) {
+        Set<ConstraintViolation<NoteDTO>> violations = validator.validate(new NoteDTO(title, content));
+        if (violations.isEmpty()) {
+            return null;
+        }
+        return violations.stream()
+                .map(violation -> violation.getPropertyPath() + ": " + violation.getMessage())
+                .sorted()
+                .collect(Collectors.joining("; "));
+    }
+}
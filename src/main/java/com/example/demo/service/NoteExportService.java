@@ -0,0 +1,169 @@
+package com.example.demo.service;
+
+import com.example.demo.exception.TooManyRequestsException;
+import com.example.demo.repository.NoteExportRepository;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.util.function.ThrowingSupplier;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.Locale;
+import java.util.concurrent.Semaphore;
+
+/**
+ * Writes all of a user's notes as NDJSON or CSV while they are read from the database cursor,
+ * one note in memory at a time. Each running export holds a connection of the export pool until
+ * the client has received the last row. The pool has one connection per allowed export, and
+ * further exports get a 429 instead of waiting for one.
+ */
+@Service
+public class NoteExportService {
+
+    private static final DateTimeFormatter TIMESTAMP = DateTimeFormatter.ISO_LOCAL_DATE_TIME;
+    private static final String CSV_HEADER = "id,title,content,createdAt,updatedAt\r\n";
+
+    public enum Format {
+        NDJSON("application/x-ndjson", "ndjson"), CSV("text/csv;charset=UTF-8", "csv");
+
+        private final String contentType;
+        private final String extension;
+
+        Format(String contentType, String extension) {
+            this.contentType = contentType;
+            this.extension = extension;
+        }
+
+        public String contentType() {
+            return contentType;
+        }
+
+        public String extension() {
+            return extension;
+        }
+
+        public static Format parse(String value) {
+            try {
+                return valueOf(value.toUpperCase(Locale.ROOT));
+            } catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException("format must be 'ndjson' or 'csv'");
+            }
+        }
+    }
+
+    private final NoteExportRepository noteExportRepository;
+    private final ObjectMapper objectMapper;
+    private final Semaphore exports;
+    private final int fetchSize;
+
+    public NoteExportService(NoteExportRepository noteExportRepository,
+                             ObjectMapper objectMapper,
+                             @Value("${notes.export.max-concurrent:2}") int maxConcurrent,
+                             @Value("${notes.export.fetch-size:500}") int fetchSize) {
+        this.noteExportRepository = noteExportRepository;
+        this.objectMapper = objectMapper;
+        this.exports = new Semaphore(maxConcurrent);
+        this.fetchSize = fetchSize;
+    }
+
+    /**
+     * Streams the user's notes, newest first, and returns how many were written. output is only
+     * opened once the export is allowed to run, so a rejected export can still be answered with an
+     * error response. The stream is closed (and a compressing stream finished) at the end.
+     */
+    public long export(Long userId, Format format, ThrowingSupplier<OutputStream> output) throws IOException {
+        if (!exports.tryAcquire()) {
+            throw new TooManyRequestsException("Too many exports in progress, please retry later", 5);
+        }
+        try (OutputStream out = output.getWithException()) {
+            return switch (format) {
+                case NDJSON -> writeNdjson(userId, out);
+                case CSV -> writeCsv(userId, out);
+            };
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        } catch (IOException | RuntimeException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new IllegalStateException("Could not open the export stream", e);
+        } finally {
+            exports.release();
+        }
+    }
+
+    private long writeNdjson(Long userId, OutputStream out) throws IOException {
+        try (JsonGenerator generator = objectMapper.getFactory().createGenerator(out)) {
+            // One object per line, each terminated by its own newline
+            generator.setRootValueSeparator(null);
+            return noteExportRepository.forEachByUserId(userId, fetchSize, note -> {
+                try {
+                    generator.writeStartObject();
+                    generator.writeNumberField("id", note.getId());
+                    generator.writeStringField("title", note.getTitle());
+                    generator.writeStringField("content", note.getContent());
+                    generator.writeStringField("createdAt", format(note.getCreatedAt()));
+                    generator.writeStringField("updatedAt", format(note.getUpdatedAt()));
+                    generator.writeEndObject();
+                    generator.writeRaw('\n');
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        }
+    }
+
+    // RFC 4180: CRLF line endings, fields with a comma, quote or line break are quoted
+    private long writeCsv(Long userId, OutputStream out) throws IOException {
+        Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+        writer.write(CSV_HEADER);
+        long count = noteExportRepository.forEachByUserId(userId, fetchSize, note -> {
+            try {
+                writer.write(String.valueOf(note.getId()));
+                writer.write(',');
+                writeCsvField(writer, note.getTitle());
+                writer.write(',');
+                writeCsvField(writer, note.getContent());
+                writer.write(',');
+                writeCsvField(writer, format(note.getCreatedAt()));
+                writer.write(',');
+                writeCsvField(writer, format(note.getUpdatedAt()));
+                writer.write("\r\n");
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+        writer.flush();
+        return count;
+    }
+
+    private static void writeCsvField(Writer writer, String value) throws IOException {
+        if (value == null) {
+            return;
+        }
+        boolean quote = false;
+        for (int i = 0; i < value.length() && !quote; i++) {
+            char c = value.charAt(i);
+            quote = c == ',' || c == '"' || c == '\n' || c == '\r';
+        }
+        if (!quote) {
+            writer.write(value);
+            return;
+        }
+        writer.write('"');
+        writer.write(value.replace("\"", "\"\""));
+        writer.write('"');
+    }
+
+    private static String format(LocalDateTime timestamp) {
+        return timestamp != null ? TIMESTAMP.format(timestamp) : null;
+    }
+}
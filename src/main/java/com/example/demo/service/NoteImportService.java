@@ -0,0 +1,207 @@
+package com.example.demo.service;
+
+import com.example.demo.dto.NoteImportResult;
+import com.example.demo.exception.TooManyRequestsException;
+import com.example.demo.model.Note;
+import com.example.demo.repository.NoteRepository;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.core.StreamReadConstraints;
+import com.fasterxml.jackson.core.exc.StreamConstraintsException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.validation.Validator;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Imports notes from an NDJSON body, one object per line in the format the export writes. The
+ * body is parsed one record at a time with Jackson's streaming parser and valid notes are
+ * inserted in fixed-size chunks, each in its own short write transaction, so heap use doesn't
+ * grow with the size of the import and other writers get the writer connection between chunks.
+ * Reading the next record waits for the previous chunk to commit, which is what slows a fast
+ * client down to the rate SQLite can write.
+ */
+@Service
+public class NoteImportService {
+
+    private static final Logger logger = LoggerFactory.getLogger(NoteImportService.class);
+    private static final int MAX_REPORTED_ERRORS = 100;
+    // Bounds the memory one record can take. Longer than any valid field, so a note that is merely
+    // too long is a per-line error; a value over this stops the import, the parser can't skip it
+    private static final int MAX_STRING_LENGTH = 64 * 1024;
+    private static final int MAX_NESTING_DEPTH = 16;
+
+    private final NoteRepository noteRepository;
+    private final NoteCache noteCache;
+    private final Validator validator;
+    private final TransactionTemplate transactionTemplate;
+    private final JsonFactory jsonFactory;
+    private final Semaphore imports;
+    private final int chunkSize;
+    private final AtomicLong importedCount = new AtomicLong();
+    private final AtomicLong rejectedCount = new AtomicLong();
+
+    public NoteImportService(NoteRepository noteRepository,
+                             NoteCache noteCache,
+                             Validator validator,
+                             PlatformTransactionManager transactionManager,
+                             ObjectMapper objectMapper,
+                             @Value("${notes.import.max-concurrent:1}") int maxConcurrent,
+                             @Value("${notes.import.chunk-size:500}") int chunkSize) {
+        this.noteRepository = noteRepository;
+        this.noteCache = noteCache;
+        this.validator = validator;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.jsonFactory = objectMapper.getFactory().copy();
+        this.jsonFactory.setStreamReadConstraints(StreamReadConstraints.builder()
+                .maxStringLength(MAX_STRING_LENGTH)
+                .maxNestingDepth(MAX_NESTING_DEPTH)
+                .build());
+        this.imports = new Semaphore(maxConcurrent);
+        this.chunkSize = chunkSize;
+    }
+
+    /**
+     * Imports the notes in body for the user. Invalid records are skipped and reported by line,
+     * malformed JSON or an oversized value stops the import at that line; chunks committed before
+     * it are kept.
+     */
+    public NoteImportResult importNotes(Long userId, InputStream body) throws IOException {
+        if (!imports.tryAcquire()) {
+            throw new TooManyRequestsException("Too many imports in progress, please retry later", 5);
+        }
+        Progress progress = new Progress(userId);
+        try (JsonParser parser = jsonFactory.createParser(body)) {
+            parse(parser, progress);
+            progress.flush();
+            return progress.result(true);
+        } catch (StreamConstraintsException e) {
+            progress.flush();
+            // Raised without a location, by the record being read
+            progress.reject(progress.line, "Value longer than " + MAX_STRING_LENGTH + " characters, import stopped");
+            return progress.result(false);
+        } catch (JsonProcessingException e) {
+            progress.flush();
+            long line = e.getLocation() != null ? e.getLocation().getLineNr() : -1;
+            progress.reject(line, "Malformed JSON, import stopped: " + e.getOriginalMessage());
+            return progress.result(false);
+        } finally {
+            imports.release();
+        }
+    }
+
+    private void parse(JsonParser parser, Progress progress) throws IOException {
+        JsonToken token;
+        while ((token = parser.nextToken()) != null) {
+            long line = parser.currentTokenLocation().getLineNr();
+            progress.line = line;
+            if (token != JsonToken.START_OBJECT) {
+                parser.skipChildren();
+                progress.reject(line, "Record must be a JSON object");
+                continue;
+            }
+
+            String title = null;
+            String content = null;
+            String createdAt = null;
+            String updatedAt = null;
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String field = parser.currentName();
+                JsonToken value = parser.nextToken();
+                switch (field) {
+                    case "title" -> title = value == JsonToken.VALUE_STRING ? parser.getText() : null;
+                    case "content" -> content = value == JsonToken.VALUE_STRING ? parser.getText() : null;
+                    case "createdAt" -> createdAt = value == JsonToken.VALUE_STRING ? parser.getText() : null;
+                    case "updatedAt" -> updatedAt = value == JsonToken.VALUE_STRING ? parser.getText() : null;
+                    default -> parser.skipChildren();
+                }
+            }
+
+            String error = NoteConstraints.violations(validator, title, content);
+            if (error != null) {
+                progress.reject(line, error);
+                continue;
+            }
+            Note note = new Note(title, content, progress.userId);
+            try {
+                // Optional, so an export can be imported again with its original timestamps
+                note.setCreatedAt(createdAt != null ? LocalDateTime.parse(createdAt) : null);
+                note.setUpdatedAt(updatedAt != null ? LocalDateTime.parse(updatedAt) : note.getCreatedAt());
+            } catch (DateTimeParseException e) {
+                progress.reject(line, "createdAt and updatedAt must be ISO-8601 local date-times");
+                continue;
+            }
+            progress.accept(note);
+        }
+    }
+
+    public long getImportedCount() {
+        return importedCount.get();
+    }
+
+    public long getRejectedCount() {
+        return rejectedCount.get();
+    }
+
+    private final class Progress {
+        final Long userId;
+        final List<Note> chunk = new ArrayList<>(chunkSize);
+        final List<NoteImportResult.LineError> errors = new ArrayList<>();
+        long imported;
+        long rejected;
+        // Line of the record being read
+        long line;
+
+        Progress(Long userId) {
+            this.userId = userId;
+        }
+
+        void accept(Note note) {
+            chunk.add(note);
+            if (chunk.size() == chunkSize) {
+                flush();
+            }
+        }
+
+        void reject(long line, String message) {
+            rejected++;
+            rejectedCount.incrementAndGet();
+            if (errors.size() < MAX_REPORTED_ERRORS) {
+                errors.add(new NoteImportResult.LineError(line, message));
+            }
+        }
+
+        void flush() {
+            if (chunk.isEmpty()) {
+                return;
+            }
+            transactionTemplate.executeWithoutResult(status -> {
+                noteRepository.batchInsert(chunk);
+                noteCache.invalidateUser(userId);
+            });
+            imported += chunk.size();
+            importedCount.addAndGet(chunk.size());
+            chunk.clear();
+            logger.debug("Note import for userId {}: {} imported, {} rejected so far", userId, imported, rejected);
+        }
+
+        NoteImportResult result(boolean complete) {
+            return new NoteImportResult(imported, rejected, complete, errors);
+        }
+    }
+}
@@ -1,36 +1,58 @@
 package com.example.demo.service;
 
+import com.example.demo.dto.NoteBatchOperation;
+import com.example.demo.dto.NoteBatchResult;
+import com.example.demo.dto.NoteCursor;
 import com.example.demo.dto.NoteDTO;
+import com.example.demo.dto.NotePage;
+import com.example.demo.dto.NoteSearchHit;
+import com.example.demo.dto.NoteSummary;
+import com.example.demo.dto.NotesRevision;
+import com.example.demo.dto.SearchCursor;
 import com.example.demo.model.Note;
-import com.example.demo.model.User;
 import com.example.demo.repository.NoteRepository;
-import com.example.demo.repository.UserRepository;
+import jakarta.validation.Validator;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.security.access.AccessDeniedException;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.sql.Timestamp;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
+import java.util.Objects;
 import java.util.Optional;
-import java.util.stream.Collectors;
 
 @Service
 public class NoteService {
 
     private final NoteRepository noteRepository;
-    private final UserRepository userRepository;
+    private final NoteCache noteCache;
+    private final Validator validator;
+    private final int defaultPageSize;
+    private final int maxPageSize;
+    private final int previewLength;
+    private final int maxBatchOperations;
 
-    public NoteService(NoteRepository noteRepository, UserRepository userRepository) {
+    public NoteService(NoteRepository noteRepository, NoteCache noteCache, Validator validator,
+                       @Value("${notes.page.default-size:50}") int defaultPageSize,
+                       @Value("${notes.page.max-size:200}") int maxPageSize,
+                       @Value("${notes.preview-length:200}") int previewLength,
+                       @Value("${notes.batch.max-operations:1000}") int maxBatchOperations) {
         this.noteRepository = noteRepository;
-        this.userRepository = userRepository;
+        this.noteCache = noteCache;
+        this.validator = validator;
+        this.defaultPageSize = defaultPageSize;
+        this.maxPageSize = maxPageSize;
+        this.previewLength = previewLength;
+        this.maxBatchOperations = maxBatchOperations;
     }
 
     @Transactional
     public Note createNote(NoteDTO noteDTO, Long userId) {
-        // Verify user exists
-        User user = userRepository.findById(userId)
-                .orElseThrow(() -> new IllegalArgumentException("User not found"));
-
         Note note = new Note();
         note.setTitle(noteDTO.getTitle());
         note.setContent(noteDTO.getContent());
@@ -38,71 +60,265 @@ public class NoteService {
         note.setCreatedAt(LocalDateTime.now());
         note.setUpdatedAt(LocalDateTime.now());
 
-        return noteRepository.save(note);
+        // notes.user_id references users(id), the insert itself verifies the user exists
+        try {
+            Note saved = noteRepository.save(note);
+            noteCache.invalidateUser(userId);
+            return saved;
+        } catch (DataIntegrityViolationException e) {
+            throw new IllegalArgumentException("User not found");
+        }
+    }
+
+    // Applies all operations in one transaction. Consecutive operations of the same kind are sent
+    // as one JDBC batch, so request order is preserved while a typical import is a single batch.
+    // Invalid items are reported and skipped, they don't roll back the rest.
+    @Transactional
+    public List<NoteBatchResult> applyBatch(List<NoteBatchOperation> operations, Long userId) {
+        if (operations.size() > maxBatchOperations) {
+            throw new IllegalArgumentException("A batch can contain at most " + maxBatchOperations + " operations");
+        }
+
+        NoteBatchResult[] results = new NoteBatchResult[operations.size()];
+        int runStart = 0;
+        while (runStart < operations.size()) {
+            String op = operations.get(runStart).getOp();
+            int runEnd = runStart + 1;
+            while (runEnd < operations.size() && Objects.equals(operations.get(runEnd).getOp(), op)) {
+                runEnd++;
+            }
+            applyRun(op, operations, runStart, runEnd, userId, results);
+            runStart = runEnd;
+        }
+
+        List<Long> changedIds = operations.stream()
+                .map(NoteBatchOperation::getId)
+                .filter(Objects::nonNull)
+                .toList();
+        noteCache.invalidate(userId, changedIds);
+        return Arrays.asList(results);
+    }
+
+    private void applyRun(String op, List<NoteBatchOperation> operations, int from, int to,
+                          Long userId, NoteBatchResult[] results) {
+        List<Integer> indexes = new ArrayList<>();
+        List<Note> notes = new ArrayList<>();
+        List<Long> ids = new ArrayList<>();
+
+        for (int i = from; i < to; i++) {
+            NoteBatchOperation operation = operations.get(i);
+            String error = validateOperation(operation);
+            if (error != null) {
+                results[i] = new NoteBatchResult(i, op, "invalid", operation.getId(), error);
+                continue;
+            }
+            indexes.add(i);
+            if ("delete".equals(op)) {
+                ids.add(operation.getId());
+            } else {
+                Note note = new Note(operation.getTitle(), operation.getContent(), userId);
+                note.setId(operation.getId());
+                notes.add(note);
+            }
+        }
+
+        switch (op) {
+            case "create" -> {
+                List<Note> created = noteRepository.batchInsert(notes);
+                for (int i = 0; i < created.size(); i++) {
+                    results[indexes.get(i)] = new NoteBatchResult(indexes.get(i), op, "created", created.get(i).getId(), null);
+                }
+            }
+            case "update" -> {
+                int[] counts = noteRepository.batchUpdate(notes);
+                for (int i = 0; i < counts.length; i++) {
+                    results[indexes.get(i)] = counts[i] > 0
+                            ? new NoteBatchResult(indexes.get(i), op, "updated", notes.get(i).getId(), null)
+                            : new NoteBatchResult(indexes.get(i), op, "not_found", notes.get(i).getId(), "Note not found");
+                }
+            }
+            case "delete" -> {
+                int[] counts = noteRepository.batchDeleteByIdsAndUserId(ids, userId);
+                for (int i = 0; i < counts.length; i++) {
+                    results[indexes.get(i)] = counts[i] > 0
+                            ? new NoteBatchResult(indexes.get(i), op, "deleted", ids.get(i), null)
+                            : new NoteBatchResult(indexes.get(i), op, "not_found", ids.get(i), "Note not found");
+                }
+            }
+            case null, default -> {
+                // validateOperation already rejected every item of a missing or unknown op
+            }
+        }
+    }
+
+    private String validateOperation(NoteBatchOperation operation) {
+        String op = operation.getOp();
+        if (!"create".equals(op) && !"update".equals(op) && !"delete".equals(op)) {
+            return "op must be one of create, update, delete";
+        }
+        if (!"create".equals(op) && operation.getId() == null) {
+            return "id is required for " + op;
+        }
+        if ("delete".equals(op)) {
+            return null;
+        }
+        return NoteConstraints.violations(validator, operation.getTitle(), operation.getContent());
+    }
+
+    public NotesRevision getNotesRevision(Long userId) {
+        return noteCache.getRevision(userId, () -> noteRepository.findRevision(userId));
     }
 
+    @Transactional(readOnly = true)
     public List<Note> getAllNotesByUserId(Long userId) {
         return noteRepository.findByUserId(userId);
     }
 
-    public Optional<Note> getNoteById(Long noteId, Long userId) {
-        Optional<Note> note = noteRepository.findByIdAndUserId(noteId, userId);
-        if (note.isEmpty()) {
-            // Check if note exists but belongs to another user
-            Optional<Note> anyNote = noteRepository.findById(noteId);
-            if (anyNote.isPresent()) {
-                throw new AccessDeniedException("You do not have access to this note");
+    // First pages are served from NoteCache until the user's notes change; they are shared and read-only
+    @Transactional(readOnly = true)
+    public NotePage<Note> getNotesPage(Long userId, String cursor, Integer limit) {
+        int pageSize = pageSize(limit);
+        NoteCursor after = decodeCursor(cursor);
+        if (after == null) {
+            return noteCache.getFirstPage(userId, "full", pageSize, () -> findNotesPage(userId, null, pageSize));
+        }
+        return findNotesPage(userId, after, pageSize);
+    }
+
+    private NotePage<Note> findNotesPage(Long userId, NoteCursor after, int pageSize) {
+        // One extra row tells whether there is a next page without a COUNT query
+        List<Note> notes = noteRepository.findPageByUserId(userId, after, pageSize + 1);
+        if (notes.size() <= pageSize) {
+            return new NotePage<>(notes, null);
+        }
+        List<Note> page = notes.subList(0, pageSize);
+        Note last = page.get(pageSize - 1);
+        return new NotePage<>(page, cursorAt(last.getUpdatedAt(), last.getId()));
+    }
+
+    @Transactional(readOnly = true)
+    public NotePage<NoteSummary> getNoteSummariesPage(Long userId, String cursor, Integer limit) {
+        int pageSize = pageSize(limit);
+        NoteCursor after = decodeCursor(cursor);
+        if (after == null) {
+            return noteCache.getFirstPage(userId, "summary", pageSize, () -> findSummariesPage(userId, null, pageSize));
+        }
+        return findSummariesPage(userId, after, pageSize);
+    }
+
+    private NotePage<NoteSummary> findSummariesPage(Long userId, NoteCursor after, int pageSize) {
+        List<NoteSummary> summaries = noteRepository.findSummaryPageByUserId(userId, after, pageSize + 1, previewLength);
+        if (summaries.size() <= pageSize) {
+            return new NotePage<>(summaries, null);
+        }
+        List<NoteSummary> page = summaries.subList(0, pageSize);
+        NoteSummary last = page.get(pageSize - 1);
+        return new NotePage<>(page, cursorAt(last.getUpdatedAt(), last.getId()));
+    }
+
+    @Transactional(readOnly = true)
+    public NotePage<NoteSearchHit> searchNotes(Long userId, String query, String cursor, Integer limit) {
+        String[] terms = searchTerms(query);
+        int pageSize = pageSize(limit);
+        SearchCursor after = cursor == null || cursor.isBlank() ? null : SearchCursor.decode(cursor);
+
+        SearchSnippet snippet = new SearchSnippet(terms);
+        List<NoteSearchHit> hits = noteRepository.search(userId, toFtsQuery(terms), after, pageSize + 1).stream()
+                .map(match -> new NoteSearchHit(match.note().getId(), match.note().getTitle(),
+                        snippet.of(match.note().getContent()), match.note().getUpdatedAt(), match.rank()))
+                .toList();
+        if (hits.size() <= pageSize) {
+            return new NotePage<>(hits, null);
+        }
+        List<NoteSearchHit> page = hits.subList(0, pageSize);
+        NoteSearchHit last = page.get(pageSize - 1);
+        return new NotePage<>(page, new SearchCursor(last.getRank(), last.getId()).encode());
+    }
+
+    private String[] searchTerms(String query) {
+        if (query == null || query.isBlank()) {
+            throw new IllegalArgumentException("Search query must not be empty");
+        }
+        return query.trim().split("\\s+");
+    }
+
+    // Every term is quoted so user input can't inject FTS5 operators or break the MATCH syntax.
+    // Terms are ANDed, the last one is a prefix match so partially typed words still hit.
+    private String toFtsQuery(String[] terms) {
+        StringBuilder ftsQuery = new StringBuilder();
+        for (int i = 0; i < terms.length; i++) {
+            if (i > 0) {
+                ftsQuery.append(' ');
             }
+            ftsQuery.append('"').append(terms[i].replace("\"", "\"\"")).append('"');
+        }
+        return ftsQuery.append('*').toString();
+    }
+
+    private int pageSize(Integer limit) {
+        if (limit == null) {
+            return defaultPageSize;
+        }
+        if (limit < 1) {
+            throw new IllegalArgumentException("limit must be at least 1");
+        }
+        return Math.min(limit, maxPageSize);
+    }
+
+    private NoteCursor decodeCursor(String cursor) {
+        return cursor == null || cursor.isBlank() ? null : NoteCursor.decode(cursor);
+    }
+
+    // Same LocalDateTime -> millis conversion the row mapper used when reading updated_at
+    private String cursorAt(LocalDateTime updatedAt, Long id) {
+        return new NoteCursor(Timestamp.valueOf(updatedAt).getTime(), id).encode();
+    }
+
+    // One lookup by id, or none when cached; ownership is checked on the loaded row
+    @Transactional(readOnly = true)
+    public Optional<Note> getNoteById(Long noteId, Long userId) {
+        Optional<Note> note = noteCache.getNote(noteId, () -> noteRepository.findById(noteId));
+        if (note.isPresent() && !note.get().getUserId().equals(userId)) {
+            throw new AccessDeniedException("You do not have access to this note");
         }
         return note;
     }
 
+    // The owner-scoped UPDATE ... RETURNING covers the common case in one statement,
+    // only a miss needs a second lookup to tell 403 from 404
     @Transactional
     public Note updateNote(Long noteId, NoteDTO noteDTO, Long userId) {
-        Optional<Note> noteOpt = noteRepository.findByIdAndUserId(noteId, userId);
-        
-        if (noteOpt.isEmpty()) {
-            // Check if note exists but belongs to another user
-            Optional<Note> anyNote = noteRepository.findById(noteId);
-            if (anyNote.isPresent()) {
-                throw new AccessDeniedException("You do not have access to this note");
-            }
-            throw new IllegalArgumentException("Note not found");
-        }
-
-        Note note = noteOpt.get();
-        note.setTitle(noteDTO.getTitle());
-        note.setContent(noteDTO.getContent());
+        Note note = new Note(noteDTO.getTitle(), noteDTO.getContent(), userId);
+        note.setId(noteId);
         note.setUpdatedAt(LocalDateTime.now());
 
-        Note updated = noteRepository.save(note);
-        if (updated == null) {
-            throw new RuntimeException("Failed to update note");
-        }
-        return updated;
+        noteCache.invalidate(userId, List.of(noteId));
+        return noteRepository.updateReturning(note).orElseThrow(() -> {
+            if (noteRepository.findOwnerId(noteId).isPresent()) {
+                return new AccessDeniedException("You do not have access to this note");
+            }
+            return new IllegalArgumentException("Note not found");
+        });
     }
 
     @Transactional
     public boolean deleteNote(Long noteId, Long userId) {
-        // Check if note exists and belongs to user
-        Optional<Note> noteOpt = noteRepository.findByIdAndUserId(noteId, userId);
-        
-        if (noteOpt.isEmpty()) {
-            // Check if note exists but belongs to another user
-            Optional<Note> anyNote = noteRepository.findById(noteId);
-            if (anyNote.isPresent()) {
-                throw new AccessDeniedException("You do not have access to this note");
-            }
-            return false; // Note doesn't exist
+        if (noteRepository.deleteByIdAndUserId(noteId, userId)) {
+            noteCache.invalidate(userId, List.of(noteId));
+            return true;
         }
-
-        return noteRepository.deleteByIdAndUserId(noteId, userId);
+        if (noteRepository.findOwnerId(noteId).isPresent()) {
+            throw new AccessDeniedException("You do not have access to this note");
+        }
+        return false; // Note doesn't exist
     }
 
+    @Transactional(readOnly = true)
     public boolean noteExists(Long noteId) {
         return noteRepository.existsById(noteId);
     }
 
+    @Transactional(readOnly = true)
     public boolean noteBelongsToUser(Long noteId, Long userId) {
         Optional<Note> note = noteRepository.findByIdAndUserId(noteId, userId);
         return note.isPresent();
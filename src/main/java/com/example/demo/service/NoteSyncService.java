@@ -0,0 +1,112 @@
+package com.example.demo.service;
+
+import com.example.demo.dto.NoteChange;
+import com.example.demo.dto.NoteChangePage;
+import com.example.demo.exception.SyncResetRequiredException;
+import com.example.demo.repository.NoteRepository;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.TaskScheduler;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.concurrent.ScheduledFuture;
+
+/**
+ * Incremental sync for clients that keep a local copy of their notes. A client remembers the
+ * sequence of the last change it applied and asks only for what changed after it, so a poll
+ * costs the number of changes rather than the number of notes. Delete tombstones are kept for
+ * a retention period; a client that was away longer gets a 410 and starts over from 0.
+ */
+@Service
+public class NoteSyncService {
+
+    private static final Logger logger = LoggerFactory.getLogger(NoteSyncService.class);
+    private static final Duration PRUNE_INTERVAL = Duration.ofHours(1);
+
+    private final NoteRepository noteRepository;
+    private final TaskScheduler taskScheduler;
+    private final int defaultLimit;
+    private final int maxLimit;
+    private final long tombstoneRetentionMs;
+    private ScheduledFuture<?> pruneTask;
+
+    public NoteSyncService(NoteRepository noteRepository,
+                           TaskScheduler taskScheduler,
+                           @Value("${notes.sync.default-limit:100}") int defaultLimit,
+                           @Value("${notes.sync.max-limit:1000}") int maxLimit,
+                           @Value("${notes.sync.tombstone-retention-days:30}") long tombstoneRetentionDays) {
+        this.noteRepository = noteRepository;
+        this.taskScheduler = taskScheduler;
+        this.defaultLimit = defaultLimit;
+        this.maxLimit = maxLimit;
+        this.tombstoneRetentionMs = Duration.ofDays(tombstoneRetentionDays).toMillis();
+    }
+
+    @PostConstruct
+    void start() {
+        pruneTask = taskScheduler.scheduleWithFixedDelay(this::pruneQuietly, Instant.now().plus(PRUNE_INTERVAL),
+                PRUNE_INTERVAL);
+    }
+
+    @PreDestroy
+    void stop() {
+        pruneTask.cancel(false);
+    }
+
+    /**
+     * Changes after since, oldest first. since 0 is a full sync: every current note and no
+     * tombstones, there is nothing local to delete yet. One read transaction, so the pruned
+     * check and the changes come from the same snapshot.
+     */
+    @Transactional(readOnly = true)
+    public NoteChangePage getChanges(Long userId, long since, Integer limit) {
+        if (since < 0) {
+            throw new IllegalArgumentException("since must not be negative");
+        }
+        int pageSize = pageSize(limit);
+        if (since > 0 && since < noteRepository.findPrunedSeq(userId)) {
+            throw new SyncResetRequiredException("Changes since " + since + " are no longer available, sync again from 0");
+        }
+
+        // One extra row tells whether there is more without a COUNT query
+        List<NoteChange> changes = noteRepository.findChangesSince(userId, since, since > 0, pageSize + 1);
+        boolean hasMore = changes.size() > pageSize;
+        if (hasMore) {
+            changes = changes.subList(0, pageSize);
+        }
+        long nextSince = changes.isEmpty() ? since : changes.get(changes.size() - 1).seq();
+        return new NoteChangePage(changes, nextSince, hasMore);
+    }
+
+    public int pruneTombstones() {
+        return noteRepository.pruneTombstones(System.currentTimeMillis() - tombstoneRetentionMs);
+    }
+
+    private int pageSize(Integer limit) {
+        if (limit == null) {
+            return defaultLimit;
+        }
+        if (limit < 1) {
+            throw new IllegalArgumentException("limit must be at least 1");
+        }
+        return Math.min(limit, maxLimit);
+    }
+
+    private void pruneQuietly() {
+        try {
+            int pruned = pruneTombstones();
+            if (pruned > 0) {
+                logger.debug("Pruned {} note tombstones", pruned);
+            }
+        } catch (RuntimeException e) {
+            logger.warn("Pruning note tombstones failed: {}", e.getMessage());
+        }
+    }
+}
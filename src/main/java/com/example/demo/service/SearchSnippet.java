@@ -0,0 +1,91 @@
+package com.example.demo.service;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Search result snippets, built from the note text because the contentless notes_fts index (see
+ * V14) can't return any. Close to what FTS5's snippet() gave before: up to 16 tokens starting
+ * just before the first match, matched tokens wrapped in **, "..." where text was cut. Tokens are
+ * runs of letters and digits compared without case and accents, like the unicode61 tokenizer.
+ */
+final class SearchSnippet {
+
+    private static final int MAX_TOKENS = 16;
+    // Tokens shown before the first match
+    private static final int LEAD_TOKENS = 3;
+    private static final Pattern TOKEN = Pattern.compile("[\\p{L}\\p{N}\\p{M}]+");
+    private static final Pattern MARKS = Pattern.compile("\\p{M}+");
+
+    private final Set<String> terms = new HashSet<>();
+    // The last query term also matches as a prefix, as in the MATCH expression
+    private final String prefix;
+
+    SearchSnippet(String[] queryTerms) {
+        List<String> tokens = new ArrayList<>();
+        for (String term : queryTerms) {
+            Matcher matcher = TOKEN.matcher(term);
+            while (matcher.find()) {
+                tokens.add(normalize(matcher.group()));
+            }
+        }
+        prefix = tokens.isEmpty() ? null : tokens.remove(tokens.size() - 1);
+        terms.addAll(tokens);
+    }
+
+    String of(String content) {
+        if (content == null || content.isEmpty()) {
+            return "";
+        }
+        List<Token> tokens = new ArrayList<>();
+        Matcher matcher = TOKEN.matcher(content);
+        int firstMatch = -1;
+        while (matcher.find()) {
+            boolean matched = matches(normalize(matcher.group()));
+            if (matched && firstMatch < 0) {
+                firstMatch = tokens.size();
+            }
+            tokens.add(new Token(matcher.start(), matcher.end(), matched));
+        }
+        if (tokens.isEmpty()) {
+            return "";
+        }
+
+        // A title-only match shows the start of the note
+        int start = Math.max(0, Math.min(firstMatch - LEAD_TOKENS, tokens.size() - MAX_TOKENS));
+        int end = Math.min(tokens.size(), start + MAX_TOKENS);
+        StringBuilder snippet = new StringBuilder();
+        if (start > 0) {
+            snippet.append("...");
+        }
+        int position = tokens.get(start).start();
+        for (int i = start; i < end; i++) {
+            Token token = tokens.get(i);
+            snippet.append(content, position, token.start());
+            String text = content.substring(token.start(), token.end());
+            snippet.append(token.matched() ? "**" + text + "**" : text);
+            position = token.end();
+        }
+        if (end < tokens.size()) {
+            snippet.append("...");
+        }
+        return snippet.toString();
+    }
+
+    private boolean matches(String token) {
+        return terms.contains(token) || (prefix != null && token.startsWith(prefix));
+    }
+
+    private static String normalize(String token) {
+        return MARKS.matcher(Normalizer.normalize(token, Normalizer.Form.NFD)).replaceAll("").toLowerCase(Locale.ROOT);
+    }
+
+    private record Token(int start, int end, boolean matched) {
+    }
+}
@@ -0,0 +1,328 @@
+package com.example.demo.service;
+
+import com.example.demo.repository.StatisticsRepository;
+import com.example.demo.repository.StatisticsRepository.Increment;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.TaskScheduler;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Write-behind accumulator for the extension's blocked ad/tracker counters.
+ * Increments land in per-user LongAdders and a background flusher folds them into
+ * the statistics table with one batched upsert per interval, instead of a
+ * read-modify-write transaction per reported request. Counters of users idle for a while are
+ * dropped from memory once everything they buffered has been written.
+ */
+@Service
+public class StatisticsAggregator {
+
+    private static final Logger logger = LoggerFactory.getLogger(StatisticsAggregator.class);
+
+    // Same weights as Statistics.incrementAdsBlocked/incrementTrackersBlocked
+    private static final double AD_SECONDS = 2.0;
+    private static final double TRACKER_SECONDS = 0.5;
+
+    private final StatisticsRepository statisticsRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final TaskScheduler taskScheduler;
+    private final long flushIntervalMs;
+    private final long idleMs;
+
+    private final Map<Long, UserCounters> counters = new ConcurrentHashMap<>();
+    // Bumped before counters are removed, a load that started earlier may have read stale totals
+    private final AtomicLong removals = new AtomicLong();
+    private final Object flushLock = new Object();
+    private ScheduledFuture<?> flushTask;
+
+    public StatisticsAggregator(StatisticsRepository statisticsRepository,
+                                PlatformTransactionManager transactionManager,
+                                TaskScheduler taskScheduler,
+                                @Value("${stats.flush-interval-ms:5000}") long flushIntervalMs,
+                                @Value("${stats.counters.idle-minutes:30}") long idleMinutes) {
+        this.statisticsRepository = statisticsRepository;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.taskScheduler = taskScheduler;
+        this.flushIntervalMs = flushIntervalMs;
+        this.idleMs = Duration.ofMinutes(idleMinutes).toMillis();
+    }
+
+    @PostConstruct
+    void start() {
+        flushTask = taskScheduler.scheduleWithFixedDelay(this::flushQuietly,
+                Instant.now().plusMillis(flushIntervalMs), Duration.ofMillis(flushIntervalMs));
+    }
+
+    // Pending deltas must not be lost on a clean shutdown
+    @PreDestroy
+    void stop() {
+        flushTask.cancel(false);
+        flush();
+    }
+
+    public long recordAds(long userId, int count) {
+        UserCounters userCounters = acquire(userId);
+        try {
+            userCounters.pendingAds.add(count);
+            userCounters.totalAds.add(count);
+            userCounters.lastModified = System.currentTimeMillis();
+            return userCounters.totalAds.sum();
+        } finally {
+            userCounters.release();
+        }
+    }
+
+    public long recordTrackers(long userId, int count) {
+        UserCounters userCounters = acquire(userId);
+        try {
+            userCounters.pendingTrackers.add(count);
+            userCounters.totalTrackers.add(count);
+            userCounters.lastModified = System.currentTimeMillis();
+            return userCounters.totalTrackers.sum();
+        } finally {
+            userCounters.release();
+        }
+    }
+
+    // Totals include deltas that have not been flushed yet
+    public Totals getTotals(long userId) {
+        UserCounters userCounters = acquire(userId);
+        userCounters.release();
+        return new Totals(userCounters.totalAds.sum(), userCounters.totalTrackers.sum(), userCounters.lastModified);
+    }
+
+    // Re-reads the totals after the row was overwritten out of band (e.g. /sync),
+    // carrying over any delta that arrived in the meantime
+    public void reload(long userId) {
+        synchronized (flushLock) {
+            UserCounters previous = counters.get(userId);
+            if (previous == null) {
+                return;
+            }
+            // Recorders only hold the counters for a few additions, then nothing can add to them any more
+            while (!previous.retire()) {
+                Thread.onSpinWait();
+            }
+            removals.incrementAndGet();
+            counters.remove(userId, previous);
+            long ads = previous.pendingAds.sumThenReset();
+            long trackers = previous.pendingTrackers.sumThenReset();
+
+            UserCounters reloaded = acquire(userId);
+            try {
+                reloaded.pendingAds.add(ads);
+                reloaded.totalAds.add(ads);
+                reloaded.pendingTrackers.add(trackers);
+                reloaded.totalTrackers.add(trackers);
+                if (ads != 0 || trackers != 0) {
+                    reloaded.lastModified = System.currentTimeMillis();
+                }
+            } finally {
+                reloaded.release();
+            }
+        }
+    }
+
+    public int getTrackedUsers() {
+        return counters.size();
+    }
+
+    public long getPendingDeltas() {
+        long pending = 0;
+        for (UserCounters userCounters : counters.values()) {
+            pending += userCounters.pendingAds.sum() + userCounters.pendingTrackers.sum();
+        }
+        return pending;
+    }
+
+    public void flush(long userId) {
+        UserCounters userCounters = counters.get(userId);
+        if (userCounters != null) {
+            synchronized (flushLock) {
+                write(List.of(drain(userId, userCounters)));
+            }
+        }
+    }
+
+    public void flush() {
+        synchronized (flushLock) {
+            List<Delta> deltas = new ArrayList<>();
+            counters.forEach((userId, userCounters) -> {
+                Delta delta = drain(userId, userCounters);
+                if (!delta.isEmpty()) {
+                    deltas.add(delta);
+                }
+            });
+            write(deltas);
+            evictIdle();
+        }
+    }
+
+    private void flushQuietly() {
+        try {
+            flush();
+        } catch (Exception e) {
+            logger.error("Statistics flush failed, deltas kept for the next run", e);
+        }
+    }
+
+    private Delta drain(long userId, UserCounters userCounters) {
+        // sumThenReset swaps every cell atomically, concurrent adds land in the next flush
+        return new Delta(userId, userCounters, userCounters.pendingAds.sumThenReset(),
+                userCounters.pendingTrackers.sumThenReset());
+    }
+
+    private void write(List<Delta> deltas) {
+        List<Delta> nonEmpty = deltas.stream().filter(delta -> !delta.isEmpty()).toList();
+        if (nonEmpty.isEmpty()) {
+            return;
+        }
+
+        try {
+            List<Increment> increments = nonEmpty.stream()
+                    .map(delta -> new Increment(delta.userId(), delta.ads(), delta.trackers(), delta.timeSaved()))
+                    .toList();
+            transactionTemplate.executeWithoutResult(status -> statisticsRepository.addAll(increments));
+            logger.debug("Flushed statistics deltas for {} users", nonEmpty.size());
+        } catch (RuntimeException e) {
+            // Put the deltas back so nothing is lost, they are retried on the next flush
+            for (Delta delta : nonEmpty) {
+                delta.counters().pendingAds.add(delta.ads());
+                delta.counters().pendingTrackers.add(delta.trackers());
+            }
+            throw e;
+        }
+    }
+
+    // Only called after a successful write, so counters without pending deltas match their row
+    private void evictIdle() {
+        long now = System.currentTimeMillis();
+        counters.forEach((userId, userCounters) -> {
+            if (now - userCounters.lastUsed <= idleMs || !userCounters.isFlushed() || !userCounters.retire()) {
+                return;
+            }
+            // A recorder may have added between the check and retire(), keep the counters then
+            if (!userCounters.isFlushed()) {
+                userCounters.unretire();
+                return;
+            }
+            removals.incrementAndGet();
+            counters.remove(userId, userCounters);
+        });
+    }
+
+    // Counters of the user, held until release() so they are not removed while being added to
+    private UserCounters acquire(long userId) {
+        while (true) {
+            UserCounters userCounters = counters.get(userId);
+            if (userCounters == null) {
+                // The row is read outside the map so a slow query does not block other users' counters
+                long removalsBeforeLoad = removals.get();
+                UserCounters loaded = load(userId);
+                userCounters = counters.compute(userId, (id, existing) ->
+                        existing != null || removals.get() != removalsBeforeLoad ? existing : loaded);
+                if (userCounters == null) {
+                    continue;
+                }
+            }
+            if (userCounters.tryAcquire()) {
+                return userCounters;
+            }
+            // Retired and about to be removed from the map
+            Thread.onSpinWait();
+        }
+    }
+
+    // One read per user until the counters go idle, afterwards totals are kept in memory
+    private UserCounters load(long userId) {
+        UserCounters userCounters = new UserCounters();
+        statisticsRepository.findByUserId(userId).ifPresent(statistics -> {
+            userCounters.totalAds.add(statistics.getAdsBlocked());
+            userCounters.totalTrackers.add(statistics.getTrackersBlocked());
+            userCounters.lastModified = statistics.getUpdatedAt();
+        });
+        return userCounters;
+    }
+
+    // lastModified is epoch milliseconds of the last change, 0 if the user has no statistics yet
+    public record Totals(long adsBlocked, long trackersBlocked, long lastModified) {
+
+        public double timeSaved() {
+            return (adsBlocked * AD_SECONDS + trackersBlocked * TRACKER_SECONDS) / 3600.0;
+        }
+
+        // Derived from the counts themselves, so it stays valid across restarts
+        public String eTag(long userId) {
+            return "W/\"s" + userId + "-" + adsBlocked + "-" + trackersBlocked + "\"";
+        }
+    }
+
+    private record Delta(long userId, UserCounters counters, long ads, long trackers) {
+
+        boolean isEmpty() {
+            return ads == 0 && trackers == 0;
+        }
+
+        double timeSaved() {
+            return (ads * AD_SECONDS + trackers * TRACKER_SECONDS) / 3600.0;
+        }
+    }
+
+    private static final class UserCounters {
+        // Set instead of a holder count once the counters are removed, or about to be
+        private static final int RETIRED = -1;
+
+        final LongAdder pendingAds = new LongAdder();
+        final LongAdder pendingTrackers = new LongAdder();
+        final LongAdder totalAds = new LongAdder();
+        final LongAdder totalTrackers = new LongAdder();
+        final AtomicInteger holders = new AtomicInteger();
+        volatile long lastModified;
+        volatile long lastUsed = System.currentTimeMillis();
+
+        boolean tryAcquire() {
+            int current;
+            do {
+                current = holders.get();
+                if (current == RETIRED) {
+                    return false;
+                }
+            } while (!holders.compareAndSet(current, current + 1));
+            lastUsed = System.currentTimeMillis();
+            return true;
+        }
+
+        void release() {
+            holders.decrementAndGet();
+        }
+
+        // Succeeds only while no one holds the counters
+        boolean retire() {
+            return holders.compareAndSet(0, RETIRED);
+        }
+
+        void unretire() {
+            holders.set(0);
+        }
+
+        boolean isFlushed() {
+            return pendingAds.sum() == 0 && pendingTrackers.sum() == 0;
+        }
+    }
+}
@@ -0,0 +1,224 @@
+package com.example.demo.service;
+
+import com.example.demo.dto.StatsEvent;
+import com.example.demo.dto.StatsEventBatchResult;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Pattern;
+
+/**
+ * Ingests event batches uploaded by the extension. The body is parsed and validated one event
+ * at a time with Jackson's streaming parser, the accepted counts are handed to the
+ * StatisticsAggregator, the history rollups and the top-domain sketches, and the only database write is one row
+ * recording the batch id so a retried upload is recognized and not counted twice.
+ */
+@Service
+public class StatisticsEventService {
+
+    private static final Pattern BATCH_ID = Pattern.compile("[A-Za-z0-9._-]{1,64}");
+    private static final int MAX_REPORTED_ERRORS = 100;
+    // Tolerated clock skew for events stamped in the future
+    private static final long MAX_FUTURE_MS = Duration.ofMinutes(5).toMillis();
+
+    private final ObjectMapper objectMapper;
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final StatisticsAggregator statisticsAggregator;
+    private final StatisticsRollupService statisticsRollupService;
+    private final DomainSketchService domainSketchService;
+    private final int maxBatchSize;
+    private final int maxEventCount;
+    private final long maxEventAgeMs;
+    private final long batchRetentionMs;
+
+    public StatisticsEventService(ObjectMapper objectMapper,
+                                  JdbcTemplate jdbcTemplate,
+                                  PlatformTransactionManager transactionManager,
+                                  StatisticsAggregator statisticsAggregator,
+                                  StatisticsRollupService statisticsRollupService,
+                                  DomainSketchService domainSketchService,
+                                  @Value("${stats.events.max-batch-size:10000}") int maxBatchSize,
+                                  @Value("${stats.events.max-count:100000}") int maxEventCount,
+                                  @Value("${stats.events.max-age-hours:168}") long maxEventAgeHours,
+                                  @Value("${stats.events.batch-retention-hours:336}") long batchRetentionHours) {
+        this.objectMapper = objectMapper;
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.statisticsAggregator = statisticsAggregator;
+        this.statisticsRollupService = statisticsRollupService;
+        this.domainSketchService = domainSketchService;
+        this.maxBatchSize = maxBatchSize;
+        this.maxEventCount = maxEventCount;
+        this.maxEventAgeMs = Duration.ofHours(maxEventAgeHours).toMillis();
+        // Must outlive the oldest event a client may still retry, or the retry is counted again
+        this.batchRetentionMs = Math.max(Duration.ofHours(batchRetentionHours).toMillis(), maxEventAgeMs);
+    }
+
+    /**
+     * Applies one batch for the user. Invalid events are skipped and reported, a malformed body,
+     * a missing batch id or too many events reject the whole batch.
+     */
+    public StatsEventBatchResult ingest(Long userId, InputStream body) throws IOException {
+        ParsedBatch batch = parse(body);
+        if (batch.batchId == null || !BATCH_ID.matcher(batch.batchId).matches()) {
+            throw new IllegalArgumentException("batchId is required: 1-64 letters, digits, '.', '_' or '-'");
+        }
+
+        long now = System.currentTimeMillis();
+        StatsEventBatchResult stored = transactionTemplate.execute(status -> {
+            jdbcTemplate.update("DELETE FROM stats_batches WHERE received_at < ?", now - batchRetentionMs);
+            int inserted = jdbcTemplate.update(
+                    "INSERT INTO stats_batches (user_id, batch_id, received_at, events, ads_blocked, trackers_blocked) "
+                            + "VALUES (?, ?, ?, ?, ?, ?) ON CONFLICT (user_id, batch_id) DO NOTHING",
+                    userId, batch.batchId, now, batch.accepted.size(), batch.adsBlocked, batch.trackersBlocked);
+            if (inserted == 1) {
+                return null;
+            }
+            return jdbcTemplate.queryForObject(
+                    "SELECT events, ads_blocked, trackers_blocked FROM stats_batches WHERE user_id = ? AND batch_id = ?",
+                    (rs, rowNum) -> new StatsEventBatchResult(batch.batchId, true, rs.getInt(1), 0,
+                            rs.getLong(2), rs.getLong(3), List.of()),
+                    userId, batch.batchId);
+        });
+        if (stored != null) {
+            return stored;
+        }
+
+        // Only after the batch id is committed, a concurrent retry of the same batch is a duplicate
+        if (batch.adsBlocked > 0) {
+            statisticsAggregator.recordAds(userId, Math.toIntExact(batch.adsBlocked));
+        }
+        if (batch.trackersBlocked > 0) {
+            statisticsAggregator.recordTrackers(userId, Math.toIntExact(batch.trackersBlocked));
+        }
+        for (StatsEvent event : batch.accepted) {
+            statisticsRollupService.record(userId, event.timestamp(), "ads".equals(event.category()), event.count(),
+                    event.domain());
+            domainSketchService.record(userId, event.domain(), event.count());
+        }
+        return new StatsEventBatchResult(batch.batchId, false, batch.accepted.size(), batch.rejected,
+                batch.adsBlocked, batch.trackersBlocked, batch.errors);
+    }
+
+    private ParsedBatch parse(InputStream body) throws IOException {
+        ParsedBatch batch = new ParsedBatch();
+        try (JsonParser parser = objectMapper.getFactory().createParser(body)) {
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                throw new IllegalArgumentException("Request body must be a JSON object");
+            }
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String field = parser.currentName();
+                JsonToken value = parser.nextToken();
+                if ("batchId".equals(field)) {
+                    batch.batchId = value == JsonToken.VALUE_STRING ? parser.getText() : null;
+                } else if ("events".equals(field)) {
+                    if (value != JsonToken.START_ARRAY) {
+                        throw new IllegalArgumentException("events must be an array");
+                    }
+                    parseEvents(parser, batch);
+                } else {
+                    parser.skipChildren();
+                }
+            }
+        } catch (JsonProcessingException e) {
+            throw new IllegalArgumentException("Malformed JSON in event batch: " + e.getOriginalMessage());
+        }
+        return batch;
+    }
+
+    private void parseEvents(JsonParser parser, ParsedBatch batch) throws IOException {
+        long now = System.currentTimeMillis();
+        int index = 0;
+        JsonToken token;
+        while ((token = parser.nextToken()) != JsonToken.END_ARRAY) {
+            if (index == maxBatchSize) {
+                throw new IllegalArgumentException("A batch can contain at most " + maxBatchSize + " events");
+            }
+            if (token != JsonToken.START_OBJECT) {
+                parser.skipChildren();
+                batch.reject(index++, "Event must be an object");
+                continue;
+            }
+
+            String domain = null;
+            String category = null;
+            Long timestamp = null;
+            Long count = null;
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String field = parser.currentName();
+                JsonToken value = parser.nextToken();
+                switch (field) {
+                    case "domain" -> domain = value == JsonToken.VALUE_STRING ? parser.getText() : null;
+                    case "category" -> category = value == JsonToken.VALUE_STRING ? parser.getText() : null;
+                    case "timestamp" -> timestamp = value == JsonToken.VALUE_NUMBER_INT ? parser.getLongValue() : null;
+                    case "count" -> count = value == JsonToken.VALUE_NUMBER_INT ? parser.getLongValue() : null;
+                    default -> parser.skipChildren();
+                }
+            }
+
+            String error = validate(domain, category, timestamp, count, now);
+            if (error != null) {
+                batch.reject(index++, error);
+                continue;
+            }
+            StatsEvent event = new StatsEvent(DomainSuffixTrie.normalizeHost(domain), category, timestamp,
+                    count.intValue());
+            batch.accept(event);
+            index++;
+        }
+    }
+
+    private String validate(String domain, String category, Long timestamp, Long count, long now) {
+        if (domain == null || !DomainSuffixTrie.isValidHost(DomainSuffixTrie.normalizeHost(domain))) {
+            return "domain must be a valid host name";
+        }
+        if (!"ads".equals(category) && !"trackers".equals(category)) {
+            return "category must be 'ads' or 'trackers'";
+        }
+        if (timestamp == null || timestamp > now + MAX_FUTURE_MS || timestamp < now - maxEventAgeMs) {
+            return "timestamp must be epoch milliseconds within the last " + maxEventAgeMs / 3_600_000 + " hours";
+        }
+        if (count == null || count < 1 || count > maxEventCount) {
+            return "count must be between 1 and " + maxEventCount;
+        }
+        return null;
+    }
+
+    private static final class ParsedBatch {
+        String batchId;
+        final List<StatsEvent> accepted = new ArrayList<>();
+        final List<StatsEventBatchResult.EventError> errors = new ArrayList<>();
+        int rejected;
+        long adsBlocked;
+        long trackersBlocked;
+
+        void accept(StatsEvent event) {
+            accepted.add(event);
+            if ("ads".equals(event.category())) {
+                adsBlocked += event.count();
+            } else {
+                trackersBlocked += event.count();
+            }
+        }
+
+        void reject(int index, String message) {
+            rejected++;
+            if (errors.size() < MAX_REPORTED_ERRORS) {
+                errors.add(new StatsEventBatchResult.EventError(index, message));
+            }
+        }
+    }
+}
@@ -0,0 +1,286 @@
+package com.example.demo.service;
+
+import com.example.demo.dto.DomainCount;
+import com.example.demo.dto.StatsBucket;
+import com.example.demo.repository.StatisticsRollupRepository;
+import com.example.demo.repository.StatisticsRollupRepository.BucketDelta;
+import com.example.demo.repository.StatisticsRollupRepository.BucketRow;
+import com.example.demo.repository.StatisticsRollupRepository.DomainDelta;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.TaskScheduler;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledFuture;
+
+/**
+ * Time-bucketed history of blocked counts. Counts are buffered per user and minute (and per
+ * user, day and domain) and upserted into stats_rollups / stats_top_domains on every flush.
+ * A scheduled compaction folds minute buckets into hours and hours into days once they are
+ * old enough, and trims finished days to their top domains, so a history query reads a
+ * bounded number of rows however long the user has been active.
+ */
+@Service
+public class StatisticsRollupService {
+
+    private static final Logger logger = LoggerFactory.getLogger(StatisticsRollupService.class);
+
+    // Largest number of buckets a single history query may return
+    private static final int MAX_BUCKETS = 5000;
+
+    public enum Granularity {
+        MINUTE(Duration.ofMinutes(1)), HOUR(Duration.ofHours(1)), DAY(Duration.ofDays(1));
+
+        private final long sizeMs;
+
+        Granularity(Duration size) {
+            this.sizeMs = size.toMillis();
+        }
+
+        public long sizeMs() {
+            return sizeMs;
+        }
+
+        public long truncate(long epochMs) {
+            return epochMs - Math.floorMod(epochMs, sizeMs);
+        }
+
+        String column() {
+            return name().toLowerCase(Locale.ROOT);
+        }
+
+        public static Granularity parse(String value) {
+            try {
+                return valueOf(value.toUpperCase(Locale.ROOT));
+            } catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException("granularity must be one of minute, hour, day");
+            }
+        }
+    }
+
+    private final StatisticsRollupRepository rollupRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final TaskScheduler taskScheduler;
+    private final long flushIntervalMs;
+    private final long compactionIntervalMs;
+    private final long minuteRetentionMs;
+    private final long hourRetentionMs;
+    private final int topDomainsPerDay;
+    private final long maxEventAgeMs;
+
+    // Pending counts, {ads, trackers}. Only mutated inside compute() so a flush never loses an add
+    private final Map<BucketKey, long[]> pendingBuckets = new ConcurrentHashMap<>();
+    private final Map<DomainKey, long[]> pendingDomains = new ConcurrentHashMap<>();
+    private final Object flushLock = new Object();
+    private ScheduledFuture<?> flushTask;
+    private ScheduledFuture<?> compactionTask;
+
+    public StatisticsRollupService(StatisticsRollupRepository rollupRepository,
+                                   PlatformTransactionManager transactionManager,
+                                   TaskScheduler taskScheduler,
+                                   @Value("${stats.flush-interval-ms:5000}") long flushIntervalMs,
+                                   @Value("${stats.rollups.compaction-interval-ms:3600000}") long compactionIntervalMs,
+                                   @Value("${stats.rollups.minute-retention-hours:48}") long minuteRetentionHours,
+                                   @Value("${stats.rollups.hour-retention-days:35}") long hourRetentionDays,
+                                   @Value("${stats.rollups.top-domains-per-day:50}") int topDomainsPerDay,
+                                   @Value("${stats.events.max-age-hours:168}") long maxEventAgeHours) {
+        this.rollupRepository = rollupRepository;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.taskScheduler = taskScheduler;
+        this.flushIntervalMs = flushIntervalMs;
+        this.compactionIntervalMs = compactionIntervalMs;
+        this.minuteRetentionMs = Duration.ofHours(minuteRetentionHours).toMillis();
+        this.hourRetentionMs = Duration.ofDays(hourRetentionDays).toMillis();
+        this.topDomainsPerDay = topDomainsPerDay;
+        this.maxEventAgeMs = Duration.ofHours(maxEventAgeHours).toMillis();
+    }
+
+    @PostConstruct
+    void start() {
+        flushTask = taskScheduler.scheduleWithFixedDelay(this::flushQuietly,
+                Instant.now().plusMillis(flushIntervalMs), Duration.ofMillis(flushIntervalMs));
+        compactionTask = taskScheduler.scheduleWithFixedDelay(this::compactQuietly,
+                Instant.now().plusMillis(compactionIntervalMs), Duration.ofMillis(compactionIntervalMs));
+    }
+
+    @PreDestroy
+    void stop() {
+        flushTask.cancel(false);
+        compactionTask.cancel(false);
+        flush();
+    }
+
+    // domain may be null for counts that don't carry one (the increment endpoints)
+    public void record(long userId, long timestamp, boolean ad, long count, String domain) {
+        int slot = ad ? 0 : 1;
+        pendingBuckets.compute(new BucketKey(userId, Granularity.MINUTE.truncate(timestamp)), (key, counts) -> {
+            long[] updated = counts != null ? counts : new long[2];
+            updated[slot] += count;
+            return updated;
+        });
+        if (domain != null) {
+            pendingDomains.compute(new DomainKey(userId, Granularity.DAY.truncate(timestamp), domain), (key, counts) -> {
+                long[] updated = counts != null ? counts : new long[2];
+                updated[slot] += count;
+                return updated;
+            });
+        }
+    }
+
+    /**
+     * Buckets of the requested granularity in [from, to). Data already compacted into a coarser
+     * granularity is returned at that granularity, a bucket's start then marks the coarser bucket.
+     */
+    public List<StatsBucket> getHistory(long userId, Instant from, Instant to, Granularity granularity) {
+        long start = granularity.truncate(from.toEpochMilli());
+        long end = to.toEpochMilli();
+        if (end <= start) {
+            throw new IllegalArgumentException("from must be before to");
+        }
+        if ((end - start) / granularity.sizeMs() > MAX_BUCKETS) {
+            throw new IllegalArgumentException("Range too large for " + granularity.column()
+                    + " granularity, at most " + MAX_BUCKETS + " buckets");
+        }
+
+        // Finer buckets are folded into the requested one, coarser ones can only be returned as they are
+        List<String> granularities = Arrays.stream(Granularity.values()).map(Granularity::column).toList();
+        // A coarser bucket that started before from still overlaps the range
+        long lookBack = Granularity.DAY.truncate(start);
+        Map<Long, long[]> buckets = new TreeMap<>();
+        for (BucketRow row : rollupRepository.findBuckets(userId, granularities, lookBack, end)) {
+            Granularity rowGranularity = Granularity.parse(row.granularity());
+            long bucket = rowGranularity.sizeMs() < granularity.sizeMs()
+                    ? granularity.truncate(row.bucketStart())
+                    : row.bucketStart();
+            if (bucket + Math.max(rowGranularity.sizeMs(), granularity.sizeMs()) <= start) {
+                continue;
+            }
+            long[] counts = buckets.computeIfAbsent(bucket, key -> new long[2]);
+            counts[0] += row.adsBlocked();
+            counts[1] += row.trackersBlocked();
+        }
+
+        List<StatsBucket> history = new ArrayList<>(buckets.size());
+        buckets.forEach((bucket, counts) -> history.add(new StatsBucket(Instant.ofEpochMilli(bucket), counts[0], counts[1])));
+        return history;
+    }
+
+    // Days are UTC days; the range is widened to whole days
+    public List<DomainCount> getTopDomains(long userId, Instant from, Instant to, int limit) {
+        long fromDay = Granularity.DAY.truncate(from.toEpochMilli());
+        long toDay = Granularity.DAY.truncate(to.toEpochMilli() - 1) + Granularity.DAY.sizeMs();
+        return rollupRepository.findTopDomains(userId, fromDay, toDay, limit);
+    }
+
+    public long getPendingBuckets() {
+        return pendingBuckets.size() + pendingDomains.size();
+    }
+
+    public void flush() {
+        synchronized (flushLock) {
+            List<BucketDelta> buckets = new ArrayList<>();
+            for (BucketKey key : pendingBuckets.keySet()) {
+                long[] counts = pendingBuckets.remove(key);
+                if (counts != null) {
+                    buckets.add(new BucketDelta(key.userId(), key.bucketStart(), counts[0], counts[1]));
+                }
+            }
+            List<DomainDelta> domains = new ArrayList<>();
+            for (DomainKey key : pendingDomains.keySet()) {
+                long[] counts = pendingDomains.remove(key);
+                if (counts != null) {
+                    domains.add(new DomainDelta(key.userId(), key.day(), key.domain(), counts[0], counts[1]));
+                }
+            }
+            if (buckets.isEmpty() && domains.isEmpty()) {
+                return;
+            }
+
+            try {
+                transactionTemplate.executeWithoutResult(status -> {
+                    if (!buckets.isEmpty()) {
+                        rollupRepository.addToBuckets(Granularity.MINUTE.column(), buckets);
+                    }
+                    if (!domains.isEmpty()) {
+                        rollupRepository.addToDomains(domains);
+                    }
+                });
+            } catch (RuntimeException e) {
+                // Merge the counts back so they are retried with the next flush
+                buckets.forEach(delta -> merge(pendingBuckets, new BucketKey(delta.userId(), delta.bucketStart()),
+                        delta.adsBlocked(), delta.trackersBlocked()));
+                domains.forEach(delta -> merge(pendingDomains, new DomainKey(delta.userId(), delta.day(), delta.domain()),
+                        delta.adsBlocked(), delta.trackersBlocked()));
+                throw e;
+            }
+            logger.debug("Flushed {} rollup buckets and {} domain counts", buckets.size(), domains.size());
+        }
+    }
+
+    public void compact() {
+        long now = System.currentTimeMillis();
+        long minuteCutoff = Granularity.HOUR.truncate(now - minuteRetentionMs);
+        long hourCutoff = Granularity.DAY.truncate(now - hourRetentionMs);
+        long today = Granularity.DAY.truncate(now);
+        // Late events may still add domains to any finished day they are accepted for
+        long oldestOpenDay = Math.min(Granularity.DAY.truncate(now - maxEventAgeMs), today - Granularity.DAY.sizeMs());
+
+        int[] compacted = transactionTemplate.execute(status -> new int[]{
+                rollupRepository.compact(Granularity.MINUTE.column(), Granularity.HOUR.column(),
+                        Granularity.HOUR.sizeMs(), minuteCutoff),
+                rollupRepository.compact(Granularity.HOUR.column(), Granularity.DAY.column(),
+                        Granularity.DAY.sizeMs(), hourCutoff),
+                rollupRepository.trimDomains(oldestOpenDay, today, topDomainsPerDay)
+        });
+        if (compacted[0] + compacted[1] + compacted[2] == 0) {
+            return;
+        }
+        logger.info("Compacted {} minute and {} hour buckets, trimmed {} domain rows",
+                compacted[0], compacted[1], compacted[2]);
+    }
+
+    private void flushQuietly() {
+        try {
+            flush();
+        } catch (Exception e) {
+            logger.error("Rollup flush failed, counts kept for the next run", e);
+        }
+    }
+
+    private void compactQuietly() {
+        try {
+            compact();
+        } catch (Exception e) {
+            logger.error("Rollup compaction failed", e);
+        }
+    }
+
+    private static <K> void merge(Map<K, long[]> pending, K key, long ads, long trackers) {
+        pending.compute(key, (k, counts) -> {
+            long[] updated = counts != null ? counts : new long[2];
+            updated[0] += ads;
+            updated[1] += trackers;
+            return updated;
+        });
+    }
+
+    private record BucketKey(long userId, long bucketStart) {
+    }
+
+    private record DomainKey(long userId, long day, String domain) {
+    }
+}
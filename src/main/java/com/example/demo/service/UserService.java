@@ -2,69 +2,86 @@ package com.example.demo.service;
 
 import com.example.demo.model.User;
 import com.example.demo.repository.UserRepository;
-import org.springframework.security.crypto.password.PasswordEncoder;
+import com.example.demo.security.PasswordHashingService;
+import com.example.demo.security.TokenVersionRegistry;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
 import java.util.Optional;
 
 @Service
 public class UserService {
 
     private final UserRepository userRepository;
-    private final PasswordEncoder passwordEncoder;
+    private final PasswordHashingService passwordHashing;
+    private final TokenVersionRegistry tokenVersionRegistry;
+    private final NoteCache noteCache;
 
-    public UserService(UserRepository userRepository, PasswordEncoder passwordEncoder) {
+    public UserService(UserRepository userRepository, PasswordHashingService passwordHashing,
+                       TokenVersionRegistry tokenVersionRegistry, NoteCache noteCache) {
         this.userRepository = userRepository;
-        this.passwordEncoder = passwordEncoder;
+        this.passwordHashing = passwordHashing;
+        this.tokenVersionRegistry = tokenVersionRegistry;
+        this.noteCache = noteCache;
     }
 
     @Transactional
     public User createUser(String username, String email, String password) {
+        // Hash before the first query, the writer connection is only taken once a statement runs
+        String encodedPassword = passwordHashing.encode(password);
+
         // Check if user already exists
         if (userRepository.findByEmail(email).isPresent()) {
             throw new IllegalArgumentException("User with email " + email + " already exists");
         }
 
-        String encodedPassword = passwordEncoder.encode(password);
         User user = new User(username, email, encodedPassword);
         return userRepository.save(user);
     }
 
+    // Not transactional: the BCrypt comparison must not hold a database connection while it
+    // waits for a hashing thread. Unknown emails are compared against a dummy hash.
     public boolean authenticate(String email, String password) {
-        Optional<User> userOpt = userRepository.findByEmail(email);
-        if (userOpt.isPresent()) {
-            User user = userOpt.get();
-            return passwordEncoder.matches(password, user.getPassword());
-        }
-        return false;
+        String encodedPassword = userRepository.findByEmail(email).map(User::getPassword).orElse(null);
+        return passwordHashing.matches(password, encodedPassword);
     }
 
+    @Transactional(readOnly = true)
     public List<User> getAllUsers() {
         return userRepository.findAll();
     }
 
+    @Transactional(readOnly = true)
     public Optional<User> findById(Long id) {
         return userRepository.findById(id);
     }
 
+    @Transactional(readOnly = true)
     public Optional<User> findByEmail(String email) {
         return userRepository.findByEmail(email);
     }
 
     @Transactional
     public boolean updateUser(Long id, String username, String email, String password) {
+        String encodedPassword = password != null && !password.isEmpty() ? passwordHashing.encode(password) : null;
         Optional<User> userOpt = userRepository.findById(id);
         if (userOpt.isPresent()) {
             User user = userOpt.get();
+            boolean credentialsChanged = !Objects.equals(email, user.getEmail());
             user.setUsername(username);
             user.setEmail(email);
-            if (password != null && !password.isEmpty()) {
-                user.setPassword(passwordEncoder.encode(password));
+            if (encodedPassword != null) {
+                user.setPassword(encodedPassword);
+                credentialsChanged = true;
             }
             userRepository.save(user);
+            // Outstanding JWTs carry the old email/password state, revoke them
+            if (credentialsChanged) {
+                revokeTokens(id);
+            }
             return true;
         }
         return false;
@@ -72,12 +89,16 @@ public class UserService {
 
     @Transactional
     public Optional<User> patchUser(Long id, Map<String, Object> updates) {
+        String encodedPassword = updates.containsKey("password")
+                ? passwordHashing.encode((String) updates.get("password"))
+                : null;
         Optional<User> userOpt = userRepository.findById(id);
         if (userOpt.isEmpty()) {
             return Optional.empty();
         }
 
         User user = userOpt.get();
+        boolean credentialsChanged = updates.containsKey("email") || updates.containsKey("password");
         updates.forEach((key, value) -> {
             switch (key) {
                 case "username":
@@ -87,20 +108,35 @@ public class UserService {
                     user.setEmail((String) value);
                     break;
                 case "password":
-                    user.setPassword(passwordEncoder.encode((String) value));
+                    user.setPassword(encodedPassword);
                     break;
             }
         });
 
-        return Optional.of(userRepository.save(user));
+        User saved = userRepository.save(user);
+        if (credentialsChanged) {
+            revokeTokens(id);
+        }
+        return Optional.of(saved);
     }
 
     @Transactional
     public boolean deleteUser(Long id) {
         if (userRepository.existsById(id)) {
             userRepository.deleteById(id);
+            tokenVersionRegistry.forget(id);
+            // The user's notes go with it (ON DELETE CASCADE); cached single notes are unreachable
+            // without their owner and age out
+            noteCache.invalidateUser(id);
             return true;
         }
         return false;
     }
+
+    // Bumps users.token_version, every token issued before this call stops being accepted
+    @Transactional
+    public void revokeTokens(Long id) {
+        userRepository.flush();
+        tokenVersionRegistry.revoke(id);
+    }
 }
\ No newline at end of file
@@ -0,0 +1,44 @@
+package db.migration;
+
+import com.example.demo.model.NoteContentCodec;
+import org.flywaydb.core.api.migration.BaseJavaMigration;
+import org.flywaydb.core.api.migration.Context;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Statement;
+
+/**
+ * Adds the compressed notes to the contentless full-text index created by V14. Their text only
+ * exists Deflate-compressed, which SQL can't read, so they are inflated here.
+ */
+public class V15__index_compressed_notes extends BaseJavaMigration {
+
+    private static final int BATCH_SIZE = 500;
+
+    @Override
+    public void migrate(Context context) throws Exception {
+        Connection connection = context.getConnection();
+        try (Statement select = connection.createStatement();
+             ResultSet rows = select.executeQuery(
+                     "SELECT id, title, content_compressed FROM notes WHERE content_compressed IS NOT NULL");
+             PreparedStatement insert = connection.prepareStatement(
+                     "INSERT INTO notes_fts(rowid, title, content) VALUES (?, ?, ?)")) {
+            int pending = 0;
+            while (rows.next()) {
+                insert.setLong(1, rows.getLong("id"));
+                insert.setString(2, rows.getString("title"));
+                insert.setString(3, NoteContentCodec.decompress(rows.getBytes("content_compressed")));
+                insert.addBatch();
+                if (++pending == BATCH_SIZE) {
+                    insert.executeBatch();
+                    pending = 0;
+                }
+            }
+            if (pending > 0) {
+                insert.executeBatch();
+            }
+        }
+    }
+}
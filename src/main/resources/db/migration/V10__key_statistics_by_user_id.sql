@@ -0,0 +1,31 @@
+-- statistics was created by Hibernate, keyed by an unindexed user_email that allowed duplicates.
+-- Databases that never had the table get the old shape first so the copy below works everywhere.
+CREATE TABLE IF NOT EXISTS statistics (
+    id INTEGER PRIMARY KEY AUTOINCREMENT,
+    user_email VARCHAR(255) NOT NULL,
+    ads_blocked INTEGER NOT NULL,
+    trackers_blocked INTEGER NOT NULL,
+    time_saved FLOAT NOT NULL
+);
+
+-- One row per user, user_id is the rowid so lookups and upserts are a primary key seek
+CREATE TABLE statistics_by_user (
+    user_id INTEGER PRIMARY KEY,
+    ads_blocked INTEGER NOT NULL DEFAULT 0,
+    trackers_blocked INTEGER NOT NULL DEFAULT 0,
+    time_saved FLOAT NOT NULL DEFAULT 0,
+    CONSTRAINT fk_statistics_user
+        FOREIGN KEY (user_id)
+        REFERENCES users(id)
+        ON DELETE CASCADE
+);
+
+-- Duplicate rows of a user are summed, rows of users that no longer exist are dropped
+INSERT INTO statistics_by_user (user_id, ads_blocked, trackers_blocked, time_saved)
+SELECT u.id, SUM(s.ads_blocked), SUM(s.trackers_blocked), SUM(s.time_saved)
+FROM statistics s
+JOIN users u ON u.email = s.user_email
+GROUP BY u.id;
+
+DROP TABLE statistics;
+ALTER TABLE statistics_by_user RENAME TO statistics;
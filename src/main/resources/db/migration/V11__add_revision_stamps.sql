@@ -0,0 +1,27 @@
+-- Per-user notes revision for conditional GETs. Bumped by triggers so every write path, single or
+-- batched, moves it in the same transaction as the change; the lookup is one users primary key read.
+ALTER TABLE users ADD COLUMN notes_revision INTEGER NOT NULL DEFAULT 0;
+-- Epoch milliseconds of the last notes change, NULL until the user's notes first change
+ALTER TABLE users ADD COLUMN notes_modified_at INTEGER;
+
+CREATE TRIGGER IF NOT EXISTS notes_revision_after_insert AFTER INSERT ON notes BEGIN
+    UPDATE users SET notes_revision = notes_revision + 1,
+        notes_modified_at = CAST(unixepoch('subsec') * 1000 AS INTEGER)
+    WHERE id = new.user_id;
+END;
+
+CREATE TRIGGER IF NOT EXISTS notes_revision_after_update AFTER UPDATE ON notes BEGIN
+    UPDATE users SET notes_revision = notes_revision + 1,
+        notes_modified_at = CAST(unixepoch('subsec') * 1000 AS INTEGER)
+    WHERE id = new.user_id;
+END;
+
+-- Also fires for the cascade when a user is deleted, the UPDATE then matches no row
+CREATE TRIGGER IF NOT EXISTS notes_revision_after_delete AFTER DELETE ON notes BEGIN
+    UPDATE users SET notes_revision = notes_revision + 1,
+        notes_modified_at = CAST(unixepoch('subsec') * 1000 AS INTEGER)
+    WHERE id = old.user_id;
+END;
+
+-- Epoch milliseconds of the last statistics write, served as Last-Modified of GET /api/stats
+ALTER TABLE statistics ADD COLUMN updated_at INTEGER NOT NULL DEFAULT 0;
@@ -0,0 +1,61 @@
+-- Optional compressed storage for long note bodies (notes.storage.compression.enabled). When set,
+-- content only keeps the start of the body for list previews. Existing rows are converted by
+-- NoteCompactionService in small batches after startup, not here.
+ALTER TABLE notes ADD COLUMN content_compressed BLOB;
+
+-- note_content() is an application function registered on every connection (NoteFunctionsDataSource),
+-- it returns content or, for a compressed row, the inflated body
+CREATE VIEW IF NOT EXISTS notes_text AS
+    SELECT id, title, note_content(content, content_compressed) AS content FROM notes;
+
+-- The full-text index now reads its external content, e.g. for snippets, through the view
+DROP TRIGGER IF EXISTS notes_fts_after_insert;
+DROP TRIGGER IF EXISTS notes_fts_after_delete;
+DROP TRIGGER IF EXISTS notes_fts_after_update;
+DROP TABLE IF EXISTS notes_fts;
+
+CREATE VIRTUAL TABLE notes_fts USING fts5(
+    title,
+    content,
+    content = 'notes_text',
+    content_rowid = 'id',
+    tokenize = 'unicode61 remove_diacritics 2'
+);
+
+INSERT INTO notes_fts(notes_fts, rank) VALUES ('rank', 'bm25(10.0, 1.0)');
+
+CREATE TRIGGER notes_fts_after_insert AFTER INSERT ON notes BEGIN
+    INSERT INTO notes_fts(rowid, title, content)
+    VALUES (new.id, new.title, note_content(new.content, new.content_compressed));
+END;
+
+CREATE TRIGGER notes_fts_after_delete AFTER DELETE ON notes BEGIN
+    INSERT INTO notes_fts(notes_fts, rowid, title, content)
+    VALUES ('delete', old.id, old.title, note_content(old.content, old.content_compressed));
+END;
+
+-- Compressing a row in place leaves the text as it was, only a real change is re-indexed
+CREATE TRIGGER notes_fts_after_update AFTER UPDATE OF title, content, content_compressed ON notes
+WHEN old.title IS NOT new.title
+    OR note_content(old.content, old.content_compressed) IS NOT note_content(new.content, new.content_compressed)
+BEGIN
+    INSERT INTO notes_fts(notes_fts, rowid, title, content)
+    VALUES ('delete', old.id, old.title, note_content(old.content, old.content_compressed));
+    INSERT INTO notes_fts(rowid, title, content)
+    VALUES (new.id, new.title, note_content(new.content, new.content_compressed));
+END;
+
+INSERT INTO notes_fts(notes_fts) VALUES ('rebuild');
+
+-- Same for the conditional GET revision: the compaction rewrite keeps title and updated_at,
+-- clients don't need to fetch the note again
+DROP TRIGGER IF EXISTS notes_revision_after_update;
+
+CREATE TRIGGER notes_revision_after_update AFTER UPDATE ON notes
+WHEN NOT (old.content_compressed IS NULL AND new.content_compressed IS NOT NULL
+          AND old.title IS new.title AND old.updated_at IS new.updated_at)
+BEGIN
+    UPDATE users SET notes_revision = notes_revision + 1,
+        notes_modified_at = CAST(unixepoch('subsec') * 1000 AS INTEGER)
+    WHERE id = new.user_id;
+END;
@@ -0,0 +1,73 @@
+-- Change feed for incremental sync. Every note insert and update is stamped with the owner's
+-- notes_revision right after the bump, every delete leaves a tombstone with its own, so
+-- GET /notes/changes?since=n finds everything that changed after n on two (user_id, change_seq)
+-- indexes. Stamps are unique per user since each one follows its own bump.
+ALTER TABLE notes ADD COLUMN change_seq INTEGER NOT NULL DEFAULT 0;
+
+CREATE INDEX IF NOT EXISTS idx_notes_user_change ON notes(user_id, change_seq);
+
+CREATE TABLE IF NOT EXISTS note_tombstones (
+    user_id INTEGER NOT NULL,
+    note_id INTEGER NOT NULL,
+    change_seq INTEGER NOT NULL,
+    -- Epoch milliseconds, tombstones are pruned after notes.sync.tombstone-retention-days
+    deleted_at INTEGER NOT NULL,
+    PRIMARY KEY (user_id, change_seq),
+    CONSTRAINT fk_note_tombstones_user
+        FOREIGN KEY (user_id)
+        REFERENCES users(id)
+        ON DELETE CASCADE
+) WITHOUT ROWID;
+
+CREATE INDEX IF NOT EXISTS idx_note_tombstones_deleted_at ON note_tombstones(deleted_at);
+
+-- Highest change_seq among the user's pruned tombstones, a client that last synced before it
+-- may have missed a delete and has to start over
+ALTER TABLE users ADD COLUMN notes_pruned_seq INTEGER NOT NULL DEFAULT 0;
+
+DROP TRIGGER IF EXISTS notes_revision_after_insert;
+DROP TRIGGER IF EXISTS notes_revision_after_update;
+DROP TRIGGER IF EXISTS notes_revision_after_delete;
+
+-- The stamping UPDATE changes change_seq only, which notes_revision_after_update ignores
+CREATE TRIGGER notes_revision_after_insert AFTER INSERT ON notes BEGIN
+    UPDATE users SET notes_revision = notes_revision + 1,
+        notes_modified_at = CAST(unixepoch('subsec') * 1000 AS INTEGER)
+    WHERE id = new.user_id;
+    UPDATE notes SET change_seq = (SELECT notes_revision FROM users WHERE id = new.user_id)
+    WHERE id = new.id;
+END;
+
+-- Skips the stamping and the compaction rewrite (see V12), neither changes the note
+CREATE TRIGGER notes_revision_after_update AFTER UPDATE ON notes
+WHEN old.change_seq IS new.change_seq
+    AND NOT (old.content_compressed IS NULL AND new.content_compressed IS NOT NULL
+             AND old.title IS new.title AND old.updated_at IS new.updated_at)
+BEGIN
+    UPDATE users SET notes_revision = notes_revision + 1,
+        notes_modified_at = CAST(unixepoch('subsec') * 1000 AS INTEGER)
+    WHERE id = new.user_id;
+    UPDATE notes SET change_seq = (SELECT notes_revision FROM users WHERE id = new.user_id)
+    WHERE id = new.id;
+END;
+
+-- For the cascade when a user is deleted the users row is already gone, so neither statement
+-- matches a row and no tombstone is left behind
+CREATE TRIGGER notes_revision_after_delete AFTER DELETE ON notes BEGIN
+    UPDATE users SET notes_revision = notes_revision + 1,
+        notes_modified_at = CAST(unixepoch('subsec') * 1000 AS INTEGER)
+    WHERE id = old.user_id;
+    INSERT INTO note_tombstones (user_id, note_id, change_seq, deleted_at)
+    SELECT id, old.id, notes_revision, CAST(unixepoch('subsec') * 1000 AS INTEGER)
+    FROM users WHERE id = old.user_id;
+END;
+
+-- Existing notes get distinct stamps above each user's current revision, in id order, and the
+-- revision moves past them
+UPDATE notes SET change_seq = stamped.seq
+FROM (SELECT n.id, u.notes_revision + row_number() OVER (PARTITION BY n.user_id ORDER BY n.id) AS seq
+      FROM notes n JOIN users u ON u.id = n.user_id) AS stamped
+WHERE notes.id = stamped.id;
+
+UPDATE users SET notes_revision = notes_revision + (SELECT count(*) FROM notes WHERE notes.user_id = users.id)
+WHERE id IN (SELECT user_id FROM notes);
@@ -0,0 +1,29 @@
+-- The full-text index no longer reads note text through note_content() (see V12). It is a
+-- contentless table that NoteRepository feeds with the inflated bodies itself, so nothing in the
+-- schema calls an application function and any SQLite client can write to notes again. Snippets
+-- are built in Java from the notes row.
+DROP TRIGGER IF EXISTS notes_fts_after_insert;
+DROP TRIGGER IF EXISTS notes_fts_after_delete;
+DROP TRIGGER IF EXISTS notes_fts_after_update;
+DROP TABLE IF EXISTS notes_fts;
+DROP VIEW IF EXISTS notes_text;
+
+CREATE VIRTUAL TABLE notes_fts USING fts5(
+    title,
+    content,
+    content = '',
+    contentless_delete = 1,
+    tokenize = 'unicode61 remove_diacritics 2'
+);
+
+INSERT INTO notes_fts(notes_fts, rank) VALUES ('rank', 'bm25(10.0, 1.0)');
+
+-- Deleting from a contentless-delete index only needs the rowid, so deletes stay in a trigger.
+-- It also covers the notes of a deleted user, removed by ON DELETE CASCADE
+CREATE TRIGGER notes_fts_after_delete AFTER DELETE ON notes BEGIN
+    DELETE FROM notes_fts WHERE rowid = old.id;
+END;
+
+-- Compressed rows are indexed by the Java migration that follows (V15)
+INSERT INTO notes_fts(rowid, title, content)
+SELECT id, title, content FROM notes WHERE content_compressed IS NULL;
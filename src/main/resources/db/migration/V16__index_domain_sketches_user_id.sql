@@ -0,0 +1,3 @@
+-- Deleting a user cascades to domain_sketches (see V9). Without an index on the child key SQLite
+-- scans the whole table once per deleted user to find the rows to remove.
+CREATE INDEX IF NOT EXISTS idx_domain_sketches_user_id ON domain_sketches(user_id);
@@ -0,0 +1,2 @@
+-- Bumped to revoke every JWT issued to the user before the change
+ALTER TABLE users ADD COLUMN token_version INTEGER NOT NULL DEFAULT 0;
@@ -0,0 +1,5 @@
+-- Serves the keyset-paginated listing (WHERE user_id = ? ORDER BY updated_at DESC, id)
+CREATE INDEX IF NOT EXISTS idx_notes_user_updated ON notes(user_id, updated_at DESC, id);
+
+-- user_id lookups are covered by the composite index's prefix
+DROP INDEX IF EXISTS idx_notes_user_id;
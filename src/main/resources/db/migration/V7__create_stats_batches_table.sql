@@ -0,0 +1,17 @@
+-- Event batches already applied to a user's statistics, so a retried upload is not counted twice
+CREATE TABLE IF NOT EXISTS stats_batches (
+    user_id INTEGER NOT NULL,
+    batch_id VARCHAR(64) NOT NULL,
+    received_at INTEGER NOT NULL,
+    events INTEGER NOT NULL,
+    ads_blocked INTEGER NOT NULL,
+    trackers_blocked INTEGER NOT NULL,
+    PRIMARY KEY (user_id, batch_id),
+    CONSTRAINT fk_stats_batches_user
+        FOREIGN KEY (user_id)
+        REFERENCES users(id)
+        ON DELETE CASCADE
+);
+
+-- Expired batch ids are pruned by age
+CREATE INDEX IF NOT EXISTS idx_stats_batches_received ON stats_batches(received_at);
@@ -0,0 +1,34 @@
+-- Blocked counts per user and time bucket. New counts land in minute buckets; a scheduled
+-- compaction folds old minute buckets into hour buckets and old hour buckets into day buckets,
+-- so every count lives in exactly one bucket and a user's row count stays bounded.
+CREATE TABLE IF NOT EXISTS stats_rollups (
+    user_id INTEGER NOT NULL,
+    granularity VARCHAR(8) NOT NULL,
+    bucket_start INTEGER NOT NULL,
+    ads_blocked INTEGER NOT NULL DEFAULT 0,
+    trackers_blocked INTEGER NOT NULL DEFAULT 0,
+    PRIMARY KEY (user_id, granularity, bucket_start),
+    CONSTRAINT fk_stats_rollups_user
+        FOREIGN KEY (user_id)
+        REFERENCES users(id)
+        ON DELETE CASCADE
+);
+
+-- Compaction selects one granularity across all users by age
+CREATE INDEX IF NOT EXISTS idx_stats_rollups_compaction ON stats_rollups(granularity, bucket_start);
+
+-- Blocked counts per user, UTC day and domain. Completed days are trimmed to their top domains.
+CREATE TABLE IF NOT EXISTS stats_top_domains (
+    user_id INTEGER NOT NULL,
+    day INTEGER NOT NULL,
+    domain VARCHAR(253) NOT NULL,
+    ads_blocked INTEGER NOT NULL DEFAULT 0,
+    trackers_blocked INTEGER NOT NULL DEFAULT 0,
+    PRIMARY KEY (user_id, day, domain),
+    CONSTRAINT fk_stats_top_domains_user
+        FOREIGN KEY (user_id)
+        REFERENCES users(id)
+        ON DELETE CASCADE
+);
+
+CREATE INDEX IF NOT EXISTS idx_stats_top_domains_day ON stats_top_domains(day);
@@ -0,0 +1,11 @@
+-- Checkpoints of the in-memory top-domain sketches: 'global' plus one 'user:<id>' row per user
+CREATE TABLE IF NOT EXISTS domain_sketches (
+    sketch_id VARCHAR(32) PRIMARY KEY,
+    user_id INTEGER,
+    data BLOB NOT NULL,
+    updated_at INTEGER NOT NULL,
+    CONSTRAINT fk_domain_sketches_user
+        FOREIGN KEY (user_id)
+        REFERENCES users(id)
+        ON DELETE CASCADE
+);
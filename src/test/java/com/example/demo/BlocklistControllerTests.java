@@ -0,0 +1,93 @@
+package com.example.demo;
+
+import com.example.demo.controller.BlocklistController;
+import com.example.demo.service.BlocklistService;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.io.DefaultResourceLoader;
+import org.springframework.http.HttpHeaders;
+import org.springframework.scheduling.concurrent.SimpleAsyncTaskScheduler;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+
+import java.io.ByteArrayInputStream;
+import java.util.List;
+import java.util.zip.GZIPInputStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+class BlocklistControllerTests {
+
+    private MockMvc mockMvc;
+    private String version;
+
+    @BeforeEach
+    void setUp() {
+        // Reloading is off, the lists are compiled once
+        BlocklistService blocklistService = new BlocklistService(new DefaultResourceLoader(), new ObjectMapper(),
+                new SimpleAsyncTaskScheduler(), List.of("classpath:blocklist/ads.txt"),
+                List.of("classpath:blocklist/trackers.txt"), 0, 10);
+        version = blocklistService.reload().version();
+        mockMvc = MockMvcBuilders.standaloneSetup(new BlocklistController(blocklistService)).build();
+    }
+
+    @Test
+    void matchReportsTheVersionItMatchedAgainst() throws Exception {
+        mockMvc.perform(get("/api/blocklist/match").param("host", "ads.doubleclick.net"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.blocked").value(true))
+                .andExpect(jsonPath("$.rule").value("doubleclick.net"))
+                .andExpect(jsonPath("$.version").value(version));
+    }
+
+    @Test
+    void gzipIsOnlySentWhenAccepted() throws Exception {
+        byte[] gzipped = mockMvc.perform(get("/api/blocklist").header(HttpHeaders.ACCEPT_ENCODING, "deflate, gzip"))
+                .andExpect(status().isOk())
+                .andExpect(header().string(HttpHeaders.CONTENT_ENCODING, "gzip"))
+                .andExpect(header().string(HttpHeaders.ETAG, "\"" + version + "-gzip\""))
+                .andReturn().getResponse().getContentAsByteArray();
+        byte[] identity = mockMvc.perform(get("/api/blocklist").header(HttpHeaders.ACCEPT_ENCODING, "gzip;q=0, *"))
+                .andExpect(status().isOk())
+                .andExpect(header().doesNotExist(HttpHeaders.CONTENT_ENCODING))
+                .andExpect(header().string(HttpHeaders.ETAG, "\"" + version + "\""))
+                .andExpect(jsonPath("$.type").value("full"))
+                .andReturn().getResponse().getContentAsByteArray();
+
+        try (GZIPInputStream gzip = new GZIPInputStream(new ByteArrayInputStream(gzipped))) {
+            assertThat(gzip.readAllBytes()).isEqualTo(identity);
+        }
+    }
+
+    @Test
+    void sinceTheCurrentVersionIsAnEmptyDelta() throws Exception {
+        mockMvc.perform(get("/api/blocklist").param("since", version))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.type").value("delta"))
+                .andExpect(jsonPath("$.since").value(version))
+                .andExpect(jsonPath("$.removeRuleIds").isEmpty())
+                .andExpect(jsonPath("$.addRules").isEmpty());
+    }
+
+    @Test
+    void matchingIfNoneMatchIsNotModified() throws Exception {
+        mockMvc.perform(get("/api/blocklist").param("since", version)
+                        .header(HttpHeaders.IF_NONE_MATCH, "\"" + version + "-gzip\"")
+                        .header(HttpHeaders.ACCEPT_ENCODING, "gzip"))
+                .andExpect(status().isNotModified())
+                .andExpect(header().string("X-Blocklist-Version", version));
+    }
+
+    @Test
+    void unknownVersionGetsTheFullRuleSet() throws Exception {
+        mockMvc.perform(get("/api/blocklist").param("since", "0000000000000000"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.type").value("full"))
+                .andExpect(jsonPath("$.rules").isNotEmpty());
+    }
+}
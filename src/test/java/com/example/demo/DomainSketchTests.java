@@ -0,0 +1,98 @@
+package com.example.demo;
+
+import com.example.demo.controller.StatisticsController;
+import com.example.demo.dto.DomainEstimate;
+import com.example.demo.exception.GlobalExceptionHandler;
+import com.example.demo.repository.DomainSketchRepository;
+import com.example.demo.repository.StatisticsRepository;
+import com.example.demo.security.AuthenticatedUser;
+import com.example.demo.service.DomainSketchService;
+import com.example.demo.service.StatisticsAggregator;
+import com.example.demo.service.StatisticsEventService;
+import com.example.demo.service.StatisticsRollupService;
+import com.example.demo.service.UserService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.RegisterExtension;
+import org.springframework.scheduling.concurrent.SimpleAsyncTaskScheduler;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.authority.AuthorityUtils;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+class DomainSketchTests {
+
+    @RegisterExtension
+    final TestDatabase database = new TestDatabase();
+
+    private DomainSketchRepository sketchRepository;
+    private DomainSketchService sketchService;
+    private long userId;
+
+    @BeforeEach
+    void setUp() {
+        sketchRepository = new DomainSketchRepository(database.jdbcTemplate());
+        sketchService = newSketchService();
+        userId = database.insertUser("alice@example.com");
+    }
+
+    @Test
+    void userSketchIsRestoredFromItsCheckpoint() {
+        sketchService.record(userId, "doubleclick.net", 5);
+        sketchService.record(userId, "heap.io", 2);
+        sketchService.checkpoint();
+
+        DomainSketchService restarted = newSketchService();
+        restarted.record(userId, "doubleclick.net", 1);
+
+        assertThat(restarted.topForUser(userId, 2).domains())
+                .extracting(DomainEstimate::domain).containsExactly("doubleclick.net", "heap.io");
+        assertThat(restarted.getTrackedUsers()).isEqualTo(1);
+    }
+
+    @Test
+    void deletingTheUserDropsItsSketch() {
+        sketchService.record(userId, "doubleclick.net", 5);
+        sketchService.checkpoint();
+
+        database.jdbcTemplate().update("DELETE FROM users WHERE id = ?", userId);
+
+        assertThat(sketchRepository.find("user:" + userId)).isEmpty();
+    }
+
+    @Test
+    void topDomainsLimitIsBoundByTheScopesCapacity() throws Exception {
+        StatisticsController controller = new StatisticsController(mock(StatisticsRepository.class),
+                mock(StatisticsAggregator.class), mock(StatisticsEventService.class),
+                mock(StatisticsRollupService.class), sketchService, mock(UserService.class));
+        MockMvc mockMvc = MockMvcBuilders.standaloneSetup(controller)
+                .setControllerAdvice(new GlobalExceptionHandler(new SimpleMeterRegistry()))
+                .build();
+        UsernamePasswordAuthenticationToken authentication = new UsernamePasswordAuthenticationToken(
+                new AuthenticatedUser(userId, "alice@example.com", "ROLE_USER"), null,
+                AuthorityUtils.createAuthorityList("ROLE_USER"));
+
+        mockMvc.perform(get("/api/stats/top-domains").param("limit", "20").principal(authentication))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.tracked").value(20));
+        mockMvc.perform(get("/api/stats/top-domains").param("limit", "21").principal(authentication))
+                .andExpect(status().isBadRequest());
+        mockMvc.perform(get("/api/stats/top-domains").param("limit", "100").param("scope", "global")
+                        .principal(authentication))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.tracked").value(100));
+    }
+
+    // Default sketch dimensions; the checkpoint task is not scheduled, tests checkpoint explicitly
+    private DomainSketchService newSketchService() {
+        return new DomainSketchService(sketchRepository, new SimpleAsyncTaskScheduler(), 128, 4, 20, 4096, 4, 100,
+                60000, 30);
+    }
+}
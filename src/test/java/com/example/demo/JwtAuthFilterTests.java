@@ -0,0 +1,117 @@
+package com.example.demo;
+
+import com.example.demo.model.User;
+import com.example.demo.repository.UserRepository;
+import com.example.demo.security.AuthenticatedUser;
+import com.example.demo.security.JwtAuthFilter;
+import com.example.demo.security.JwtClaimsCache;
+import com.example.demo.security.JwtTokenProvider;
+import com.example.demo.security.TokenVersionRegistry;
+import io.jsonwebtoken.Claims;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.security.core.userdetails.UserDetailsService;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.Optional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+class JwtAuthFilterTests {
+
+    private UserRepository userRepository;
+    private UserDetailsService userDetailsService;
+    private JwtTokenProvider tokenProvider;
+    private TokenVersionRegistry tokenVersionRegistry;
+    private JwtAuthFilter filter;
+    private User user;
+
+    @BeforeEach
+    void setUp() {
+        userRepository = mock(UserRepository.class);
+        userDetailsService = mock(UserDetailsService.class);
+        tokenProvider = new JwtTokenProvider(new JwtClaimsCache(100));
+        ReflectionTestUtils.setField(tokenProvider, "secret",
+                "testSecretKeyForJWTTokenGenerationThatIsAtLeast256BitsLongForHS256");
+        ReflectionTestUtils.setField(tokenProvider, "expiration", 60_000L);
+        ReflectionTestUtils.invokeMethod(tokenProvider, "init");
+        tokenVersionRegistry = new TokenVersionRegistry(userRepository, 100);
+        filter = new JwtAuthFilter(tokenProvider, userDetailsService, tokenVersionRegistry,
+                new SimpleMeterRegistry(), true);
+
+        user = new User("alice", "alice@example.com", "unused");
+        user.setId(42L);
+        user.setTokenVersion(3);
+    }
+
+    @AfterEach
+    void clearContext() {
+        SecurityContextHolder.clearContext();
+    }
+
+    @Test
+    void tokensCarryUserIdAndTokenVersion() {
+        Claims claims = tokenProvider.extractAllClaims(tokenProvider.generateToken(user));
+
+        assertThat(claims.getSubject()).isEqualTo("alice@example.com");
+        assertThat(claims.get(JwtTokenProvider.CLAIM_USER_ID, Long.class)).isEqualTo(42L);
+        assertThat(claims.get(JwtTokenProvider.CLAIM_TOKEN_VERSION, Integer.class)).isEqualTo(3);
+    }
+
+    @Test
+    void currentTokenAuthenticatesFromClaimsWithoutLoadingTheUser() throws Exception {
+        when(userRepository.findTokenVersionById(42L)).thenReturn(Optional.of(3));
+
+        Authentication authentication = filter(tokenProvider.generateToken(user));
+
+        assertThat(authentication).isNotNull();
+        assertThat(authentication.getPrincipal())
+                .isEqualTo(new AuthenticatedUser(42L, "alice@example.com", "ROLE_USER"));
+        verifyNoInteractions(userDetailsService);
+    }
+
+    @Test
+    void revokedTokenIsRejected() throws Exception {
+        when(userRepository.findTokenVersionById(42L)).thenReturn(Optional.of(3), Optional.of(4));
+        String token = tokenProvider.generateToken(user);
+        assertThat(filter(token)).isNotNull();
+        SecurityContextHolder.clearContext();
+
+        tokenVersionRegistry.revoke(42L);
+
+        verify(userRepository).incrementTokenVersion(42L);
+        assertThat(filter(token)).isNull();
+    }
+
+    @Test
+    void deletedUsersTokenIsRejectedWithoutQueryingEveryTime() throws Exception {
+        when(userRepository.findTokenVersionById(any())).thenReturn(Optional.empty());
+        String token = tokenProvider.generateToken(user);
+
+        assertThat(filter(token)).isNull();
+        assertThat(filter(token)).isNull();
+
+        verify(userRepository, times(1)).findTokenVersionById(42L);
+        verifyNoInteractions(userDetailsService);
+    }
+
+    private Authentication filter(String token) throws Exception {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/notes");
+        request.addHeader("Authorization", "Bearer " + token);
+        filter.doFilter(request, new MockHttpServletResponse(), new MockFilterChain());
+        return SecurityContextHolder.getContext().getAuthentication();
+    }
+}
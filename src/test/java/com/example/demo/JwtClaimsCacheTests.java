@@ -0,0 +1,81 @@
+package com.example.demo;
+
+import com.example.demo.security.JwtClaimsCache;
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.Jwts;
+import org.junit.jupiter.api.Test;
+
+import java.util.Date;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class JwtClaimsCacheTests {
+
+    private final AtomicInteger parses = new AtomicInteger();
+
+    @Test
+    void tokenIsParsedOnceWhileItIsValid() {
+        JwtClaimsCache cache = new JwtClaimsCache(10);
+        Function<String, Claims> parser = expiringIn(60_000);
+
+        Claims first = cache.getOrParse("token", parser);
+        Claims second = cache.getOrParse("token", parser);
+
+        assertThat(second).isSameAs(first);
+        assertThat(parses).hasValue(1);
+        assertThat(cache.getHits()).isEqualTo(1);
+    }
+
+    @Test
+    void expiredEntryIsParsedAgain() throws InterruptedException {
+        JwtClaimsCache cache = new JwtClaimsCache(10);
+        // exp is kept in whole seconds, a shorter lifetime would be truncated to already expired
+        cache.getOrParse("token", expiringIn(1000));
+        Thread.sleep(1100);
+
+        cache.getOrParse("token", expiringIn(60_000));
+
+        assertThat(parses).hasValue(2);
+        assertThat(cache.getEvictions()).isEqualTo(1);
+    }
+
+    @Test
+    void tokensWithoutExpirationAreNotCached() {
+        JwtClaimsCache cache = new JwtClaimsCache(10);
+        Function<String, Claims> parser = token -> {
+            parses.incrementAndGet();
+            return Jwts.claims().subject(token).build();
+        };
+
+        cache.getOrParse("token", parser);
+        cache.getOrParse("token", parser);
+
+        assertThat(parses).hasValue(2);
+        assertThat(cache.size()).isZero();
+    }
+
+    @Test
+    void fullCacheDropsTheTokensClosestToExpiry() {
+        JwtClaimsCache cache = new JwtClaimsCache(10);
+        for (int i = 0; i < 10; i++) {
+            cache.getOrParse("token-" + i, expiringIn(60_000 + i * 1000L));
+        }
+
+        cache.getOrParse("token-10", expiringIn(120_000));
+
+        assertThat(cache.size()).isLessThanOrEqualTo(10);
+        cache.getOrParse("token-9", expiringIn(60_000));
+        assertThat(parses).hasValue(11);
+        cache.getOrParse("token-0", expiringIn(60_000));
+        assertThat(parses).hasValue(12);
+    }
+
+    private Function<String, Claims> expiringIn(long millis) {
+        return token -> {
+            parses.incrementAndGet();
+            return Jwts.claims().subject(token).expiration(new Date(System.currentTimeMillis() + millis)).build();
+        };
+    }
+}
@@ -0,0 +1,47 @@
+package com.example.demo;
+
+import com.example.demo.exception.TooManyRequestsException;
+import com.example.demo.security.LoginRateLimiter;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatCode;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class LoginRateLimiterTests {
+
+    @Test
+    void attemptsThrottledByIpDoNotDrainTheEmailBucket() {
+        LoginRateLimiter limiter = new LoginRateLimiter(1, 1, 1, 1, 1000);
+        limiter.checkLogin("10.0.0.1", "someone@example.com");
+
+        for (int i = 0; i < 3; i++) {
+            assertThatThrownBy(() -> limiter.checkLogin("10.0.0.1", "victim@example.com"))
+                    .isInstanceOf(TooManyRequestsException.class);
+        }
+
+        assertThatCode(() -> limiter.checkLogin("10.0.0.2", "Victim@Example.com ")).doesNotThrowAnyException();
+        assertThat(limiter.getThrottledCount()).isEqualTo(3);
+    }
+
+    @Test
+    void emailIsLimitedAcrossIps() {
+        LoginRateLimiter limiter = new LoginRateLimiter(10, 10, 2, 2, 1000);
+        limiter.checkLogin("10.0.0.1", "victim@example.com");
+        limiter.checkLogin("10.0.0.2", "victim@example.com");
+
+        assertThatThrownBy(() -> limiter.checkLogin("10.0.0.3", "VICTIM@example.com"))
+                .isInstanceOf(TooManyRequestsException.class);
+    }
+
+    @Test
+    void retryAfterIsTheTimeUntilTheNextToken() {
+        // One token every 20 seconds
+        LoginRateLimiter limiter = new LoginRateLimiter(1, 3, 10, 10, 1000);
+        limiter.checkLogin("10.0.0.1", "alice@example.com");
+
+        assertThatThrownBy(() -> limiter.checkLogin("10.0.0.1", "alice@example.com"))
+                .isInstanceOfSatisfying(TooManyRequestsException.class,
+                        e -> assertThat(e.getRetryAfterSeconds()).isBetween(19L, 20L));
+    }
+}
@@ -0,0 +1,128 @@
+package com.example.demo;
+
+import com.example.demo.controller.NoteController;
+import com.example.demo.exception.GlobalExceptionHandler;
+import com.example.demo.security.AuthenticatedUser;
+import com.example.demo.service.NoteCache;
+import com.example.demo.service.NoteExportService;
+import com.example.demo.service.NoteImportService;
+import com.example.demo.service.NoteService;
+import com.example.demo.service.NoteSyncService;
+import com.example.demo.service.UserService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.RegisterExtension;
+import org.springframework.http.MediaType;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.authority.AuthorityUtils;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+class NoteBatchTests {
+
+    @RegisterExtension
+    final TestDatabase database = new TestDatabase();
+
+    private MockMvc mockMvc;
+    private UsernamePasswordAuthenticationToken authentication;
+    private long userId;
+
+    @BeforeEach
+    void setUp() {
+        NoteService noteService = database.noteService(new NoteCache(32, 16, 1000));
+        NoteController controller = new NoteController(noteService, mock(NoteExportService.class),
+                mock(NoteImportService.class), mock(NoteSyncService.class), mock(UserService.class));
+        mockMvc = MockMvcBuilders.standaloneSetup(controller)
+                .setControllerAdvice(new GlobalExceptionHandler(new SimpleMeterRegistry()))
+                .build();
+
+        userId = database.insertUser("alice@example.com");
+        authentication = new UsernamePasswordAuthenticationToken(
+                new AuthenticatedUser(userId, "alice@example.com", "ROLE_USER"), null,
+                AuthorityUtils.createAuthorityList("ROLE_USER"));
+    }
+
+    @Test
+    void itemWithoutOpIsInvalidAndTheRestIsApplied() throws Exception {
+        mockMvc.perform(post("/notes/batch")
+                        .principal(authentication)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("""
+                                {"operations": [
+                                  {"op": "create", "title": "Groceries", "content": "Milk, eggs"},
+                                  {"title": "x"}
+                                ]}
+                                """))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.results[0].status").value("created"))
+                .andExpect(jsonPath("$.results[1].status").value("invalid"))
+                .andExpect(jsonPath("$.counts.created").value(1))
+                .andExpect(jsonPath("$.counts.invalid").value(1));
+
+        assertThat(noteTitles()).containsExactly("Groceries");
+    }
+
+    @Test
+    void runsOfDifferentOpsKeepRequestOrder() throws Exception {
+        long existing = createNote("Old", "Old content");
+        long doomed = createNote("Doomed", "Gone soon");
+
+        mockMvc.perform(post("/notes/batch")
+                        .principal(authentication)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("""
+                                {"operations": [
+                                  {"op": "create", "title": "First", "content": "one"},
+                                  {"op": "create", "title": "Second", "content": "two"},
+                                  {"op": "update", "id": %d, "title": "Renamed", "content": "new"},
+                                  {"op": "delete", "id": %d},
+                                  {"op": "delete", "id": 999999}
+                                ]}
+                                """.formatted(existing, doomed)))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.results[0].status").value("created"))
+                .andExpect(jsonPath("$.results[1].status").value("created"))
+                .andExpect(jsonPath("$.results[2].status").value("updated"))
+                .andExpect(jsonPath("$.results[3].status").value("deleted"))
+                .andExpect(jsonPath("$.results[4].status").value("not_found"));
+
+        assertThat(noteTitles()).containsExactlyInAnyOrder("First", "Second", "Renamed");
+    }
+
+    @Test
+    void otherUsersNotesAreNotFound() throws Exception {
+        long bob = database.insertUser("bob@example.com");
+        database.jdbcTemplate().update("INSERT INTO notes (title, content, user_id) VALUES ('Bob', 'private', ?)", bob);
+        long bobsNote = database.jdbcTemplate().queryForObject("SELECT id FROM notes WHERE user_id = ?", Long.class, bob);
+
+        mockMvc.perform(post("/notes/batch")
+                        .principal(authentication)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("""
+                                {"operations": [{"op": "delete", "id": %d}]}
+                                """.formatted(bobsNote)))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.results[0].status").value("not_found"));
+
+        assertThat(database.jdbcTemplate().queryForObject(
+                "SELECT count(*) FROM notes WHERE id = ?", Integer.class, bobsNote)).isEqualTo(1);
+    }
+
+    private long createNote(String title, String content) {
+        database.jdbcTemplate().update("INSERT INTO notes (title, content, user_id) VALUES (?, ?, ?)", title, content, userId);
+        return database.jdbcTemplate().queryForObject("SELECT max(id) FROM notes", Long.class);
+    }
+
+    private List<String> noteTitles() {
+        return database.jdbcTemplate().queryForList("SELECT title FROM notes WHERE user_id = ?", String.class, userId);
+    }
+}
@@ -0,0 +1,108 @@
+package com.example.demo;
+
+import com.example.demo.dto.NoteDTO;
+import com.example.demo.dto.NotePage;
+import com.example.demo.dto.NoteSummary;
+import com.example.demo.dto.NotesRevision;
+import com.example.demo.model.Note;
+import com.example.demo.model.NoteContentCodec;
+import com.example.demo.service.NoteCache;
+import com.example.demo.service.NoteService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.RegisterExtension;
+
+import java.util.Optional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class NoteCacheTests {
+
+    @RegisterExtension
+    final TestDatabase database = new TestDatabase();
+
+    private NoteCache noteCache;
+    private NoteService noteService;
+    private long userId;
+
+    @BeforeEach
+    void setUp() {
+        noteCache = new NoteCache(32, 16, 1000);
+        noteService = database.noteService(noteCache);
+        userId = database.insertUser("alice@example.com");
+    }
+
+    @Test
+    void firstPageIsServedFromCacheUntilANoteChanges() {
+        noteService.createNote(note("Groceries"), userId);
+
+        NotePage<Note> first = noteService.getNotesPage(userId, null, 10);
+        assertThat(noteService.getNotesPage(userId, null, 10)).isSameAs(first);
+        assertThat(noteCache.getPages().stats().hitCount()).isEqualTo(1);
+
+        noteService.createNote(note("Errands"), userId);
+
+        assertThat(noteService.getNotesPage(userId, null, 10).items())
+                .extracting(Note::getTitle).containsExactlyInAnyOrder("Groceries", "Errands");
+    }
+
+    @Test
+    void viewsAndPageSizesAreCachedSeparately() {
+        noteService.createNote(note("Groceries"), userId);
+        noteService.createNote(note("Errands"), userId);
+
+        NotePage<Note> full = noteService.getNotesPage(userId, null, 1);
+        NotePage<NoteSummary> summaries = noteService.getNoteSummariesPage(userId, null, 1);
+        NotePage<Note> both = noteService.getNotesPage(userId, null, 2);
+
+        assertThat(full.items()).hasSize(1);
+        assertThat(full.hasMore()).isTrue();
+        assertThat(summaries.items()).hasSize(1);
+        assertThat(both.items()).hasSize(2);
+        assertThat(noteService.getNoteSummariesPage(userId, null, 1)).isSameAs(summaries);
+        assertThat(noteService.getNotesPage(userId, null, 1)).isSameAs(full);
+    }
+
+    @Test
+    void pagesAfterACursorAreNotCached() {
+        noteService.createNote(note("Groceries"), userId);
+        noteService.createNote(note("Errands"), userId);
+        String cursor = noteService.getNotesPage(userId, null, 1).nextCursor();
+
+        NotePage<Note> second = noteService.getNotesPage(userId, cursor, 1);
+
+        assertThat(second.items()).hasSize(1);
+        assertThat(noteService.getNotesPage(userId, cursor, 1)).isNotSameAs(second);
+    }
+
+    @Test
+    void revisionIsCachedUntilANoteChanges() {
+        Note note = noteService.createNote(note("Groceries"), userId);
+        NotesRevision created = noteService.getNotesRevision(userId);
+        assertThat(noteService.getNotesRevision(userId)).isSameAs(created);
+        assertThat(noteCache.getRevisions().stats().hitCount()).isEqualTo(1);
+
+        noteService.deleteNote(note.getId(), userId);
+
+        assertThat(noteService.getNotesRevision(userId).revision()).isGreaterThan(created.revision());
+    }
+
+    @Test
+    void readingACachedCompressedNoteKeepsItCompressed() {
+        String body = "Lorem ipsum dolor sit amet. ".repeat(200);
+        Note stored = new Note("Long", null, userId);
+        stored.setId(1L);
+        stored.setCompressedContent(NoteContentCodec.compress(body));
+        int footprint = stored.getContentFootprint();
+        noteCache.getNote(1L, () -> Optional.of(stored));
+
+        Note cached = noteCache.getNote(1L, Optional::empty).orElseThrow();
+
+        assertThat(cached.getContent()).isEqualTo(body);
+        assertThat(cached.getContentFootprint()).isEqualTo(footprint).isLessThan(body.length());
+    }
+
+    private static NoteDTO note(String title) {
+        return new NoteDTO(title, "Content of " + title);
+    }
+}
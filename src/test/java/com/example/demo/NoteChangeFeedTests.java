@@ -0,0 +1,139 @@
+package com.example.demo;
+
+import com.example.demo.dto.NoteChange;
+import com.example.demo.dto.NoteChangePage;
+import com.example.demo.exception.SyncResetRequiredException;
+import com.example.demo.model.Note;
+import com.example.demo.repository.NoteContentStorage;
+import com.example.demo.repository.NoteRepository;
+import com.example.demo.service.NoteCompactionService;
+import com.example.demo.service.NoteSyncService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.RegisterExtension;
+import org.springframework.scheduling.concurrent.SimpleAsyncTaskScheduler;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class NoteChangeFeedTests {
+
+    @RegisterExtension
+    final TestDatabase database = new TestDatabase();
+
+    private NoteRepository noteRepository;
+    private NoteSyncService noteSyncService;
+    private long userId;
+
+    @BeforeEach
+    void setUp() {
+        noteRepository = database.transactional(database.noteRepository());
+        // Pruning is not scheduled, tests prune explicitly
+        noteSyncService = database.transactional(
+                new NoteSyncService(noteRepository, new SimpleAsyncTaskScheduler(), 100, 1000, 30));
+        userId = database.insertUser("alice@example.com");
+    }
+
+    @Test
+    void insertsAndUpdatesAreStampedInChangeOrder() {
+        Note groceries = noteRepository.save(new Note("Groceries", "Milk", userId));
+        Note errands = noteRepository.save(new Note("Errands", "Post office", userId));
+        long afterInserts = noteSyncService.getChanges(userId, 0, null).nextSince();
+
+        groceries.setContent("Milk, eggs");
+        noteRepository.save(groceries);
+
+        List<NoteChange> all = noteSyncService.getChanges(userId, 0, null).changes();
+        assertThat(all).extracting(NoteChange::id).containsExactly(errands.getId(), groceries.getId());
+        assertThat(all.get(0).seq()).isLessThan(all.get(1).seq());
+
+        NoteChangePage sinceInserts = noteSyncService.getChanges(userId, afterInserts, null);
+        assertThat(sinceInserts.changes()).singleElement().satisfies(change -> {
+            assertThat(change.id()).isEqualTo(groceries.getId());
+            assertThat(change.deleted()).isFalse();
+            assertThat(change.content()).isEqualTo("Milk, eggs");
+        });
+        assertThat(sinceInserts.nextSince()).isEqualTo(noteRepository.findRevision(userId).revision());
+    }
+
+    @Test
+    void deletesLeaveTombstonesOnlyIncrementalSyncsSee() {
+        Note groceries = noteRepository.save(new Note("Groceries", "Milk", userId));
+        Note errands = noteRepository.save(new Note("Errands", "Post office", userId));
+        long since = noteSyncService.getChanges(userId, 0, null).nextSince();
+
+        noteRepository.deleteById(groceries.getId());
+
+        NoteChangePage incremental = noteSyncService.getChanges(userId, since, null);
+        assertThat(incremental.changes()).singleElement().satisfies(change -> {
+            assertThat(change.id()).isEqualTo(groceries.getId());
+            assertThat(change.deleted()).isTrue();
+            assertThat(change.seq()).isGreaterThan(since);
+        });
+        assertThat(noteSyncService.getChanges(userId, 0, null).changes())
+                .extracting(NoteChange::id).containsExactly(errands.getId());
+    }
+
+    @Test
+    void compactionDoesNotRestampNotes() {
+        String body = "Lorem ipsum dolor sit amet. ".repeat(100);
+        Note longNote = noteRepository.save(new Note("Long", body, userId));
+        long revision = noteRepository.findRevision(userId).revision();
+
+        NoteContentStorage compressing = new NoteContentStorage(true, 1024, 200);
+        NoteCompactionService compaction = new NoteCompactionService(
+                new NoteRepository(database.jdbcTemplate(), compressing), compressing,
+                database.transactionManager(), new SimpleAsyncTaskScheduler(), 200, 250);
+        assertThat(compaction.compactBatch()).isEqualTo(1);
+
+        assertThat(noteRepository.findRevision(userId).revision()).isEqualTo(revision);
+        assertThat(noteSyncService.getChanges(userId, revision, null).changes()).isEmpty();
+        assertThat(noteRepository.findById(longNote.getId()).orElseThrow().getContent()).isEqualTo(body);
+        assertThat(database.jdbcTemplate().queryForObject(
+                "SELECT content_compressed IS NOT NULL FROM notes WHERE id = ?", Boolean.class, longNote.getId()))
+                .isTrue();
+    }
+
+    @Test
+    void pagesFollowEachOther() {
+        for (int i = 0; i < 3; i++) {
+            noteRepository.save(new Note("Note " + i, "Content " + i, userId));
+        }
+
+        NoteChangePage first = noteSyncService.getChanges(userId, 0, 2);
+        NoteChangePage second = noteSyncService.getChanges(userId, first.nextSince(), 2);
+
+        assertThat(first.changes()).hasSize(2);
+        assertThat(first.hasMore()).isTrue();
+        assertThat(second.changes()).extracting(NoteChange::title).containsExactly("Note 2");
+        assertThat(second.hasMore()).isFalse();
+    }
+
+    @Test
+    void prunedTombstonesRequireAFullSync() {
+        Note groceries = noteRepository.save(new Note("Groceries", "Milk", userId));
+        long since = noteSyncService.getChanges(userId, 0, null).nextSince();
+        noteRepository.deleteById(groceries.getId());
+        database.jdbcTemplate().update("UPDATE note_tombstones SET deleted_at = 0");
+
+        assertThat(noteSyncService.pruneTombstones()).isEqualTo(1);
+
+        assertThatThrownBy(() -> noteSyncService.getChanges(userId, since, null))
+                .isInstanceOf(SyncResetRequiredException.class);
+        assertThat(noteSyncService.getChanges(userId, 0, null).changes()).isEmpty();
+    }
+
+    @Test
+    void deletingTheUserLeavesNoTombstones() {
+        noteRepository.save(new Note("Groceries", "Milk", userId));
+        noteRepository.save(new Note("Errands", "Post office", userId));
+
+        database.jdbcTemplate().update("DELETE FROM users WHERE id = ?", userId);
+
+        assertThat(database.jdbcTemplate().queryForObject("SELECT count(*) FROM notes", Integer.class)).isZero();
+        assertThat(database.jdbcTemplate().queryForObject("SELECT count(*) FROM note_tombstones", Integer.class))
+                .isZero();
+    }
+}
@@ -0,0 +1,77 @@
+package com.example.demo;
+
+import com.example.demo.dto.NoteImportResult;
+import com.example.demo.dto.NoteImportResult.LineError;
+import com.example.demo.service.NoteCache;
+import com.example.demo.service.NoteImportService;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.validation.Validation;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.RegisterExtension;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class NoteImportTests {
+
+    @RegisterExtension
+    final TestDatabase database = new TestDatabase();
+
+    private NoteImportService importService;
+    private long userId;
+
+    @BeforeEach
+    void setUp() {
+        importService = new NoteImportService(database.noteRepository(), new NoteCache(32, 16, 1000),
+                Validation.buildDefaultValidatorFactory().getValidator(), database.transactionManager(),
+                new ObjectMapper(), 1, 2);
+        userId = database.insertUser("alice@example.com");
+    }
+
+    @Test
+    void invalidRecordsAreReportedByLine() throws IOException {
+        NoteImportResult result = importNotes(
+                record("First", "one"),
+                record("", "no title"),
+                "[1, 2]",
+                record("Too long", "x".repeat(20_000)),
+                record("Last", "two"));
+
+        assertThat(result.complete()).isTrue();
+        assertThat(result.imported()).isEqualTo(2);
+        assertThat(result.errors()).extracting(LineError::line).containsExactly(2L, 3L, 4L);
+        assertThat(result.errors().get(0).message())
+                .isEqualTo("title: Title is required; title: Title must be between 1 and 255 characters");
+        assertThat(result.errors().get(2).message())
+                .isEqualTo("content: Content must be between 1 and 10000 characters");
+    }
+
+    @Test
+    void oversizedValueStopsTheImport() throws IOException {
+        NoteImportResult result = importNotes(
+                record("First", "one"),
+                record("Second", "two"),
+                record("Huge", "x".repeat(70_000)),
+                record("Never read", "three"));
+
+        assertThat(result.complete()).isFalse();
+        assertThat(result.imported()).isEqualTo(2);
+        assertThat(result.errors()).singleElement().isEqualTo(
+                new LineError(3, "Value longer than 65536 characters, import stopped"));
+        assertThat(database.jdbcTemplate().queryForObject(
+                "SELECT count(*) FROM notes WHERE user_id = ?", Integer.class, userId)).isEqualTo(2);
+    }
+
+    private NoteImportResult importNotes(String... lines) throws IOException {
+        byte[] body = String.join("\n", lines).getBytes(StandardCharsets.UTF_8);
+        return importService.importNotes(userId, new ByteArrayInputStream(body));
+    }
+
+    private static String record(String title, String content) {
+        return "{\"title\": \"" + title + "\", \"content\": \"" + content + "\"}";
+    }
+}
@@ -0,0 +1,110 @@
+package com.example.demo;
+
+import com.example.demo.controller.NoteController;
+import com.example.demo.exception.GlobalExceptionHandler;
+import com.example.demo.security.AuthenticatedUser;
+import com.example.demo.service.NoteCache;
+import com.example.demo.service.NoteExportService;
+import com.example.demo.service.NoteImportService;
+import com.example.demo.service.NoteService;
+import com.example.demo.service.NoteSyncService;
+import com.example.demo.service.UserService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.RegisterExtension;
+import org.springframework.http.MediaType;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.authority.AuthorityUtils;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.delete;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.put;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+class NoteOwnershipTests {
+
+    private static final String UPDATE = """
+            {"title": "Renamed", "content": "new"}
+            """;
+
+    @RegisterExtension
+    final TestDatabase database = new TestDatabase();
+
+    private MockMvc mockMvc;
+    private UsernamePasswordAuthenticationToken authentication;
+    private long userId;
+    private long bobsNote;
+
+    @BeforeEach
+    void setUp() {
+        NoteService noteService = database.noteService(new NoteCache(32, 16, 1000));
+        NoteController controller = new NoteController(noteService, mock(NoteExportService.class),
+                mock(NoteImportService.class), mock(NoteSyncService.class), mock(UserService.class));
+        mockMvc = MockMvcBuilders.standaloneSetup(controller)
+                .setControllerAdvice(new GlobalExceptionHandler(new SimpleMeterRegistry()))
+                .build();
+
+        userId = database.insertUser("alice@example.com");
+        authentication = new UsernamePasswordAuthenticationToken(
+                new AuthenticatedUser(userId, "alice@example.com", "ROLE_USER"), null,
+                AuthorityUtils.createAuthorityList("ROLE_USER"));
+        bobsNote = createNote(database.insertUser("bob@example.com"), "Bob", "private");
+    }
+
+    @Test
+    void ownNoteCanBeReadUpdatedAndDeleted() throws Exception {
+        long note = createNote(userId, "Groceries", "Milk");
+
+        mockMvc.perform(get("/notes/{id}", note).principal(authentication))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.title").value("Groceries"));
+        mockMvc.perform(put("/notes/{id}", note).principal(authentication)
+                        .contentType(MediaType.APPLICATION_JSON).content(UPDATE))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.title").value("Renamed"));
+        mockMvc.perform(delete("/notes/{id}", note).principal(authentication))
+                .andExpect(status().isOk());
+
+        assertThat(noteCount(note)).isZero();
+    }
+
+    @Test
+    void foreignNoteIsForbidden() throws Exception {
+        mockMvc.perform(get("/notes/{id}", bobsNote).principal(authentication))
+                .andExpect(status().isForbidden());
+        mockMvc.perform(put("/notes/{id}", bobsNote).principal(authentication)
+                        .contentType(MediaType.APPLICATION_JSON).content(UPDATE))
+                .andExpect(status().isForbidden());
+        mockMvc.perform(delete("/notes/{id}", bobsNote).principal(authentication))
+                .andExpect(status().isForbidden());
+
+        assertThat(database.jdbcTemplate().queryForObject(
+                "SELECT title FROM notes WHERE id = ?", String.class, bobsNote)).isEqualTo("Bob");
+    }
+
+    @Test
+    void missingNoteIsNotFound() throws Exception {
+        mockMvc.perform(get("/notes/{id}", 999999).principal(authentication))
+                .andExpect(status().isNotFound());
+        mockMvc.perform(put("/notes/{id}", 999999).principal(authentication)
+                        .contentType(MediaType.APPLICATION_JSON).content(UPDATE))
+                .andExpect(status().isNotFound());
+        mockMvc.perform(delete("/notes/{id}", 999999).principal(authentication))
+                .andExpect(status().isNotFound());
+    }
+
+    private long createNote(long ownerId, String title, String content) {
+        database.jdbcTemplate().update("INSERT INTO notes (title, content, user_id) VALUES (?, ?, ?)", title, content, ownerId);
+        return database.jdbcTemplate().queryForObject("SELECT max(id) FROM notes", Long.class);
+    }
+
+    private int noteCount(long id) {
+        return database.jdbcTemplate().queryForObject("SELECT count(*) FROM notes WHERE id = ?", Integer.class, id);
+    }
+}
@@ -0,0 +1,100 @@
+package com.example.demo;
+
+import com.example.demo.dto.NoteDTO;
+import com.example.demo.dto.NoteSearchHit;
+import com.example.demo.model.Note;
+import com.example.demo.model.NoteContentCodec;
+import com.example.demo.repository.NoteContentStorage;
+import com.example.demo.service.NoteCache;
+import com.example.demo.service.NoteService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.RegisterExtension;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class NoteSearchTests {
+
+    @RegisterExtension
+    final TestDatabase database = new TestDatabase();
+
+    private NoteService noteService;
+    private long userId;
+
+    @BeforeEach
+    void setUp() {
+        noteService = database.noteService(new NoteCache(32, 16, 1000), new NoteContentStorage(true, 1024, 200));
+        userId = database.insertUser("alice@example.com");
+    }
+
+    @Test
+    void compressedBodiesAreSearchedInFull() {
+        String body = "Lorem ipsum dolor sit amet. ".repeat(100) + "The quarterly budget is due on Friday.";
+        Note note = noteService.createNote(new NoteDTO("Planning", body), userId);
+        assertThat(database.jdbcTemplate().queryForObject(
+                "SELECT content_compressed IS NOT NULL FROM notes WHERE id = ?", Boolean.class, note.getId()))
+                .isTrue();
+
+        List<NoteSearchHit> hits = search("quarterly budg");
+
+        assertThat(hits).singleElement().satisfies(hit -> {
+            assertThat(hit.getId()).isEqualTo(note.getId());
+            assertThat(hit.getSnippet()).isEqualTo(
+                    "...ipsum dolor sit amet. Lorem ipsum dolor sit amet. The **quarterly** **budget** is due on Friday");
+        });
+    }
+
+    @Test
+    void updatesAndDeletesKeepTheIndexInSync() {
+        Note note = noteService.createNote(new NoteDTO("Groceries", "Milk and eggs"), userId);
+
+        noteService.updateNote(note.getId(), new NoteDTO("Groceries", "Bread and butter"), userId);
+        assertThat(search("milk")).isEmpty();
+        assertThat(search("bread")).extracting(NoteSearchHit::getSnippet).containsExactly("**Bread** and butter");
+
+        noteService.deleteNote(note.getId(), userId);
+        assertThat(search("bread")).isEmpty();
+    }
+
+    @Test
+    void titleOnlyMatchShowsTheStartOfTheNote() {
+        noteService.createNote(new NoteDTO("Café", "Nothing to see here"), userId);
+
+        assertThat(search("cafe")).extracting(NoteSearchHit::getSnippet).containsExactly("Nothing to see here");
+    }
+
+    @Test
+    void notesCanBeWrittenWithoutTheApplicationsFunctions() {
+        // Any client, e.g. the sqlite3 shell: nothing in the schema calls note_content() any more
+        database.jdbcTemplate().update("INSERT INTO notes (title, content, user_id) VALUES ('Shell', 'typed by hand', ?)",
+                userId);
+        database.jdbcTemplate().update("UPDATE notes SET content = 'edited' WHERE title = 'Shell'");
+        database.jdbcTemplate().update("DELETE FROM notes WHERE title = 'Shell'");
+
+        assertThat(database.jdbcTemplate().queryForObject(
+                "SELECT count(*) FROM sqlite_master WHERE sql LIKE '%note_content%'", Integer.class)).isZero();
+    }
+
+    @Test
+    void migrationIndexesExistingCompressedNotes() {
+        try (TestDatabase legacy = new TestDatabase("13")) {
+            long legacyUser = legacy.insertUser("bob@example.com");
+            String body = "Meeting minutes. ".repeat(100) + "Remember the budget.";
+            legacy.jdbcTemplate().update(
+                    "INSERT INTO notes (title, content, content_compressed, user_id) VALUES (?, ?, ?, ?)",
+                    "Minutes", body.substring(0, 256), NoteContentCodec.compress(body), legacyUser);
+
+            legacy.migrate(null);
+
+            NoteService legacyNotes = legacy.noteService(new NoteCache(32, 16, 1000));
+            assertThat(legacyNotes.searchNotes(legacyUser, "budget", null, null).items())
+                    .extracting(NoteSearchHit::getTitle).containsExactly("Minutes");
+        }
+    }
+
+    private List<NoteSearchHit> search(String query) {
+        return noteService.searchNotes(userId, query, null, null).items();
+    }
+}
@@ -0,0 +1,91 @@
+package com.example.demo;
+
+import com.example.demo.exception.TooManyRequestsException;
+import com.example.demo.security.PasswordHashingService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.security.crypto.password.PasswordEncoder;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class PasswordHashingServiceTests {
+
+    @Test
+    void unknownUserIsComparedAgainstTheDummyHash() {
+        RecordingEncoder encoder = new RecordingEncoder(null);
+        PasswordHashingService hashing = new PasswordHashingService(encoder, new SimpleMeterRegistry(), 1, 4, 5000);
+
+        assertThat(hashing.matches("secret", null)).isFalse();
+
+        assertThat(encoder.compared).singleElement().isNotNull();
+        assertThat(hashing.getHashCount()).isEqualTo(1);
+    }
+
+    @Test
+    void fullQueueIsRejectedWithTooManyRequests() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        RecordingEncoder encoder = new RecordingEncoder(release);
+        // One hashing thread and one queued request
+        PasswordHashingService hashing = new PasswordHashingService(encoder, new SimpleMeterRegistry(), 1, 1, 5000);
+
+        try (ExecutorService callers = Executors.newFixedThreadPool(2)) {
+            List<Future<Boolean>> blocked = new ArrayList<>();
+            blocked.add(callers.submit(() -> hashing.matches("secret", "hash")));
+            while (hashing.getActiveCount() < 1) {
+                Thread.sleep(1);
+            }
+            blocked.add(callers.submit(() -> hashing.matches("secret", "hash")));
+            while (hashing.getQueueDepth() < 1) {
+                Thread.sleep(1);
+            }
+
+            assertThatThrownBy(() -> hashing.matches("secret", "hash"))
+                    .isInstanceOfSatisfying(TooManyRequestsException.class,
+                            e -> assertThat(e.getRetryAfterSeconds()).isPositive());
+            assertThat(hashing.getRejectedCount()).isEqualTo(1);
+
+            release.countDown();
+            for (Future<Boolean> call : blocked) {
+                assertThat(call.get()).isTrue();
+            }
+        }
+    }
+
+    // Matches everything; optionally holds each comparison until released
+    private static final class RecordingEncoder implements PasswordEncoder {
+        private final CountDownLatch release;
+        private final List<String> compared = new ArrayList<>();
+
+        RecordingEncoder(CountDownLatch release) {
+            this.release = release;
+        }
+
+        @Override
+        public String encode(CharSequence rawPassword) {
+            return "encoded:" + rawPassword;
+        }
+
+        @Override
+        public boolean matches(CharSequence rawPassword, String encodedPassword) {
+            synchronized (compared) {
+                compared.add(encodedPassword);
+            }
+            if (release != null) {
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            return true;
+        }
+    }
+}
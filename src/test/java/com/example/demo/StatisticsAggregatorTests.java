@@ -0,0 +1,104 @@
+package com.example.demo;
+
+import com.example.demo.repository.StatisticsRepository;
+import com.example.demo.service.StatisticsAggregator;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.RegisterExtension;
+import org.springframework.scheduling.concurrent.SimpleAsyncTaskScheduler;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class StatisticsAggregatorTests {
+
+    @RegisterExtension
+    final TestDatabase database = new TestDatabase();
+
+    private StatisticsRepository statisticsRepository;
+    private long userId;
+
+    @BeforeEach
+    void setUp() {
+        statisticsRepository = new StatisticsRepository(database.jdbcTemplate());
+        userId = database.insertUser("alice@example.com");
+    }
+
+    @Test
+    void idleUsersAreEvictedOnceFlushedAndReloadedOnNextUse() throws InterruptedException {
+        // Idle after any time at all; the flusher is not started, flushes are explicit
+        StatisticsAggregator aggregator = new StatisticsAggregator(statisticsRepository, database.transactionManager(),
+                new SimpleAsyncTaskScheduler(), 5000, 0);
+        aggregator.recordAds(userId, 3);
+        Thread.sleep(5);
+
+        aggregator.flush();
+        assertThat(aggregator.getTrackedUsers()).isZero();
+
+        assertThat(aggregator.recordAds(userId, 2)).isEqualTo(5);
+        assertThat(aggregator.getTrackedUsers()).isEqualTo(1);
+    }
+
+    @Test
+    void usersWithPendingDeltasAreNotEvicted() {
+        StatisticsAggregator aggregator = new StatisticsAggregator(statisticsRepository, database.transactionManager(),
+                new SimpleAsyncTaskScheduler(), 5000, 30);
+        aggregator.recordTrackers(userId, 4);
+
+        aggregator.flush();
+
+        assertThat(aggregator.getTrackedUsers()).isEqualTo(1);
+        assertThat(statisticsRepository.findByUserId(userId).orElseThrow().getTrackersBlocked()).isEqualTo(4);
+    }
+
+    @Test
+    void reloadCarriesOverPendingDeltas() {
+        StatisticsAggregator aggregator = new StatisticsAggregator(statisticsRepository, database.transactionManager(),
+                new SimpleAsyncTaskScheduler(), 5000, 30);
+        aggregator.recordAds(userId, 2);
+        statisticsRepository.replaceTotals(userId, 10, 0);
+
+        aggregator.reload(userId);
+
+        assertThat(aggregator.getTotals(userId).adsBlocked()).isEqualTo(12);
+        aggregator.flush();
+        assertThat(statisticsRepository.findByUserId(userId).orElseThrow().getAdsBlocked()).isEqualTo(12);
+    }
+
+    @Test
+    void noIncrementIsLostWhileCountersAreReloadedAndEvicted() throws Exception {
+        StatisticsAggregator aggregator = new StatisticsAggregator(statisticsRepository, database.transactionManager(),
+                new SimpleAsyncTaskScheduler(), 5000, 0);
+        int threads = 4;
+        int increments = 2000;
+        try (ExecutorService executor = Executors.newFixedThreadPool(threads + 1)) {
+            List<Future<?>> recorders = new ArrayList<>();
+            for (int i = 0; i < threads; i++) {
+                recorders.add(executor.submit(() -> {
+                    for (int j = 0; j < increments; j++) {
+                        aggregator.recordAds(userId, 1);
+                    }
+                }));
+            }
+            Future<?> churn = executor.submit(() -> {
+                while (recorders.stream().anyMatch(recorder -> !recorder.isDone())) {
+                    aggregator.flush();
+                    aggregator.reload(userId);
+                }
+            });
+            for (Future<?> recorder : recorders) {
+                recorder.get();
+            }
+            churn.get();
+        }
+
+        aggregator.flush();
+        assertThat(statisticsRepository.findByUserId(userId).orElseThrow().getAdsBlocked())
+                .isEqualTo(threads * increments);
+    }
+}
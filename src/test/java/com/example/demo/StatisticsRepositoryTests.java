@@ -0,0 +1,78 @@
+package com.example.demo;
+
+import com.example.demo.model.Statistics;
+import com.example.demo.repository.StatisticsRepository;
+import com.example.demo.repository.StatisticsRepository.Increment;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.RegisterExtension;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class StatisticsRepositoryTests {
+
+    @RegisterExtension
+    final TestDatabase database = new TestDatabase();
+
+    @Test
+    void migrationSumsDuplicateRowsAndDropsOrphans() {
+        try (TestDatabase legacy = new TestDatabase("9")) {
+            long alice = legacy.insertUser("alice@example.com");
+            long bob = legacy.insertUser("bob@example.com");
+            // The shape Hibernate created before V10
+            legacy.jdbcTemplate().execute("CREATE TABLE statistics (id INTEGER PRIMARY KEY AUTOINCREMENT, "
+                    + "user_email VARCHAR(255) NOT NULL, ads_blocked INTEGER NOT NULL, "
+                    + "trackers_blocked INTEGER NOT NULL, time_saved FLOAT NOT NULL)");
+            insertLegacyRow(legacy, "alice@example.com", 3, 4, 1.5);
+            insertLegacyRow(legacy, "alice@example.com", 2, 1, 0.5);
+            insertLegacyRow(legacy, "bob@example.com", 7, 0, 2.0);
+            insertLegacyRow(legacy, "gone@example.com", 100, 100, 100.0);
+
+            legacy.migrate(null);
+
+            List<Map<String, Object>> rows = legacy.jdbcTemplate().queryForList(
+                    "SELECT user_id, ads_blocked, trackers_blocked, time_saved FROM statistics ORDER BY user_id");
+            assertThat(rows).hasSize(2);
+            assertThat(rows.get(0)).containsEntry("user_id", (int) alice).containsEntry("ads_blocked", 5)
+                    .containsEntry("trackers_blocked", 5).containsEntry("time_saved", 2.0);
+            assertThat(rows.get(1)).containsEntry("user_id", (int) bob).containsEntry("ads_blocked", 7)
+                    .containsEntry("trackers_blocked", 0).containsEntry("time_saved", 2.0);
+        }
+    }
+
+    @Test
+    void addAllCreatesAndAccumulatesRows() {
+        StatisticsRepository repository = new StatisticsRepository(database.jdbcTemplate());
+        long alice = database.insertUser("alice@example.com");
+
+        repository.addAll(List.of(new Increment(alice, 2, 1, 0.25)));
+        repository.addAll(List.of(new Increment(alice, 3, 0, 0.5)));
+
+        Statistics statistics = repository.findByUserId(alice).orElseThrow();
+        assertThat(statistics.getAdsBlocked()).isEqualTo(5);
+        assertThat(statistics.getTrackersBlocked()).isEqualTo(1);
+        assertThat(statistics.getTimeSaved()).isEqualTo(0.75);
+    }
+
+    @Test
+    void addAllSkipsDeltasOfDeletedUsers() {
+        StatisticsRepository repository = new StatisticsRepository(database.jdbcTemplate());
+        long alice = database.insertUser("alice@example.com");
+        long bob = database.insertUser("bob@example.com");
+        database.jdbcTemplate().update("DELETE FROM users WHERE id = ?", bob);
+
+        repository.addAll(List.of(new Increment(alice, 1, 0, 0.1), new Increment(bob, 1, 0, 0.1)));
+
+        assertThat(repository.findByUserId(alice)).isPresent();
+        assertThat(repository.findByUserId(bob)).isEmpty();
+    }
+
+    private static void insertLegacyRow(TestDatabase legacy, String email, int adsBlocked, int trackersBlocked,
+                                        double timeSaved) {
+        legacy.jdbcTemplate().update(
+                "INSERT INTO statistics (user_email, ads_blocked, trackers_blocked, time_saved) VALUES (?, ?, ?, ?)",
+                email, adsBlocked, trackersBlocked, timeSaved);
+    }
+}
@@ -0,0 +1,59 @@
+package com.example.demo;
+
+import com.example.demo.repository.StatisticsRollupRepository;
+import com.example.demo.service.StatisticsRollupService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.RegisterExtension;
+import org.springframework.scheduling.concurrent.SimpleAsyncTaskScheduler;
+
+import java.time.Duration;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class StatisticsRollupServiceTests {
+
+    @RegisterExtension
+    final TestDatabase database = new TestDatabase();
+
+    private StatisticsRollupService rollupService;
+
+    @BeforeEach
+    void setUp() {
+        // One domain kept per day, events accepted up to a week back; the scheduler is not started
+        rollupService = new StatisticsRollupService(new StatisticsRollupRepository(database.jdbcTemplate()),
+                database.transactionManager(), new SimpleAsyncTaskScheduler(), 5000, 3600000, 48, 35, 1, 168);
+    }
+
+    @Test
+    void compactionTrimsEveryDayLateEventsAreAcceptedFor() {
+        long userId = database.insertUser("alice@example.com");
+        long fiveDaysAgo = System.currentTimeMillis() - Duration.ofDays(5).toMillis();
+        rollupService.record(userId, fiveDaysAgo, true, 3, "ads.example.com");
+        rollupService.record(userId, fiveDaysAgo, true, 1, "tracker.example.com");
+        rollupService.flush();
+
+        rollupService.compact();
+
+        assertThat(database.jdbcTemplate().queryForList("SELECT domain FROM stats_top_domains", String.class))
+                .containsExactly("ads.example.com");
+    }
+
+    @Test
+    void flushSkipsCountsOfDeletedUsers() {
+        long alice = database.insertUser("alice@example.com");
+        long bob = database.insertUser("bob@example.com");
+        long now = System.currentTimeMillis();
+        rollupService.record(alice, now, true, 1, "ads.example.com");
+        rollupService.record(bob, now, false, 1, "tracker.example.com");
+        database.jdbcTemplate().update("DELETE FROM users WHERE id = ?", bob);
+
+        rollupService.flush();
+
+        assertThat(rollupService.getPendingBuckets()).isZero();
+        assertThat(database.jdbcTemplate().queryForList("SELECT DISTINCT user_id FROM stats_rollups", Long.class))
+                .containsExactly(alice);
+        assertThat(database.jdbcTemplate().queryForList("SELECT DISTINCT user_id FROM stats_top_domains", Long.class))
+                .containsExactly(alice);
+    }
+}
@@ -0,0 +1,123 @@
+package com.example.demo;
+
+import com.example.demo.config.SqliteDataSourceConfig;
+import com.example.demo.repository.NoteContentStorage;
+import com.example.demo.repository.NoteRepository;
+import com.example.demo.service.NoteCache;
+import com.example.demo.service.NoteService;
+import com.zaxxer.hikari.HikariDataSource;
+import jakarta.validation.Validation;
+import jakarta.validation.Validator;
+import org.flywaydb.core.Flyway;
+import org.junit.jupiter.api.extension.AfterEachCallback;
+import org.junit.jupiter.api.extension.ExtensionContext;
+import org.springframework.aop.framework.ProxyFactory;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.transaction.TransactionManager;
+import org.springframework.transaction.annotation.AnnotationTransactionAttributeSource;
+import org.springframework.transaction.interceptor.TransactionInterceptor;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Throwaway SQLite file opened through the application's writer pool, so the pragmas are the
+ * same as in production. Migrations are applied up to a given version, or all of them.
+ *
+ * Tests register it as a field, {@code @RegisterExtension final TestDatabase database = new TestDatabase();},
+ * and get a fresh database per test that is deleted afterwards; the JMH benchmarks (compiled
+ * with the test sources under -Pbenchmarks) open and close it themselves.
+ */
+public final class TestDatabase implements AfterEachCallback, AutoCloseable {
+
+    private static final Validator VALIDATOR = Validation.buildDefaultValidatorFactory().getValidator();
+
+    private final Path file;
+    private final HikariDataSource dataSource;
+    private final JdbcTemplate jdbcTemplate;
+    private final DataSourceTransactionManager transactionManager;
+
+    public TestDatabase() {
+        this(null);
+    }
+
+    public TestDatabase(String targetVersion) {
+        try {
+            file = Files.createTempFile("demo-test", ".db");
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        dataSource = SqliteDataSourceConfig.writerPool("jdbc:sqlite:" + file,
+                SqliteDataSourceConfig.pragmas(5000, 16384, 256), 30000);
+        migrate(targetVersion);
+        jdbcTemplate = new JdbcTemplate(dataSource);
+        transactionManager = new DataSourceTransactionManager(dataSource);
+    }
+
+    // null migrates to the latest version
+    public void migrate(String targetVersion) {
+        var flyway = Flyway.configure().dataSource(dataSource);
+        if (targetVersion != null) {
+            flyway.target(targetVersion);
+        }
+        flyway.load().migrate();
+    }
+
+    public JdbcTemplate jdbcTemplate() {
+        return jdbcTemplate;
+    }
+
+    public DataSourceTransactionManager transactionManager() {
+        return transactionManager;
+    }
+
+    // Plain-text bodies, as with the default notes.storage settings
+    public NoteRepository noteRepository() {
+        return new NoteRepository(jdbcTemplate, new NoteContentStorage(false, 1024, 200));
+    }
+
+    // Default notes.page / preview / batch settings, transactional like the bean
+    public NoteService noteService(NoteCache noteCache) {
+        return transactional(new NoteService(noteRepository(), noteCache, VALIDATOR, 50, 200, 200, 1000));
+    }
+
+    public NoteService noteService(NoteCache noteCache, NoteContentStorage contentStorage) {
+        return transactional(new NoteService(new NoteRepository(jdbcTemplate, contentStorage), noteCache, VALIDATOR,
+                50, 200, 200, 1000));
+    }
+
+    // Applies the target's @Transactional annotations, as the Spring context would
+    @SuppressWarnings("unchecked")
+    public <T> T transactional(T target) {
+        ProxyFactory factory = new ProxyFactory(target);
+        factory.setProxyTargetClass(true);
+        factory.addAdvice(new TransactionInterceptor((TransactionManager) transactionManager,
+                new AnnotationTransactionAttributeSource()));
+        return (T) factory.getProxy();
+    }
+
+    public long insertUser(String email) {
+        jdbcTemplate.update("INSERT INTO users (username, password, email) VALUES (?, ?, ?)", email, "unused", email);
+        return jdbcTemplate.queryForObject("SELECT id FROM users WHERE email = ?", Long.class, email);
+    }
+
+    @Override
+    public void afterEach(ExtensionContext context) {
+        close();
+    }
+
+    @Override
+    public void close() {
+        dataSource.close();
+        try {
+            Files.deleteIfExists(file);
+            Files.deleteIfExists(Path.of(file + "-wal"));
+            Files.deleteIfExists(Path.of(file + "-shm"));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
@@ -0,0 +1,56 @@
+package com.example.demo;
+
+import com.example.demo.repository.UserRepository;
+import com.example.demo.security.TokenVersionRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.Optional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class TokenVersionRegistryTests {
+
+    private UserRepository userRepository;
+    private TokenVersionRegistry registry;
+
+    @BeforeEach
+    void setUp() {
+        userRepository = mock(UserRepository.class);
+        registry = new TokenVersionRegistry(userRepository, 100);
+    }
+
+    @Test
+    void versionIsReadOnceAndThenServedFromMemory() {
+        when(userRepository.findTokenVersionById(1L)).thenReturn(Optional.of(0));
+
+        assertThat(registry.isCurrent(1L, 0)).isTrue();
+        assertThat(registry.isCurrent(1L, 1)).isFalse();
+
+        verify(userRepository, times(1)).findTokenVersionById(1L);
+    }
+
+    @Test
+    void missingClaimsAreNotCurrent() {
+        assertThat(registry.isCurrent(null, 0)).isFalse();
+        assertThat(registry.isCurrent(1L, null)).isFalse();
+    }
+
+    @Test
+    void versionReadWhileTheUserIsRevokedIsNotKept() {
+        // The revocation lands between the read and the cache write
+        when(userRepository.findTokenVersionById(1L)).thenAnswer(invocation -> {
+            registry.forget(1L);
+            return Optional.of(0);
+        }).thenReturn(Optional.of(1));
+
+        registry.isCurrent(1L, 0);
+
+        assertThat(registry.isCurrent(1L, 0)).isFalse();
+        assertThat(registry.isCurrent(1L, 1)).isTrue();
+    }
+}